@@ -0,0 +1,72 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide cunto se demora borrar los libros de unos autores. Como borrar modifica
+ * la librera, cada medicin se hace sobre una copia nueva de la librera
+ * cargada; la copia no hace parte del tiempo medido.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class BorrarBenchmark
+{
+	/**
+	 * Cantidad de autores que se borran en cada medicin
+	 */
+	private static final int AUTORES = 3;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int tamanio;
+
+	private Libreria original;
+
+	private String autores;
+
+	private Libreria copia;
+
+	@Setup(Level.Trial)
+	public void cargar() throws IOException
+	{
+		original = DatosBenchmark.cargarLibreria(tamanio);
+		Libro[] muestra = DatosBenchmark.muestra(original, AUTORES);
+		StringBuilder nombres = new StringBuilder();
+		for (Libro libro : muestra)
+		{
+			if (nombres.length() > 0)
+				nombres.append(',');
+			nombres.append(libro.darAutor());
+		}
+		autores = nombres.toString();
+	}
+
+	@Setup(Level.Invocation)
+	public void copiar()
+	{
+		copia = new Libreria(original);
+	}
+
+	@Benchmark
+	public int borrarLibros() throws Exception
+	{
+		return copia.borrarLibros(autores);
+	}
+}
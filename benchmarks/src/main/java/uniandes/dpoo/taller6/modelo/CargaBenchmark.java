@@ -0,0 +1,59 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide cunto se demora construir una librera a partir de los archivos CSV, sin
+ * y con los ndices que se construyen en otro hilo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+public class CargaBenchmark
+{
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int tamanio;
+
+	private String archivoCategorias;
+
+	private String archivoLibros;
+
+	@Setup
+	public void preparar() throws IOException
+	{
+		File carpeta = DatosBenchmark.generarCatalogo(tamanio);
+		archivoCategorias = new File(carpeta, "categorias.csv").getPath();
+		archivoLibros = new File(carpeta, "libreria.csv").getPath();
+	}
+
+	@Benchmark
+	public Libreria cargar() throws IOException
+	{
+		return new Libreria(archivoCategorias, archivoLibros);
+	}
+
+	@Benchmark
+	public Libreria cargarConIndices() throws IOException
+	{
+		Libreria libreria = new Libreria(archivoCategorias, archivoLibros);
+		libreria.esperarIndices();
+		return libreria;
+	}
+}
@@ -0,0 +1,126 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mide el rendimiento de las consultas de la librera. Las consultas se hacen
+ * sobre una muestra de ttulos y autores repartida a lo largo del catlogo.
+ *
+ * La muestra cabe completa en la cach de consultas, as que las bsquedas por
+ * autor se miden sin la cach, y las que terminan en ConCache se miden con la
+ * cach en un proceso aparte.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g", "-Dtaller6.cacheConsultas=0" })
+public class ConsultasBenchmark
+{
+	/**
+	 * Cantidad de libros de la muestra. Debe ser una potencia de 2.
+	 */
+	private static final int MUESTRA = 1024;
+
+	@Param({ "1000", "10000", "100000", "1000000", "10000000" })
+	public int tamanio;
+
+	private Libreria libreria;
+
+	private String[] titulos;
+
+	private String[] autores;
+
+	private String[] partesAutores;
+
+	private int siguiente;
+
+	@Setup
+	public void preparar() throws IOException
+	{
+		libreria = DatosBenchmark.cargarLibreria(tamanio);
+		Libro[] muestra = DatosBenchmark.muestra(libreria, MUESTRA);
+		titulos = new String[MUESTRA];
+		autores = new String[MUESTRA];
+		partesAutores = new String[MUESTRA];
+		for (int i = 0; i < MUESTRA; i++)
+		{
+			titulos[i] = muestra[i].darTitulo();
+			autores[i] = muestra[i].darAutor();
+			// El apellido, o la ltima palabra del nombre
+			String[] palabras = autores[i].split(" ");
+			partesAutores[i] = palabras[palabras.length - 1];
+		}
+	}
+
+	private int siguiente()
+	{
+		siguiente = (siguiente + 1) & (MUESTRA - 1);
+		return siguiente;
+	}
+
+	@Benchmark
+	public Libro buscarLibro()
+	{
+		return libreria.buscarLibro(titulos[siguiente()]);
+	}
+
+	@Benchmark
+	public List<Libro> buscarLibrosAutor()
+	{
+		return libreria.buscarLibrosAutor(partesAutores[siguiente()]);
+	}
+
+	@Benchmark
+	public List<Categoria> buscarCategoriasAutor()
+	{
+		return libreria.buscarCategoriasAutor(autores[siguiente()]);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+	public List<Libro> buscarLibrosAutorConCache()
+	{
+		return libreria.buscarLibrosAutor(partesAutores[siguiente()]);
+	}
+
+	@Benchmark
+	@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx12g" })
+	public List<Categoria> buscarCategoriasAutorConCache()
+	{
+		return libreria.buscarCategoriasAutor(autores[siguiente()]);
+	}
+
+	@Benchmark
+	public double calificacionPromedio()
+	{
+		return libreria.calificacionPromedio();
+	}
+
+	@Benchmark
+	public Categoria categoriaConMejoresLibros()
+	{
+		return libreria.categoriaConMejoresLibros();
+	}
+
+	@Benchmark
+	public boolean hayAutorEnVariasCategorias()
+	{
+		return libreria.hayAutorEnVariasCategorias();
+	}
+}
@@ -0,0 +1,103 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import uniandes.dpoo.taller6.herramientas.GeneradorCatalogo;
+
+/**
+ * Genera los catlogos que usan los benchmarks.
+ *
+ * Los catlogos se generan con GeneradorCatalogo, siempre con la misma semilla,
+ * as que todas las ejecuciones miden exactamente los mismos datos. Cada
+ * catlogo se guarda en una carpeta de la carpeta temporal y se reutiliza entre
+ * ejecuciones.
+ */
+class DatosBenchmark
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La semilla de todos los catlogos de los benchmarks
+	 */
+	private static final long SEMILLA = 20221;
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Retorna la carpeta de un catlogo con la cantidad de libros indicada, y lo
+	 * genera si todava no existe. La carpeta tiene los archivos categorias.csv y
+	 * libreria.csv.
+	 *
+	 * @param cantidad Cantidad de libros del catlogo
+	 * @return La carpeta del catlogo
+	 * @throws IOException Si no se pueden escribir los archivos
+	 */
+	static File generarCatalogo(int cantidad) throws IOException
+	{
+		File carpeta = new File(System.getProperty("java.io.tmpdir"), "taller6-catalogo-" + cantidad);
+		File categorias = new File(carpeta, "categorias.csv");
+		File libros = new File(carpeta, "libreria.csv");
+		if (libros.exists())
+		{
+			return carpeta;
+		}
+
+		if (!carpeta.isDirectory() && !carpeta.mkdirs())
+		{
+			throw new IOException("No se pudo crear " + carpeta);
+		}
+		File temporal = new File(carpeta, "libreria.csv.tmp");
+		GeneradorCatalogo generador = new GeneradorCatalogo();
+		generador.cambiarCantidadLibros(cantidad);
+		generador.cambiarCantidadAutores(Math.max(100, cantidad / 20));
+		generador.cambiarSemilla(SEMILLA);
+		generador.generar(categorias, temporal);
+		if (!temporal.renameTo(libros))
+		{
+			throw new IOException("No se pudo crear " + libros);
+		}
+		return carpeta;
+	}
+
+	/**
+	 * Carga la librera de un catlogo con la cantidad de libros indicada y
+	 * espera a que se construyan sus ndices
+	 *
+	 * @param cantidad Cantidad de libros del catlogo
+	 * @return La librera
+	 * @throws IOException Si no se pueden generar o leer los archivos
+	 */
+	static Libreria cargarLibreria(int cantidad) throws IOException
+	{
+		File carpeta = generarCatalogo(cantidad);
+		Libreria libreria = new Libreria(new File(carpeta, "categorias.csv").getPath(),
+				new File(carpeta, "libreria.csv").getPath());
+		libreria.esperarIndices();
+		return libreria;
+	}
+
+	/**
+	 * Toma una muestra de los libros de una librera, repartida a lo largo de
+	 * todo el catlogo
+	 *
+	 * @param libreria La librera
+	 * @param cantidad Cantidad de libros de la muestra
+	 * @return Los libros de la muestra
+	 */
+	static Libro[] muestra(Libreria libreria, int cantidad)
+	{
+		List<Libro> libros = libreria.darLibros();
+		Libro[] muestra = new Libro[cantidad];
+		for (int i = 0; i < cantidad; i++)
+		{
+			muestra[i] = libros.get((int) ((long) i * libros.size() / cantidad));
+		}
+		return muestra;
+	}
+}
@@ -0,0 +1,29 @@
+package uniandes.dpoo.taller6.modelo;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Ejecuta los benchmarks de la librera. Acepta las mismas opciones que la
+ * lnea de comandos de JMH, y siempre agrega el perfilador de memoria para que
+ * los resultados incluyan la tasa de asignacin junto al rendimiento.
+ *
+ * Se debe ejecutar desde la carpeta raz del proyecto, para que las portadas
+ * de los catlogos generados se busquen en la carpeta "data":
+ *
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar -p tamanio=1000,100000
+ * </pre>
+ */
+public class EjecutarBenchmarks
+{
+	public static void main(String[] args) throws Exception
+	{
+		Options opciones = new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class)
+				.build();
+		new Runner(opciones).run();
+	}
+}
@@ -0,0 +1,513 @@
+package uniandes.dpoo.taller6.herramientas;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Esta clase genera parejas de archivos categorias.csv / libreria.csv con
+ * datos sintticos, en el mismo formato de los archivos de la carpeta "data",
+ * para probar la librera con catlogos grandes.
+ *
+ * La generacin es determinstica: con la misma semilla y la misma
+ * configuracin siempre se producen exactamente los mismos archivos, sin
+ * importar cuntos hilos se usen. Los libros se generan por bloques en paralelo
+ * y cada bloque tiene su propio generador de nmeros aleatorios, derivado de la
+ * semilla y del nmero del bloque.
+ *
+ * Se puede configurar:
+ * <ul>
+ * <li>La cantidad de libros y de categoras.</li>
+ * <li>La proporcin de libros cuya categora no est en el archivo de
+ * categoras.</li>
+ * <li>La cantidad de autores y el sesgo de la distribucin de Zipf con la que
+ * se reparten los libros entre los autores (0 es uniforme).</li>
+ * <li>La proporcin de libros que repiten el ttulo de un libro anterior.</li>
+ * <li>La proporcin de libros cuya portada apunta a un archivo que no
+ * existe.</li>
+ * </ul>
+ */
+public class GeneradorCatalogo
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de libros de cada bloque que se genera en paralelo
+	 */
+	private static final int LIBROS_POR_BLOQUE = 1 << 16;
+
+	/**
+	 * Cantidad de portadas distintas que se usan para los libros que s tienen
+	 * portada: ./imagenes/00000.jpg hasta ./imagenes/00999.jpg, como en la
+	 * carpeta "data"
+	 */
+	private static final int PORTADAS_DISTINTAS = 1000;
+
+	/**
+	 * Ruta de portada que nunca existe
+	 */
+	private static final String PORTADA_INEXISTENTE = "./imagenes/sin-portada.jpg";
+
+	private static final String[] PALABRAS = { "Historia", "Noche", "Camino", "Ciudad", "Mar", "Sombra", "Jardin",
+			"Guerra", "Silencio", "Viaje", "Memoria", "Fuego", "Tiempo", "Casa", "Rio", "Secreto", "Luz", "Invierno",
+			"Montana", "Sueno", "Espejo", "Lluvia", "Reino", "Isla", "Voz", "Puerta", "Bosque", "Destino", "Estrella",
+			"Verano", "Carta", "Ultimo" };
+
+	private static final String[] NOMBRES = { "Ana", "Carlos", "Maria", "Jorge", "Lucia", "Pedro", "Elena", "Diego",
+			"Sofia", "Andres", "Laura", "Miguel", "Paula", "Javier", "Isabel", "Tomas", "Clara", "Felipe", "Marta",
+			"Daniel" };
+
+	private static final String[] APELLIDOS = { "Garcia", "Rodriguez", "Lopez", "Martinez", "Gomez", "Perez",
+			"Sanchez", "Ramirez", "Torres", "Flores", "Rivera", "Castro", "Ortiz", "Moreno", "Vargas", "Rojas",
+			"Herrera", "Medina", "Suarez", "Navarro", "Mendoza", "Silva", "Cruz", "Reyes", "Linares" };
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private int cantidadLibros = 100000;
+
+	private int cantidadCategorias = 32;
+
+	private double proporcionCategoriasDesconocidas = 0.01;
+
+	private int cantidadAutores = 10000;
+
+	private double sesgoZipf = 1.0;
+
+	private double proporcionTitulosDuplicados = 0.02;
+
+	private double proporcionSinPortada = 0.1;
+
+	private long semilla = 42;
+
+	private int hilos = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * La distribucin acumulada de los libros entre los autores. Se calcula al
+	 * empezar a generar.
+	 */
+	private double[] acumuladaAutores;
+
+	// ************************************************************************
+	// Mtodos para cambiar la configuracin
+	// ************************************************************************
+
+	public void cambiarCantidadLibros(int cantidad)
+	{
+		cantidadLibros = requerirNoNegativo(cantidad, "cantidad de libros");
+	}
+
+	public void cambiarCantidadCategorias(int cantidad)
+	{
+		cantidadCategorias = requerirPositivo(cantidad, "cantidad de categoras");
+	}
+
+	/**
+	 * @param proporcion Fraccin de los libros (entre 0 y 1) cuya categora no
+	 *                   est en el archivo de categoras
+	 */
+	public void cambiarProporcionCategoriasDesconocidas(double proporcion)
+	{
+		proporcionCategoriasDesconocidas = requerirProporcion(proporcion, "proporcin de categoras desconocidas");
+	}
+
+	public void cambiarCantidadAutores(int cantidad)
+	{
+		cantidadAutores = requerirPositivo(cantidad, "cantidad de autores");
+	}
+
+	/**
+	 * @param sesgo Exponente de la distribucin de Zipf. Con 0 todos los autores
+	 *              tienen la misma probabilidad; con valores mayores unos pocos
+	 *              autores tienen la mayora de los libros.
+	 */
+	public void cambiarSesgoZipf(double sesgo)
+	{
+		if (sesgo < 0 || Double.isNaN(sesgo))
+		{
+			throw new IllegalArgumentException("El sesgo de Zipf no puede ser negativo");
+		}
+		sesgoZipf = sesgo;
+	}
+
+	/**
+	 * @param proporcion Fraccin de los libros (entre 0 y 1) que repiten el ttulo
+	 *                   de un libro anterior
+	 */
+	public void cambiarProporcionTitulosDuplicados(double proporcion)
+	{
+		proporcionTitulosDuplicados = requerirProporcion(proporcion, "proporcin de ttulos duplicados");
+	}
+
+	/**
+	 * @param proporcion Fraccin de los libros (entre 0 y 1) cuya portada apunta
+	 *                   a un archivo que no existe
+	 */
+	public void cambiarProporcionSinPortada(double proporcion)
+	{
+		proporcionSinPortada = requerirProporcion(proporcion, "proporcin de libros sin portada");
+	}
+
+	public void cambiarSemilla(long laSemilla)
+	{
+		semilla = laSemilla;
+	}
+
+	/**
+	 * @param cantidad Cantidad de hilos que generan bloques. No cambia el
+	 *                 contenido de los archivos.
+	 */
+	public void cambiarHilos(int cantidad)
+	{
+		hilos = requerirPositivo(cantidad, "cantidad de hilos");
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Genera el archivo de categoras y el archivo de libros
+	 *
+	 * @param archivoCategorias El archivo donde se escriben las categoras
+	 * @param archivoLibros     El archivo donde se escriben los libros
+	 * @throws IOException Si hay algn problema escribiendo los archivos
+	 */
+	public void generar(File archivoCategorias, File archivoLibros) throws IOException
+	{
+		escribirCategorias(archivoCategorias);
+		escribirLibros(archivoLibros);
+	}
+
+	/**
+	 * Escribe el archivo de categoras. Las categoras pares son de ficcin.
+	 */
+	private void escribirCategorias(File archivo) throws IOException
+	{
+		try (BufferedWriter escritor = new BufferedWriter(new FileWriter(archivo)))
+		{
+			escritor.write("Categoria,ficcion\n");
+			for (int i = 0; i < cantidadCategorias; i++)
+			{
+				escritor.write(nombreCategoria(i));
+				escritor.write(i % 2 == 0 ? ",true\n" : ",false\n");
+			}
+		}
+	}
+
+	/**
+	 * Escribe el archivo de libros. Los bloques se generan en paralelo, pero se
+	 * escriben en orden y slo se mantienen en memoria unos pocos a la vez.
+	 */
+	private void escribirLibros(File archivo) throws IOException
+	{
+		acumuladaAutores = calcularAcumuladaZipf(cantidadAutores, sesgoZipf);
+		int bloques = (int) (((long) cantidadLibros + LIBROS_POR_BLOQUE - 1) / LIBROS_POR_BLOQUE);
+
+		ExecutorService ejecutor = Executors.newFixedThreadPool(hilos, tarea -> {
+			Thread hilo = new Thread(tarea, "generador-catalogo");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		try (OutputStream salida = new FileOutputStream(archivo))
+		{
+			salida.write("Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto\n".getBytes(StandardCharsets.US_ASCII));
+
+			ArrayDeque<Future<byte[]>> pendientes = new ArrayDeque<>();
+			int siguiente = 0;
+			while (siguiente < bloques || !pendientes.isEmpty())
+			{
+				while (siguiente < bloques && pendientes.size() < 2 * hilos)
+				{
+					int bloque = siguiente++;
+					pendientes.add(ejecutor.submit(() -> generarBloque(bloque)));
+				}
+				salida.write(esperar(pendientes.poll()));
+			}
+		}
+		finally
+		{
+			ejecutor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Genera las lneas de un bloque de libros
+	 *
+	 * @param bloque El nmero del bloque
+	 * @return Los bytes de las lneas del bloque
+	 */
+	private byte[] generarBloque(int bloque)
+	{
+		SplittableRandom aleatorio = new SplittableRandom(mezclar(semilla ^ mezclar(bloque + 1)));
+		int inicio = bloque * LIBROS_POR_BLOQUE;
+		int fin = (int) Math.min((long) inicio + LIBROS_POR_BLOQUE, cantidadLibros);
+		StringBuilder texto = new StringBuilder((fin - inicio) * 96);
+
+		for (int i = inicio; i < fin; i++)
+		{
+			// Un ttulo duplicado repite el ttulo que le corresponde a un libro
+			// anterior
+			int idTitulo = i;
+			if (i > 0 && aleatorio.nextDouble() < proporcionTitulosDuplicados)
+			{
+				idTitulo = aleatorio.nextInt(i);
+			}
+			escribirTitulo(texto, idTitulo);
+			texto.append(',');
+
+			escribirAutor(texto, buscarAutor(aleatorio.nextDouble()));
+			texto.append(',');
+
+			// Calificaciones entre 3 y 5, de media en media
+			int medios = 6 + aleatorio.nextInt(5);
+			texto.append(medios / 2);
+			if (medios % 2 == 1)
+				texto.append(".5");
+			texto.append(',');
+
+			if (aleatorio.nextDouble() < proporcionCategoriasDesconocidas)
+				texto.append(nombreCategoriaDesconocida(aleatorio.nextInt(cantidadDesconocidas())));
+			else
+				texto.append(nombreCategoria(aleatorio.nextInt(cantidadCategorias)));
+			texto.append(',');
+
+			if (aleatorio.nextDouble() < proporcionSinPortada)
+			{
+				texto.append(PORTADA_INEXISTENTE);
+			}
+			else
+			{
+				texto.append("./imagenes/");
+				agregarConCeros(texto, aleatorio.nextInt(PORTADAS_DISTINTAS), 5);
+				texto.append(".jpg");
+			}
+			texto.append(',').append(120 + aleatorio.nextInt(81)).append(",220\n");
+		}
+
+		return texto.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Escribe el ttulo que le corresponde a un identificador. Ttulos con
+	 * identificadores distintos son distintos.
+	 */
+	private static void escribirTitulo(StringBuilder texto, int idTitulo)
+	{
+		long h = mezclar(idTitulo);
+		texto.append(PALABRAS[(int) ((h >>> 8) % PALABRAS.length)]);
+		texto.append(' ');
+		texto.append(PALABRAS[(int) ((h >>> 24) % PALABRAS.length)]);
+		texto.append(' ');
+		texto.append(Integer.toString(idTitulo, 36));
+	}
+
+	/**
+	 * Escribe el nombre de un autor. Los primeros autores se forman con un nombre
+	 * y un apellido; cuando se acaban las combinaciones se agrega un nmero.
+	 */
+	private static void escribirAutor(StringBuilder texto, int autor)
+	{
+		int combinaciones = NOMBRES.length * APELLIDOS.length;
+		texto.append(NOMBRES[autor % NOMBRES.length]);
+		texto.append(' ');
+		texto.append(APELLIDOS[(autor / NOMBRES.length) % APELLIDOS.length]);
+		if (autor >= combinaciones)
+		{
+			texto.append(' ').append(autor / combinaciones);
+		}
+	}
+
+	/**
+	 * Busca el autor que le corresponde a un valor uniforme entre 0 y 1
+	 */
+	private int buscarAutor(double valor)
+	{
+		int posicion = Arrays.binarySearch(acumuladaAutores, valor);
+		posicion = posicion >= 0 ? posicion : -posicion - 1;
+		return Math.min(posicion, acumuladaAutores.length - 1);
+	}
+
+	/**
+	 * Calcula la distribucin acumulada de Zipf: el autor k tiene un peso
+	 * proporcional a 1 / (k + 1)^sesgo
+	 */
+	private static double[] calcularAcumuladaZipf(int cantidad, double sesgo)
+	{
+		double[] acumulada = new double[cantidad];
+		double suma = 0;
+		for (int k = 0; k < cantidad; k++)
+		{
+			suma += 1.0 / Math.pow(k + 1, sesgo);
+			acumulada[k] = suma;
+		}
+		for (int k = 0; k < cantidad; k++)
+		{
+			acumulada[k] /= suma;
+		}
+		return acumulada;
+	}
+
+	private int cantidadDesconocidas()
+	{
+		return Math.max(1, cantidadCategorias / 4);
+	}
+
+	private static String nombreCategoria(int i)
+	{
+		return "Categoria-" + i;
+	}
+
+	private static String nombreCategoriaDesconocida(int i)
+	{
+		return "Nueva-Categoria-" + i;
+	}
+
+	private static void agregarConCeros(StringBuilder texto, int numero, int digitos)
+	{
+		String cifras = Integer.toString(numero);
+		for (int i = cifras.length(); i < digitos; i++)
+		{
+			texto.append('0');
+		}
+		texto.append(cifras);
+	}
+
+	/**
+	 * Mezcla los bits de un nmero (funcin de mezcla de SplitMix64)
+	 */
+	private static long mezclar(long x)
+	{
+		x = (x ^ (x >>> 30)) * 0xbf58476d1ce4e5b9L;
+		x = (x ^ (x >>> 27)) * 0x94d049bb133111ebL;
+		return x ^ (x >>> 31);
+	}
+
+	/**
+	 * Espera a que termine de generarse un bloque y relanza los problemas que
+	 * hayan ocurrido en el hilo que lo gener
+	 */
+	private static byte[] esperar(Future<byte[]> pendiente) throws IOException
+	{
+		try
+		{
+			return pendiente.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Se interrumpi la generacin del catlogo");
+		}
+		catch (ExecutionException e)
+		{
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException)
+				throw (RuntimeException) causa;
+			if (causa instanceof Error)
+				throw (Error) causa;
+			throw new IOException(causa);
+		}
+	}
+
+	private static int requerirNoNegativo(int valor, String nombre)
+	{
+		if (valor < 0)
+			throw new IllegalArgumentException("La " + nombre + " no puede ser negativa");
+		return valor;
+	}
+
+	private static int requerirPositivo(int valor, String nombre)
+	{
+		if (valor <= 0)
+			throw new IllegalArgumentException("La " + nombre + " debe ser positiva");
+		return valor;
+	}
+
+	private static double requerirProporcion(double valor, String nombre)
+	{
+		if (!(valor >= 0 && valor <= 1))
+			throw new IllegalArgumentException("La " + nombre + " debe estar entre 0 y 1");
+		return valor;
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Genera un catlogo a partir de opciones de la forma nombre=valor:
+	 * libros, categorias, desconocidas, autores, zipf, duplicados, sinPortada,
+	 * semilla, hilos y carpeta (donde se escriben categorias.csv y
+	 * libreria.csv).
+	 *
+	 * @param args Las opciones
+	 * @throws IOException Si hay algn problema escribiendo los archivos
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		GeneradorCatalogo generador = new GeneradorCatalogo();
+		String carpeta = ".";
+		for (String argumento : args)
+		{
+			int igual = argumento.indexOf('=');
+			if (igual < 0)
+				throw new IllegalArgumentException("Opcin invlida: " + argumento);
+			String nombre = argumento.substring(0, igual);
+			String valor = argumento.substring(igual + 1);
+			switch (nombre)
+			{
+				case "libros":
+					generador.cambiarCantidadLibros(Integer.parseInt(valor));
+					break;
+				case "categorias":
+					generador.cambiarCantidadCategorias(Integer.parseInt(valor));
+					break;
+				case "desconocidas":
+					generador.cambiarProporcionCategoriasDesconocidas(Double.parseDouble(valor));
+					break;
+				case "autores":
+					generador.cambiarCantidadAutores(Integer.parseInt(valor));
+					break;
+				case "zipf":
+					generador.cambiarSesgoZipf(Double.parseDouble(valor));
+					break;
+				case "duplicados":
+					generador.cambiarProporcionTitulosDuplicados(Double.parseDouble(valor));
+					break;
+				case "sinPortada":
+					generador.cambiarProporcionSinPortada(Double.parseDouble(valor));
+					break;
+				case "semilla":
+					generador.cambiarSemilla(Long.parseLong(valor));
+					break;
+				case "hilos":
+					generador.cambiarHilos(Integer.parseInt(valor));
+					break;
+				case "carpeta":
+					carpeta = valor;
+					break;
+				default:
+					throw new IllegalArgumentException("Opcin desconocida: " + nombre);
+			}
+		}
+
+		long inicio = System.nanoTime();
+		generador.generar(new File(carpeta, "categorias.csv"), new File(carpeta, "libreria.csv"));
+		System.out.println("Catlogo generado en " + (System.nanoTime() - inicio) / 1000000 + " ms");
+	}
+}
@@ -0,0 +1,329 @@
+package uniandes.dpoo.taller6.interfaz;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Esta clase guarda las portadas de los libros que ya se decodificaron, para
+ * no tener que volver a leer el archivo cada vez que se selecciona un libro.
+ *
+ * La cach tiene un presupuesto de memoria: cuando se supera, se descartan las
+ * portadas que se usaron hace ms tiempo. Las portadas que no estn en la cach
+ * se decodifican en un hilo aparte, para no bloquear el hilo de eventos de
+ * Swing. Las rutas que no se pueden decodificar tambin se guardan, con
+ * PORTADA_INVALIDA, para no volver a intentarlo cada vez que se seleccionan.
+ */
+public class CachePortadas
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Presupuesto de memoria por defecto: 64 MB de pixeles
+	 */
+	public static final long PRESUPUESTO_POR_DEFECTO = 64L * 1024 * 1024;
+
+	/**
+	 * Carpeta con respecto a la cual se interpretan las rutas de las portadas
+	 */
+	private static final String CARPETA_DATOS = "./data/";
+
+	/**
+	 * Cantidad mxima de precargas que pueden estar esperando su turno. Cuando se
+	 * llena la cola, se descarta la precarga ms antigua.
+	 */
+	private static final int CAPACIDAD_PRECARGAS = 32;
+
+	/**
+	 * La portada que se guarda en lugar de las que no se pudieron decodificar: una
+	 * imagen transparente de un pixel
+	 */
+	public static final ImageIcon PORTADA_INVALIDA = new ImageIcon(
+			new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB));
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las portadas decodificadas segn su ruta, de la usada hace ms tiempo a la
+	 * usada ms recientemente
+	 */
+	private LinkedHashMap<String, ImageIcon> portadas;
+
+	/**
+	 * Los interesados en cada portada que se est decodificando en este momento
+	 */
+	private HashMap<String, ArrayList<Consumer<ImageIcon>>> pendientes;
+
+	/**
+	 * Cantidad aproximada de bytes que ocupan las portadas de la cach
+	 */
+	private long bytesUsados;
+
+	/**
+	 * Cantidad mxima de bytes que pueden ocupar las portadas de la cach
+	 */
+	private long presupuesto;
+
+	/**
+	 * Los hilos donde se decodifican las portadas
+	 */
+	private ExecutorService decodificador;
+
+	/**
+	 * El hilo de baja prioridad donde se decodifican las portadas que se precargan
+	 */
+	private ThreadPoolExecutor precargador;
+
+	private AtomicLong aciertos;
+
+	private AtomicLong fallos;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye una cach vaca con el presupuesto de memoria indicado
+	 *
+	 * @param elPresupuesto Cantidad mxima de bytes que pueden ocupar las portadas
+	 */
+	public CachePortadas(long elPresupuesto)
+	{
+		portadas = new LinkedHashMap<String, ImageIcon>(64, 0.75f, true);
+		pendientes = new HashMap<String, ArrayList<Consumer<ImageIcon>>>();
+		presupuesto = elPresupuesto;
+		aciertos = new AtomicLong();
+		fallos = new AtomicLong();
+		decodificador = Executors.newFixedThreadPool(2, tarea -> {
+			Thread hilo = new Thread(tarea, "decodificador-portadas");
+			hilo.setDaemon(true);
+			return hilo;
+		});
+		precargador = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(CAPACIDAD_PRECARGAS), tarea -> {
+					Thread hilo = new Thread(tarea, "precargador-portadas");
+					hilo.setDaemon(true);
+					hilo.setPriority(Thread.MIN_PRIORITY);
+					return hilo;
+				}, new ThreadPoolExecutor.DiscardOldestPolicy());
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Busca una portada en la cach
+	 *
+	 * @param rutaArchivo La ruta de la portada, relativa a la carpeta de datos
+	 * @return La portada decodificada, PORTADA_INVALIDA si ya se sabe que el
+	 *         archivo no se puede decodificar, o null si no est en la cach
+	 */
+	public ImageIcon buscar(String rutaArchivo)
+	{
+		ImageIcon portada;
+		synchronized (this)
+		{
+			portada = portadas.get(rutaArchivo);
+		}
+		if (portada != null)
+			aciertos.incrementAndGet();
+		else
+			fallos.incrementAndGet();
+		return portada;
+	}
+
+	/**
+	 * Decodifica una portada en un hilo aparte y la guarda en la cach. Cuando
+	 * termina, se invoca al consumidor desde el hilo de eventos de Swing con la
+	 * portada, o con PORTADA_INVALIDA si el archivo no se pudo leer.
+	 *
+	 * Si la portada ya se est decodificando, no se vuelve a leer el archivo: el
+	 * consumidor se invoca cuando termine la decodificacin que ya estaba en
+	 * curso.
+	 *
+	 * @param rutaArchivo La ruta de la portada, relativa a la carpeta de datos
+	 * @param alTerminar  El consumidor que recibe la portada
+	 */
+	public void cargar(String rutaArchivo, Consumer<ImageIcon> alTerminar)
+	{
+		synchronized (this)
+		{
+			ImageIcon portada = portadas.get(rutaArchivo);
+			if (portada != null)
+			{
+				SwingUtilities.invokeLater(() -> alTerminar.accept(portada));
+				return;
+			}
+			ArrayList<Consumer<ImageIcon>> interesados = pendientes.get(rutaArchivo);
+			if (interesados != null)
+			{
+				interesados.add(alTerminar);
+				return;
+			}
+			interesados = new ArrayList<Consumer<ImageIcon>>();
+			interesados.add(alTerminar);
+			pendientes.put(rutaArchivo, interesados);
+		}
+		decodificador.execute(() -> terminarCarga(rutaArchivo, decodificar(rutaArchivo)));
+	}
+
+	/**
+	 * Programa la decodificacin de una portada que probablemente se va a
+	 * necesitar pronto. La decodificacin se hace en un hilo de baja prioridad y
+	 * slo si en ese momento la portada no est en la cach, nadie ms la est
+	 * decodificando y cabe dentro del presupuesto sin descartar otras portadas.
+	 *
+	 * @param rutaArchivo    La ruta de la portada, relativa a la carpeta de datos
+	 * @param bytesEstimados Cantidad aproximada de bytes que ocupar la portada
+	 * @return Un objeto que permite cancelar la precarga si todava no ha empezado
+	 */
+	public Future<?> precargar(String rutaArchivo, long bytesEstimados)
+	{
+		return precargador.submit(() -> {
+			synchronized (this)
+			{
+				if (portadas.containsKey(rutaArchivo) || pendientes.containsKey(rutaArchivo)
+						|| bytesUsados + bytesEstimados > presupuesto)
+				{
+					return;
+				}
+				pendientes.put(rutaArchivo, new ArrayList<Consumer<ImageIcon>>());
+			}
+			terminarCarga(rutaArchivo, decodificar(rutaArchivo));
+		});
+	}
+
+	/**
+	 * Guarda una portada recin decodificada y les avisa a los interesados
+	 */
+	private void terminarCarga(String rutaArchivo, ImageIcon portada)
+	{
+		ArrayList<Consumer<ImageIcon>> interesados;
+		synchronized (this)
+		{
+			interesados = pendientes.remove(rutaArchivo);
+			guardar(rutaArchivo, portada);
+		}
+		if (interesados != null && !interesados.isEmpty())
+		{
+			SwingUtilities.invokeLater(() -> {
+				for (Consumer<ImageIcon> interesado : interesados)
+				{
+					interesado.accept(portada);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Agrega una portada a la cach y descarta las portadas usadas hace ms
+	 * tiempo mientras se supere el presupuesto. Se debe invocar con el candado de
+	 * la cach.
+	 */
+	private void guardar(String rutaArchivo, ImageIcon portada)
+	{
+		ImageIcon anterior = portadas.put(rutaArchivo, portada);
+		if (anterior != null)
+		{
+			bytesUsados -= calcularBytes(anterior);
+		}
+		bytesUsados += calcularBytes(portada);
+
+		Iterator<Map.Entry<String, ImageIcon>> iterador = portadas.entrySet().iterator();
+		while (bytesUsados > presupuesto && portadas.size() > 1 && iterador.hasNext())
+		{
+			Map.Entry<String, ImageIcon> masAntigua = iterador.next();
+			bytesUsados -= calcularBytes(masAntigua.getValue());
+			iterador.remove();
+		}
+	}
+
+	/**
+	 * Lee y decodifica completamente el archivo de una portada
+	 *
+	 * @return La portada, o PORTADA_INVALIDA si el archivo no existe o no es una
+	 *         imagen
+	 */
+	private ImageIcon decodificar(String rutaArchivo)
+	{
+		try
+		{
+			BufferedImage imagen = ImageIO.read(new File(CARPETA_DATOS + rutaArchivo));
+			return imagen == null ? PORTADA_INVALIDA : new ImageIcon(imagen);
+		}
+		catch (IOException e)
+		{
+			return PORTADA_INVALIDA;
+		}
+	}
+
+	/**
+	 * Calcula la cantidad aproximada de bytes que ocupa una portada decodificada
+	 */
+	static long calcularBytes(ImageIcon portada)
+	{
+		return 4L * Math.max(0, portada.getIconWidth()) * Math.max(0, portada.getIconHeight());
+	}
+
+	/**
+	 * Retorna la cantidad mxima de bytes que pueden ocupar las portadas
+	 *
+	 * @return presupuesto
+	 */
+	public long darPresupuesto()
+	{
+		return presupuesto;
+	}
+
+	/**
+	 * Retorna cuntas veces se encontr en la cach una portada buscada
+	 *
+	 * @return aciertos
+	 */
+	public long darAciertos()
+	{
+		return aciertos.get();
+	}
+
+	/**
+	 * Retorna cuntas veces no se encontr en la cach una portada buscada
+	 *
+	 * @return fallos
+	 */
+	public long darFallos()
+	{
+		return fallos.get();
+	}
+
+	/**
+	 * Retorna la cantidad aproximada de bytes que ocupan las portadas de la cach
+	 *
+	 * @return bytesUsados
+	 */
+	public synchronized long darBytesUsados()
+	{
+		return bytesUsados;
+	}
+}
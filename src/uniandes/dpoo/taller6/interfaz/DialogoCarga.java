@@ -0,0 +1,134 @@
+package uniandes.dpoo.taller6.interfaz;
+
+import java.awt.BorderLayout;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+
+import uniandes.dpoo.taller6.modelo.MonitorCarga;
+
+/**
+ * Dilogo que muestra el avance de la carga de una librera y le permite al
+ * usuario cancelarla.
+ *
+ * El dilogo no es modal: mientras se carga la nueva librera, la ventana
+ * principal sigue mostrando la librera anterior.
+ */
+@SuppressWarnings("serial")
+public class DialogoCarga extends JDialog implements MonitorCarga
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Valor mximo de la barra de progreso
+	 */
+	private static final int MAXIMO = 1000;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Indica si el usuario pidi cancelar la carga. Se consulta desde el hilo que
+	 * est cargando la librera.
+	 */
+	private volatile boolean cancelado;
+
+	// ************************************************************************
+	// Componentes grficos
+	// ************************************************************************
+
+	/**
+	 * Barra que muestra la fraccin del archivo de libros que ya se ley
+	 */
+	private JProgressBar barraProgreso;
+
+	/**
+	 * Botn para cancelar la carga
+	 */
+	private JButton btnCancelar;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el dilogo, pero no lo hace visible
+	 *
+	 * @param ventana       La ventana principal de la aplicacin
+	 * @param nombreArchivo El nombre del archivo de libros que se est cargando
+	 */
+	public DialogoCarga(JFrame ventana, String nombreArchivo)
+	{
+		super(ventana, "Cargando librera", false);
+
+		JPanel panel = new JPanel(new BorderLayout(0, 8));
+		panel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
+		panel.add(new JLabel("Leyendo " + nombreArchivo + "..."), BorderLayout.NORTH);
+
+		barraProgreso = new JProgressBar(0, MAXIMO);
+		barraProgreso.setStringPainted(true);
+		panel.add(barraProgreso, BorderLayout.CENTER);
+
+		btnCancelar = new JButton("Cancelar");
+		btnCancelar.addActionListener(e -> cancelar());
+		JPanel panelBoton = new JPanel();
+		panelBoton.add(btnCancelar);
+		panel.add(panelBoton, BorderLayout.SOUTH);
+
+		add(panel);
+		setDefaultCloseOperation(DO_NOTHING_ON_CLOSE);
+		addWindowListener(new WindowAdapter()
+		{
+			@Override
+			public void windowClosing(WindowEvent e)
+			{
+				cancelar();
+			}
+		});
+		setSize(360, 140);
+		setLocationRelativeTo(ventana);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Marca la carga como cancelada. El hilo que est cargando la librera se
+	 * detiene la prxima vez que consulte el monitor.
+	 */
+	public void cancelar()
+	{
+		cancelado = true;
+		btnCancelar.setEnabled(false);
+		btnCancelar.setText("Cancelando...");
+	}
+
+	@Override
+	public boolean cancelado()
+	{
+		return cancelado;
+	}
+
+	/**
+	 * Actualiza la barra de progreso. Este mtodo se llama desde el hilo que est
+	 * cargando la librera, as que la barra se actualiza en el hilo de eventos.
+	 */
+	@Override
+	public void avanzar(long bytesProcesados, long bytesTotales)
+	{
+		int valor = bytesTotales <= 0 ? MAXIMO : (int) (bytesProcesados * MAXIMO / bytesTotales);
+		SwingUtilities.invokeLater(() -> barraProgreso.setValue(valor));
+	}
+}
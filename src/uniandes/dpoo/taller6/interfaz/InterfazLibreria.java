@@ -8,6 +8,9 @@ import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.JFrame;
 import javax.swing.JMenu;
@@ -16,6 +19,7 @@ import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.KeyStroke;
+import javax.swing.SwingWorker;
 import javax.swing.UnsupportedLookAndFeelException;
 
 import com.formdev.flatlaf.FlatLightLaf;
@@ -30,6 +34,21 @@ import uniandes.dpoo.taller6.modelo.Libro;
 @SuppressWarnings("serial")
 public class InterfazLibreria extends JFrame {
 
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La cantidad máxima de errores que se toleran en el título de un libro
+	 * buscado cuando no hay ningún libro con el título exacto
+	 */
+	private static final int ERRORES_TITULO = 2;
+
+	/**
+	 * La cantidad máxima de libros parecidos que se le proponen al usuario
+	 */
+	private static final int SUGERENCIAS_TITULO = 10;
+
 	// ************************************************************************
 	// Atributos
 	// ************************************************************************
@@ -39,6 +58,12 @@ public class InterfazLibreria extends JFrame {
 	 */
 	private Libreria libreria;
 
+	/**
+	 * El diálogo de la carga que se está haciendo en este momento, o null si no se
+	 * está cargando ninguna librería
+	 */
+	private DialogoCarga cargaEnCurso;
+
 	// ************************************************************************
 	// Elementos de la interfaz
 	// ************************************************************************
@@ -136,6 +161,7 @@ public class InterfazLibreria extends JFrame {
 		panelArriba.add(panelDerecha);
 		panelLibro = new PanelLibro();
 		panelDerecha.add(panelLibro, BorderLayout.CENTER);
+		panelLibros.activarPrecarga(panelLibro.darCachePortadas());
 
 		JPanel panelAbajo = new JPanel(new BorderLayout());
 		panelBotones = new PanelBotones(this);
@@ -157,37 +183,87 @@ public class InterfazLibreria extends JFrame {
 	 * construye un objeto Librería con esa información y lo deja en el atributo
 	 * llamado 'libreria'
 	 * 
+	 * La carga se hace en un hilo aparte mientras se muestra su avance en un
+	 * diálogo que permite cancelarla. La librería anterior se puede seguir usando
+	 * hasta que la nueva termine de cargarse; si la carga se cancela o falla, la
+	 * librería anterior se conserva. Si se empieza otra carga antes de que esta
+	 * termine, esta se cancela y su resultado se descarta. Si los archivos no han
+	 * cambiado desde la última carga, la librería se carga de su instantánea.
+	 * 
 	 * @param archivo_categorias El archivo que tiene la información de las
 	 *                           categorías que se usarán para los libros
 	 * @param archivo_libros     El archivo que tiene la información de los libros
 	 */
 	public void cargarArchivos(File archivo_categorias, File archivo_libros) {
-		try {
-			libreria = new Libreria(archivo_categorias.getPath(), archivo_libros.getPath());
-			panelCategorias.actualizarCategorias(libreria.darCategorias());
-
-			boolean ans = libreria.darNuevasCategorias().isEmpty();
+		if (cargaEnCurso != null) {
+			cargaEnCurso.cancelar();
+		}
+		DialogoCarga dialogo = new DialogoCarga(this, archivo_libros.getName());
+		cargaEnCurso = dialogo;
 
-			if (ans == false) {
-				ArrayList<String> nuevas = libreria.darNuevasCategorias();
-				String nuevasS = "";
+		SwingWorker<Libreria, Void> carga = new SwingWorker<Libreria, Void>() {
+			@Override
+			protected Libreria doInBackground() throws Exception {
+				String categorias = archivo_categorias.getPath();
+				String libros = archivo_libros.getPath();
+				return new Libreria(categorias, libros, Libreria.darArchivoInstantanea(categorias, libros), dialogo);
+			}
 
-				for (int i = 0; i < nuevas.size(); i++) {
-					if (i == 0) {
-						nuevasS += " " + nuevas.get(i);
-					} else {
-						nuevasS += ", " + nuevas.get(i);
+			@Override
+			protected void done() {
+				dialogo.dispose();
+				// Si después empezó otra carga, esta pudo terminar antes de ver la
+				// cancelación: su resultado se descarta para no reemplazar al de la
+				// carga más reciente
+				boolean vigente = cargaEnCurso == dialogo;
+				if (!vigente) {
+					return;
+				}
+				cargaEnCurso = null;
+				try {
+					mostrarLibreria(get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					if (!(e.getCause() instanceof CancellationException)) {
+						JOptionPane.showMessageDialog(InterfazLibreria.this, "Hubo un error leyendo los archivos",
+								"Error de lectura", JOptionPane.ERROR_MESSAGE);
 					}
 				}
+			}
+		};
 
-				JOptionPane.showMessageDialog(panelCategorias, "Las nuevas categorias son:" + nuevasS + ".");
+		dialogo.setVisible(true);
+		carga.execute();
+	}
+
+	/**
+	 * Reemplaza la librería que se está mostrando por una que se acaba de cargar
+	 * y le informa al usuario cuáles categorías nuevas se encontraron. Se debe
+	 * llamar desde el hilo de eventos.
+	 * 
+	 * @param nueva La librería que se acaba de cargar
+	 */
+	private void mostrarLibreria(Libreria nueva) {
+		libreria = nueva;
+		panelCategorias.actualizarCategorias(libreria.darCategorias());
+
+		boolean ans = libreria.darNuevasCategorias().isEmpty();
+
+		if (ans == false) {
+			ArrayList<String> nuevas = libreria.darNuevasCategorias();
+			String nuevasS = "";
+
+			for (int i = 0; i < nuevas.size(); i++) {
+				if (i == 0) {
+					nuevasS += " " + nuevas.get(i);
+				} else {
+					nuevasS += ", " + nuevas.get(i);
+				}
 			}
-		} catch (Exception e) {
-			JOptionPane.showMessageDialog(this, "Hubo un error leyendo los archivos", "Error de lectura",
-					JOptionPane.ERROR_MESSAGE);
-			e.printStackTrace();
-		}
 
+			JOptionPane.showMessageDialog(panelCategorias, "Las nuevas categorias son:" + nuevasS + ".");
+		}
 	}
 
 	/**
@@ -216,12 +292,16 @@ public class InterfazLibreria extends JFrame {
 	 * Le pide al usuario el título de un libro y lo busca en la librería.
 	 * 
 	 * Si existe un libro, le muestra al usuario la información del libro en el
-	 * panel 'panelLibro'.
+	 * panel 'panelLibro'. Si no hay ningún libro con ese título exacto, le propone
+	 * al usuario los libros con títulos parecidos.
 	 */
 	public void buscarLibro() {
 		String titulo = JOptionPane.showInputDialog(this, "Escriba el título del libro que busca", "titulo");
 		if (titulo != null) {
 			Libro libro = libreria.buscarLibro(titulo);
+			if (libro == null) {
+				libro = elegirLibroParecido(titulo);
+			}
 			if (libro == null) {
 				JOptionPane.showMessageDialog(this, "No se encontró un libro con ese título", "No hay libro",
 						JOptionPane.INFORMATION_MESSAGE);
@@ -231,6 +311,26 @@ public class InterfazLibreria extends JFrame {
 		}
 	}
 
+	/**
+	 * Busca los libros con un título parecido al indicado. Si hay uno solo, lo
+	 * retorna; si hay varios, le pide al usuario que escoja uno.
+	 * 
+	 * @param titulo El título que escribió el usuario
+	 * @return El libro escogido, o null si no hay libros parecidos o el usuario no
+	 *         escogió ninguno
+	 */
+	private Libro elegirLibroParecido(String titulo) {
+		ArrayList<Libro> parecidos = libreria.buscarLibrosAproximados(titulo, ERRORES_TITULO, SUGERENCIAS_TITULO);
+		if (parecidos.size() <= 1) {
+			return parecidos.isEmpty() ? null : parecidos.get(0);
+		}
+		Libro[] opciones = parecidos.toArray(new Libro[0]);
+		Object escogido = JOptionPane.showInputDialog(this,
+				"No se encontró un libro con ese título. ¿Buscaba alguno de estos?", "Libros parecidos",
+				JOptionPane.QUESTION_MESSAGE, null, opciones, opciones[0]);
+		return (Libro) escogido;
+	}
+
 	/**
 	 * Busca los libros de un autor a partir de una parte del nombre del autor que
 	 * haya dado el usuario.
@@ -241,7 +341,7 @@ public class InterfazLibreria extends JFrame {
 	public void buscarLibrosAutor() {
 		String autor = JOptionPane.showInputDialog(this, "Escriba al menos una parte del autor que busca", "autor");
 		if (autor != null) {
-			ArrayList<Libro> libros = libreria.buscarLibrosAutor(autor);
+			List<Libro> libros = libreria.buscarLibrosAutor(autor);
 			if (libros.isEmpty()) {
 				JOptionPane.showMessageDialog(this, "No hay ningún autor con ese nombre", "No hay libro",
 						JOptionPane.INFORMATION_MESSAGE);
@@ -260,7 +360,7 @@ public class InterfazLibreria extends JFrame {
 
 		String autor = JOptionPane.showInputDialog(this, "Escriba el nombre del autor que está buscando", "autor");
 		if (autor != null) {
-			ArrayList<Categoria> categorias = libreria.buscarCategoriasAutor(autor);
+			List<Categoria> categorias = libreria.buscarCategoriasAutor(autor);
 			if (categorias.isEmpty()) {
 				JOptionPane.showMessageDialog(this, "No hay ningún autor con ese nombre", "No hay libro",
 						JOptionPane.INFORMATION_MESSAGE);
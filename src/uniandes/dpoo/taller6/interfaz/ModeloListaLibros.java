@@ -0,0 +1,74 @@
+package uniandes.dpoo.taller6.interfaz;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+import uniandes.dpoo.taller6.modelo.Libro;
+
+/**
+ * Modelo para una JList que muestra directamente una lista de libros, sin
+ * copiarla.
+ *
+ * Cuando se cambia la lista se dispara un nico evento de cambio de contenido,
+ * en lugar de un evento por cada libro como ocurre con DefaultListModel.
+ */
+@SuppressWarnings("serial")
+public class ModeloListaLibros extends AbstractListModel<Libro>
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La lista de libros que se est mostrando. No se copia, as que quien la
+	 * entrega no la debe modificar mientras se est mostrando.
+	 */
+	private List<Libro> libros;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un modelo sin libros
+	 */
+	public ModeloListaLibros()
+	{
+		libros = new ArrayList<Libro>();
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Cambia la lista de libros que se muestra y dispara un solo evento para
+	 * informarle a la JList
+	 *
+	 * @param nuevosLibros La nueva lista de libros. No se copia.
+	 */
+	public void cambiarLibros(List<Libro> nuevosLibros)
+	{
+		int tamanioAnterior = libros.size();
+		libros = nuevosLibros;
+		int tamanioMaximo = Math.max(tamanioAnterior, libros.size());
+		if (tamanioMaximo > 0)
+		{
+			fireContentsChanged(this, 0, tamanioMaximo - 1);
+		}
+	}
+
+	@Override
+	public int getSize()
+	{
+		return libros.size();
+	}
+
+	@Override
+	public Libro getElementAt(int index)
+	{
+		return libros.get(index);
+	}
+}
@@ -29,6 +29,11 @@ public class PanelLibro extends JPanel {
 	 */
 	private Libro libro;
 
+	/**
+	 * Las portadas que ya se decodificaron
+	 */
+	private CachePortadas cachePortadas;
+
 	// ************************************************************************
 	// Componentes gráficos
 	// ************************************************************************
@@ -73,6 +78,7 @@ public class PanelLibro extends JPanel {
 	 */
 	public PanelLibro() {
 		setBorder(new TitledBorder("Libro"));
+		cachePortadas = new CachePortadas(CachePortadas.PRESUPUESTO_POR_DEFECTO);
 
 		txtTitulo = new JTextField(" ");
 		txtTitulo.setEditable(false);
@@ -149,7 +155,7 @@ public class PanelLibro extends JPanel {
 			txtCategoria.setText(nuevolibro.darCategoria().darNombre());
 			txtCalificacion.setText("" + nuevolibro.darCalificacion());
 			Imagen portada = nuevolibro.darPortada();
-			labPortada.setIcon(new ImageIcon("./data/" + portada.darRutaArchivo()));
+			mostrarPortada(nuevolibro, portada.darRutaArchivo());
 			labDetallesImagen.setText(portada.darRutaArchivo() + ": " + portada.darAncho() + "x" + portada.darAlto());
 		} else {
 			txtTitulo.setText("");
@@ -157,7 +163,42 @@ public class PanelLibro extends JPanel {
 			txtCategoria.setText("");
 			txtCalificacion.setText("");
 			labPortada.setIcon(null);
+			labPortada.setText("");
 			labDetallesImagen.setText("");
 		}
 	}
+
+	/**
+	 * Muestra la portada de un libro. Si la portada no está en la caché, se
+	 * muestra un aviso mientras se decodifica en otro hilo, y se muestra la
+	 * portada cuando esté lista si el libro todavía es el que se está mostrando.
+	 * 
+	 * @param libroPortada El libro al que corresponde la portada
+	 * @param rutaArchivo  La ruta de la portada, relativa a la carpeta de datos
+	 */
+	private void mostrarPortada(Libro libroPortada, String rutaArchivo) {
+		ImageIcon icono = cachePortadas.buscar(rutaArchivo);
+		if (icono != null) {
+			labPortada.setText("");
+			labPortada.setIcon(icono);
+		} else {
+			labPortada.setIcon(null);
+			labPortada.setText("Cargando portada...");
+			cachePortadas.cargar(rutaArchivo, cargado -> {
+				if (libro == libroPortada) {
+					labPortada.setText("");
+					labPortada.setIcon(cargado);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Retorna la caché de portadas del panel
+	 * 
+	 * @return cachePortadas
+	 */
+	public CachePortadas darCachePortadas() {
+		return cachePortadas;
+	}
 }
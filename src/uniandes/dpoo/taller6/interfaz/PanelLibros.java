@@ -1,9 +1,10 @@
 package uniandes.dpoo.taller6.interfaz;
 
 import java.awt.BorderLayout;
-import java.util.ArrayList;
+import java.awt.FontMetrics;
+import java.util.List;
 
-import javax.swing.DefaultListModel;
+import javax.swing.DefaultListCellRenderer;
 import javax.swing.JList;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -42,7 +43,18 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 	/**
 	 * El modelo con la información que se muestra en el componente listaLibros
 	 */
-	private DefaultListModel<Libro> modeloLibros;
+	private ModeloListaLibros modeloLibros;
+
+	/**
+	 * El panel con barras de desplazamiento que contiene a listaLibros
+	 */
+	private JScrollPane panelDesplazamiento;
+
+	/**
+	 * El objeto que precarga las portadas de los libros cercanos al seleccionado.
+	 * Es null mientras no se active la precarga.
+	 */
+	private PrecargadorPortadas precargador;
 
 	// ************************************************************************
 	// Constructores
@@ -59,13 +71,20 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 		ventana = interfazLibreria;
 		setBorder(new TitledBorder("Libros"));
 		setLayout(new BorderLayout());
-		modeloLibros = new DefaultListModel<Libro>();
+		modeloLibros = new ModeloListaLibros();
 		listaLibros = new JList<>(modeloLibros);
 		listaLibros.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+
+		// Con un tamaño fijo para las celdas, la lista no tiene que medir todos los
+		// libros para calcular su tamaño: sólo dibuja los que están a la vista. El
+		// ancho se ajusta en actualizarLibros.
+		int altoCelda = new DefaultListCellRenderer().getListCellRendererComponent(listaLibros, "Título", 0, false, false)
+				.getPreferredSize().height;
+		listaLibros.setFixedCellHeight(altoCelda);
 		listaLibros.addListSelectionListener(this);
 
-		JScrollPane panel = new JScrollPane(listaLibros);
-		add(panel);
+		panelDesplazamiento = new JScrollPane(listaLibros);
+		add(panelDesplazamiento);
 	}
 
 	// ************************************************************************
@@ -77,13 +96,50 @@ public class PanelLibros extends JPanel implements ListSelectionListener
 	 * 
 	 * @param libros La nueva lista de libros que se debe mostrar.
 	 */
-	public void actualizarLibros(ArrayList<Libro> libros)
+	public void actualizarLibros(List<Libro> libros)
+	{
+		listaLibros.clearSelection();
+
+		// Para que la barra de desplazamiento horizontal alcance a mostrar los
+		// títulos largos, el ancho de las celdas es el del texto más ancho. Sólo se
+		// mide el texto con la fuente de la lista, sin pedirle a la lista que
+		// construya y mida una celda por cada libro.
+		if (!libros.isEmpty())
+		{
+			FontMetrics medidas = listaLibros.getFontMetrics(listaLibros.getFont());
+			Libro masAncho = null;
+			int mayorAncho = -1;
+			for (Libro libro : libros)
+			{
+				int ancho = medidas.stringWidth(libro.toString());
+				if (ancho > mayorAncho)
+				{
+					mayorAncho = ancho;
+					masAncho = libro;
+				}
+			}
+			listaLibros.setFixedCellWidth(listaLibros.getCellRenderer()
+					.getListCellRendererComponent(listaLibros, masAncho, 0, false, false).getPreferredSize().width);
+		}
+
+		modeloLibros.cambiarLibros(libros);
+		listaLibros.ensureIndexIsVisible(0);
+	}
+
+	/**
+	 * Empieza a precargar en la caché las portadas de los libros cercanos al
+	 * libro seleccionado
+	 * 
+	 * @param cache La caché donde deben quedar las portadas
+	 */
+	public void activarPrecarga(CachePortadas cache)
 	{
-		modeloLibros.clear();
-		for (Libro libro : libros)
+		if (precargador != null)
 		{
-			modeloLibros.addElement(libro);
+			precargador.detener();
 		}
+		precargador = new PrecargadorPortadas(listaLibros, panelDesplazamiento.getViewport(), cache,
+				PrecargadorPortadas.VECINOS_POR_DEFECTO, cache.darPresupuesto() / 4);
 	}
 
 	// ************************************************************************
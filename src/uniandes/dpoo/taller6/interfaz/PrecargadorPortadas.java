@@ -0,0 +1,235 @@
+package uniandes.dpoo.taller6.interfaz;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import javax.swing.JList;
+import javax.swing.JViewport;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+
+import uniandes.dpoo.taller6.modelo.Imagen;
+import uniandes.dpoo.taller6.modelo.Libro;
+
+/**
+ * Esta clase observa la lista de libros y precarga en la cach las portadas de
+ * los libros vecinos al libro seleccionado, para que ya estn decodificadas
+ * cuando el usuario se mueva por la lista.
+ *
+ * Slo se precargan los vecinos que estn cerca de la parte visible de la
+ * lista: cuando un libro sale de esa zona, su precarga se cancela si todava no
+ * ha empezado. Las portadas que se estn precargando no pueden superar el
+ * presupuesto de memoria del precargador.
+ */
+public class PrecargadorPortadas implements ListSelectionListener, ChangeListener
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad por defecto de libros que se precargan antes y despus del libro
+	 * seleccionado
+	 */
+	public static final int VECINOS_POR_DEFECTO = 5;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La lista de libros que se observa
+	 */
+	private JList<Libro> lista;
+
+	/**
+	 * La parte visible de la lista
+	 */
+	private JViewport vista;
+
+	/**
+	 * La cach donde quedan las portadas precargadas
+	 */
+	private CachePortadas cache;
+
+	/**
+	 * Cantidad de libros que se precargan antes y despus del libro seleccionado
+	 */
+	private int vecinos;
+
+	/**
+	 * Cantidad mxima de bytes que pueden ocupar las portadas que se precargan
+	 */
+	private long presupuesto;
+
+	/**
+	 * Las precargas programadas segn la ruta de la portada
+	 */
+	private HashMap<String, Future<?>> precargas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el precargador y lo registra para observar la seleccin de la
+	 * lista y los cambios en su parte visible
+	 *
+	 * @param laLista       La lista de libros que se observa
+	 * @param laVista       La parte visible de la lista
+	 * @param laCache       La cach donde quedan las portadas
+	 * @param losVecinos    Cantidad de libros que se precargan antes y despus del
+	 *                      libro seleccionado
+	 * @param elPresupuesto Cantidad mxima de bytes que pueden ocupar las
+	 *                      portadas que se precargan
+	 */
+	public PrecargadorPortadas(JList<Libro> laLista, JViewport laVista, CachePortadas laCache, int losVecinos,
+			long elPresupuesto)
+	{
+		lista = laLista;
+		vista = laVista;
+		cache = laCache;
+		vecinos = losVecinos;
+		presupuesto = elPresupuesto;
+		precargas = new HashMap<String, Future<?>>();
+
+		lista.addListSelectionListener(this);
+		vista.addChangeListener(this);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Deja de observar la lista y cancela las precargas que no han empezado
+	 */
+	public void detener()
+	{
+		lista.removeListSelectionListener(this);
+		vista.removeChangeListener(this);
+		for (Future<?> precarga : precargas.values())
+		{
+			precarga.cancel(false);
+		}
+		precargas.clear();
+	}
+
+	/**
+	 * Calcula cules portadas se deben precargar, cancela las precargas que ya no
+	 * hacen falta y programa las nuevas. Se debe llamar desde el hilo de eventos.
+	 */
+	public void actualizar()
+	{
+		LinkedHashMap<String, Long> deseadas = calcularDeseadas();
+
+		Iterator<Map.Entry<String, Future<?>>> iterador = precargas.entrySet().iterator();
+		while (iterador.hasNext())
+		{
+			Map.Entry<String, Future<?>> precarga = iterador.next();
+			if (!deseadas.containsKey(precarga.getKey()))
+			{
+				precarga.getValue().cancel(false);
+				iterador.remove();
+			}
+			else if (precarga.getValue().isDone())
+			{
+				iterador.remove();
+			}
+		}
+
+		for (Map.Entry<String, Long> deseada : deseadas.entrySet())
+		{
+			String ruta = deseada.getKey();
+			if (!precargas.containsKey(ruta))
+			{
+				precargas.put(ruta, cache.precargar(ruta, deseada.getValue()));
+			}
+		}
+	}
+
+	/**
+	 * Calcula las portadas que se deberan precargar: las de los vecinos del libro
+	 * seleccionado (o del primer libro visible si no hay seleccin) que estn
+	 * cerca de la parte visible de la lista, empezando por los ms cercanos y
+	 * mientras quepan en el presupuesto.
+	 *
+	 * @return Las rutas de las portadas con su tamao estimado en bytes, en el
+	 *         orden en el que se deberan precargar
+	 */
+	private LinkedHashMap<String, Long> calcularDeseadas()
+	{
+		LinkedHashMap<String, Long> deseadas = new LinkedHashMap<String, Long>();
+		int cantidad = lista.getModel().getSize();
+		int primeraVisible = lista.getFirstVisibleIndex();
+		int ultimaVisible = lista.getLastVisibleIndex();
+		if (cantidad == 0 || primeraVisible < 0)
+		{
+			return deseadas;
+		}
+
+		int centro = lista.getSelectedIndex();
+		if (centro < 0)
+		{
+			centro = primeraVisible;
+		}
+		int desde = Math.max(0, primeraVisible - vecinos);
+		int hasta = Math.min(cantidad - 1, ultimaVisible + vecinos);
+
+		long bytes = 0;
+		for (int distancia = 1; distancia <= vecinos; distancia++)
+		{
+			int[] posiciones = { centro + distancia, centro - distancia };
+			for (int posicion : posiciones)
+			{
+				if (posicion < desde || posicion > hasta)
+				{
+					continue;
+				}
+				Imagen portada = lista.getModel().getElementAt(posicion).darPortada();
+				if (portada == null || deseadas.containsKey(portada.darRutaArchivo()))
+				{
+					continue;
+				}
+				long estimado = 4L * Math.max(0, portada.darAncho()) * Math.max(0, portada.darAlto());
+				if (bytes + estimado > presupuesto)
+				{
+					return deseadas;
+				}
+				bytes += estimado;
+				deseadas.put(portada.darRutaArchivo(), estimado);
+			}
+		}
+		return deseadas;
+	}
+
+	// ************************************************************************
+	// Mtodos implementados de las interfaces de los listeners
+	// ************************************************************************
+
+	/**
+	 * Este mtodo se invoca cuando cambia la seleccin de la lista
+	 */
+	@Override
+	public void valueChanged(ListSelectionEvent e)
+	{
+		if (!e.getValueIsAdjusting())
+		{
+			actualizar();
+		}
+	}
+
+	/**
+	 * Este mtodo se invoca cuando cambia la parte visible de la lista
+	 */
+	@Override
+	public void stateChanged(ChangeEvent e)
+	{
+		actualizar();
+	}
+}
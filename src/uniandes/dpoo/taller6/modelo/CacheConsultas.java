@@ -0,0 +1,462 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+import uniandes.dpoo.taller6.modelo.MetricasLibreria.Operacion;
+
+/**
+ * Esta clase guarda los resultados de las consultas ms recientes de una
+ * librera, segn la operacin y su argumento.
+ *
+ * La librera no agrega libros despus de cargarse, as que un resultado slo
+ * puede cambiar cuando se retira alguno de los libros de los que depende. Por
+ * eso cada resultado queda asociado a los autores de esos libros, y cuando se
+ * retiran libros slo se descartan los resultados que dependen de sus autores.
+ * Los resultados guardan las categoras mismas, as que cambiarle el nombre a
+ * una categora no los afecta.
+ *
+ * La cach no usa candados. Los resultados estn en un mapa concurrente y una
+ * bsqueda slo marca que el resultado se us. Cada resultado ocupa una casilla
+ * de un anillo con CAPACIDAD casillas; para guardar un resultado una manecilla
+ * recorre el anillo (algoritmo CLOCK): las casillas vacas o con resultados
+ * descartados se ocupan, los resultados usados desde la ltima vuelta pierden
+ * la marca y se saltan, y el primer resultado sin usar se reemplaza. Las
+ * casillas se cambian con compareAndSet, as que dos hilos nunca ocupan la
+ * misma casilla ni descartan dos veces el mismo resultado.
+ *
+ * Adems del lmite de resultados hay otro de elementos guardados entre todos
+ * los resultados: cuando se supera, la manecilla sigue descartando resultados
+ * sin usar. Los resultados muy grandes no se guardan, porque desplazan a muchos
+ * resultados pequeos. Los resultados se guardan como listas inmodificables y
+ * se entregan sin copiarlos.
+ */
+class CacheConsultas
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La cantidad mxima de resultados que se guardan. Se puede cambiar con
+	 * -Dtaller6.cacheConsultas; con 0 no se guarda ningn resultado.
+	 */
+	static final int CAPACIDAD = Integer.getInteger("taller6.cacheConsultas", 1024);
+
+	/**
+	 * La cantidad mxima de elementos (libros o categoras) que se guardan entre
+	 * todos los resultados. Se puede cambiar con -Dtaller6.cacheConsultas.elementos.
+	 */
+	static final int CAPACIDAD_ELEMENTOS = Integer.getInteger("taller6.cacheConsultas.elementos", 64 * 1024);
+
+	/**
+	 * La cantidad mxima de elementos de un resultado que se guarda
+	 */
+	static final int TAMANIO_MAXIMO_RESULTADO = CAPACIDAD_ELEMENTOS / 64;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los resultados guardados
+	 */
+	private final ConcurrentHashMap<Consulta, Entrada> entradas;
+
+	/**
+	 * Las casillas que recorre la manecilla. Una casilla es null o tiene un
+	 * resultado, que puede estar descartado.
+	 */
+	private final AtomicReferenceArray<Entrada> anillo;
+
+	/**
+	 * La cantidad de pasos que ha dado la manecilla. La casilla actual es el
+	 * residuo de dividirla por el tamao del anillo.
+	 */
+	private final AtomicInteger manecilla;
+
+	/**
+	 * Los resultados que dependen de cada autor (con el nombre exacto)
+	 */
+	private final ConcurrentHashMap<String, Set<Entrada>> entradasPorAutor;
+
+	/**
+	 * La suma de los tamaos de los resultados guardados
+	 */
+	private final AtomicLong elementos;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye una cach vaca
+	 */
+	CacheConsultas()
+	{
+		entradas = new ConcurrentHashMap<Consulta, Entrada>();
+		anillo = new AtomicReferenceArray<Entrada>(CAPACIDAD);
+		manecilla = new AtomicInteger();
+		entradasPorAutor = new ConcurrentHashMap<String, Set<Entrada>>();
+		elementos = new AtomicLong();
+	}
+
+	/**
+	 * Construye una copia de la cach para otra versin de la librera. Los
+	 * resultados se traducen a los libros y las categoras de esa versin, y
+	 * conservan su casilla y si se han usado. Los resultados que no cambian al
+	 * traducirlos se comparten.
+	 *
+	 * @param libros     Retorna el libro de la otra versin que corresponde a
+	 *                   cada libro, o null si no est en ella
+	 * @param categorias Retorna la categora de la otra versin que corresponde
+	 *                   a cada categora, o null si no est en ella
+	 * @return La cach nueva. Los resultados con algn elemento que no est en
+	 *         la otra versin no pasan a ella.
+	 */
+	CacheConsultas copiar(Function<Libro, Libro> libros, Function<Categoria, Categoria> categorias)
+	{
+		CacheConsultas copia = new CacheConsultas();
+		copia.manecilla.set(manecilla.get());
+		for (int i = 0; i < anillo.length(); i++)
+		{
+			Entrada entrada = anillo.get(i);
+			if (entrada == null || entrada.descartada.get())
+			{
+				continue;
+			}
+			Object[] resultado = new Object[entrada.resultado.size()];
+			boolean igual = true;
+			for (int j = 0; resultado != null && j < resultado.length; j++)
+			{
+				Object elemento = entrada.resultado.get(j);
+				resultado[j] = elemento instanceof Libro ? libros.apply((Libro) elemento)
+						: categorias.apply((Categoria) elemento);
+				if (resultado[j] == null)
+				{
+					resultado = null;
+				}
+				else
+				{
+					igual = igual && resultado[j] == elemento;
+				}
+			}
+			if (resultado != null)
+			{
+				Entrada nueva = new Entrada(entrada.consulta, igual ? entrada.resultado : List.of(resultado),
+						entrada.autores);
+				nueva.usada = entrada.usada;
+				copia.anillo.set(i, nueva);
+				copia.registrar(nueva);
+			}
+		}
+		return copia;
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Busca el resultado guardado de una consulta
+	 *
+	 * @param operacion La operacin consultada
+	 * @param argumento El argumento de la consulta
+	 * @return El resultado, en una lista inmodificable, o null si no est
+	 *         guardado
+	 */
+	<T> List<T> buscar(Operacion operacion, String argumento)
+	{
+		if (CAPACIDAD == 0)
+		{
+			return null;
+		}
+
+		Entrada entrada = entradas.get(new Consulta(operacion, argumento));
+		MetricasLibreria.registrarConsultaCache(entrada != null);
+		if (entrada == null)
+		{
+			return null;
+		}
+		// Slo se escribe la marca si cambia, para que los aciertos repetidos desde
+		// varios hilos no compitan por la misma lnea de memoria
+		if (!entrada.usada)
+		{
+			entrada.usada = true;
+		}
+		@SuppressWarnings("unchecked")
+		List<T> resultado = (List<T>) entrada.resultado;
+		return resultado;
+	}
+
+	/**
+	 * Guarda el resultado de una consulta que retorna libros. El resultado
+	 * depende de los autores de esos libros.
+	 *
+	 * @param operacion La operacin consultada
+	 * @param argumento El argumento de la consulta
+	 * @param libros    Los libros que retorn la consulta
+	 */
+	void guardarLibros(Operacion operacion, String argumento, List<Libro> libros)
+	{
+		if (CAPACIDAD == 0 || libros.size() > TAMANIO_MAXIMO_RESULTADO)
+		{
+			return;
+		}
+
+		HashSet<String> autores = new HashSet<String>();
+		for (Libro libro : libros)
+		{
+			autores.add(libro.darAutor());
+		}
+		guardar(operacion, argumento, libros, autores);
+	}
+
+	/**
+	 * Guarda el resultado de una consulta. Si el resultado tiene ms de
+	 * TAMANIO_MAXIMO_RESULTADO elementos no se guarda.
+	 *
+	 * @param operacion La operacin consultada
+	 * @param argumento El argumento de la consulta
+	 * @param resultado El resultado de la consulta. Si es una lista inmodificable
+	 *                  se guarda sin copiarla.
+	 * @param autores   Los autores de los libros de los que depende el resultado
+	 */
+	void guardar(Operacion operacion, String argumento, List<?> resultado, Collection<String> autores)
+	{
+		if (CAPACIDAD == 0 || resultado.size() > TAMANIO_MAXIMO_RESULTADO)
+		{
+			return;
+		}
+
+		Entrada nueva = new Entrada(new Consulta(operacion, argumento), List.copyOf(resultado),
+				new HashSet<String>(autores).toArray(new String[0]));
+		ocuparCasilla(nueva);
+		registrar(nueva);
+
+		// Si la casilla ya se volvi a ocupar, el resultado no se queda en el mapa
+		if (nueva.descartada.get())
+		{
+			olvidar(nueva);
+		}
+
+		// Cada casilla revisada se descarta o pierde su marca, as que en dos
+		// vueltas se descartan todos los resultados que haga falta
+		for (int pasos = 0; elementos.get() > CAPACIDAD_ELEMENTOS && pasos < 2 * anillo.length(); pasos++)
+		{
+			int posicion = avanzar();
+			Entrada revisada = anillo.get(posicion);
+			if (revisada == null)
+			{
+				continue;
+			}
+			if (revisada.usada && !revisada.descartada.get())
+			{
+				revisada.usada = false;
+			}
+			else if (anillo.compareAndSet(posicion, revisada, null) && descartar(revisada))
+			{
+				MetricasLibreria.registrarExpulsionCache();
+			}
+		}
+	}
+
+	/**
+	 * Descarta los resultados que dependen de los libros de los autores indicados
+	 *
+	 * @param autores Los autores (con el nombre exacto) de los libros que se
+	 *                retiraron
+	 */
+	void invalidarAutores(Collection<String> autores)
+	{
+		int descartados = 0;
+		for (String autor : autores)
+		{
+			Set<Entrada> dependientes = entradasPorAutor.remove(autor);
+			if (dependientes == null)
+			{
+				continue;
+			}
+			for (Entrada entrada : dependientes)
+			{
+				if (descartar(entrada))
+				{
+					descartados++;
+				}
+			}
+		}
+		MetricasLibreria.registrarInvalidacionesCache(descartados);
+	}
+
+	/**
+	 * Retorna la cantidad de resultados guardados
+	 */
+	int contarResultados()
+	{
+		return entradas.size();
+	}
+
+	/**
+	 * Mueve la manecilla una casilla
+	 *
+	 * @return La casilla en la que estaba la manecilla
+	 */
+	private int avanzar()
+	{
+		return Math.floorMod(manecilla.getAndIncrement(), anillo.length());
+	}
+
+	/**
+	 * Pone un resultado en la siguiente casilla libre del anillo, o en la del
+	 * siguiente resultado que no se ha usado desde la ltima vuelta, que se
+	 * descarta
+	 */
+	private void ocuparCasilla(Entrada nueva)
+	{
+		while (true)
+		{
+			int posicion = avanzar();
+			Entrada revisada = anillo.get(posicion);
+			if (revisada != null && revisada.usada && !revisada.descartada.get())
+			{
+				revisada.usada = false;
+				continue;
+			}
+			if (anillo.compareAndSet(posicion, revisada, nueva))
+			{
+				if (revisada != null && descartar(revisada))
+				{
+					MetricasLibreria.registrarExpulsionCache();
+				}
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Agrega un resultado al mapa, lo asocia a sus autores y descarta el
+	 * resultado anterior de la misma consulta
+	 */
+	private void registrar(Entrada entrada)
+	{
+		elementos.addAndGet(entrada.resultado.size());
+		for (String autor : entrada.autores)
+		{
+			entradasPorAutor.computeIfAbsent(autor, a -> ConcurrentHashMap.newKeySet(2)).add(entrada);
+		}
+		Entrada anterior = entradas.put(entrada.consulta, entrada);
+		if (anterior != null)
+		{
+			descartar(anterior);
+		}
+	}
+
+	/**
+	 * Descarta un resultado: lo retira del mapa y de las listas de sus autores. El
+	 * resultado se queda en su casilla hasta que la manecilla la vuelva a
+	 * ocupar.
+	 *
+	 * @return true si el resultado no estaba descartado
+	 */
+	private boolean descartar(Entrada entrada)
+	{
+		if (!entrada.descartada.compareAndSet(false, true))
+		{
+			return false;
+		}
+		elementos.addAndGet(-entrada.resultado.size());
+		olvidar(entrada);
+		return true;
+	}
+
+	/**
+	 * Retira un resultado descartado del mapa y de las listas de sus autores
+	 */
+	private void olvidar(Entrada entrada)
+	{
+		entradas.remove(entrada.consulta, entrada);
+		for (String autor : entrada.autores)
+		{
+			entradasPorAutor.computeIfPresent(autor, (a, dependientes) -> {
+				dependientes.remove(entrada);
+				return dependientes.isEmpty() ? null : dependientes;
+			});
+		}
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Identifica una consulta por su operacin y su argumento
+	 */
+	private static final class Consulta
+	{
+		private final Operacion operacion;
+
+		private final String argumento;
+
+		Consulta(Operacion operacion, String argumento)
+		{
+			this.operacion = operacion;
+			this.argumento = argumento;
+		}
+
+		@Override
+		public boolean equals(Object otro)
+		{
+			if (!(otro instanceof Consulta))
+			{
+				return false;
+			}
+			Consulta consulta = (Consulta) otro;
+			return operacion == consulta.operacion && argumento.equals(consulta.argumento);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * operacion.hashCode() + argumento.hashCode();
+		}
+	}
+
+	/**
+	 * Un resultado guardado, la consulta que lo produjo y los autores de los que
+	 * depende
+	 */
+	private static final class Entrada
+	{
+		private final Consulta consulta;
+
+		private final List<?> resultado;
+
+		private final String[] autores;
+
+		/**
+		 * Indica si el resultado se us desde la ltima vez que la manecilla pas
+		 * por su casilla
+		 */
+		private volatile boolean usada;
+
+		/**
+		 * Indica si el resultado ya se descart
+		 */
+		private final AtomicBoolean descartada = new AtomicBoolean();
+
+		Entrada(Consulta consulta, List<?> resultado, String[] autores)
+		{
+			this.consulta = consulta;
+			this.resultado = resultado;
+			this.autores = autores;
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.taller6.modelo.MetricasLibreria.Operacion;
+
+/**
+ * Verifica qu resultados descarta la cach de consultas al retirar libros, al
+ * superar sus lmites y al copiarse. La ltima prueba usa la librera completa y
+ * se debe ejecutar desde la carpeta del proyecto, porque lee los archivos de
+ * ./data.
+ */
+class CacheConsultasTest {
+
+	private static final Operacion AUTOR = Operacion.BUSCAR_LIBROS_AUTOR;
+
+	private CacheConsultas cache;
+
+	private Categoria categoria;
+
+	@BeforeEach
+	void setUp() {
+		cache = new CacheConsultas();
+		categoria = new Categoria("Novela", true);
+	}
+
+	@Test
+	void testInvalidarSoloDescartaLosAutoresRetirados() {
+		cache.guardarLibros(AUTOR, "a", libros("Ana", "Ana"));
+		cache.guardarLibros(AUTOR, "b", libros("Beto"));
+		cache.guardarLibros(AUTOR, "ac", libros("Ana", "Carla"));
+		cache.guardar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Carla", new ArrayList<Categoria>(List.of(categoria)),
+				Collections.singleton("Carla"));
+
+		cache.invalidarAutores(Arrays.asList("Ana", "Nadie"));
+
+		assertNull(cache.buscar(AUTOR, "a"));
+		assertNull(cache.buscar(AUTOR, "ac"));
+		assertEquals(1, cache.<Libro>buscar(AUTOR, "b").size());
+		assertSame(categoria, cache.<Categoria>buscar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Carla").get(0));
+		assertEquals(2, cache.contarResultados());
+
+		cache.invalidarAutores(Collections.singleton("Carla"));
+		assertNull(cache.buscar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Carla"));
+		assertEquals(1, cache.contarResultados());
+	}
+
+	@Test
+	void testLosResultadosNoSePuedenModificar() {
+		ArrayList<Libro> libros = libros("Ana", "Beto");
+		cache.guardarLibros(AUTOR, "x", libros);
+		libros.clear();
+		List<Libro> encontrados = cache.buscar(AUTOR, "x");
+		assertEquals(2, encontrados.size());
+		assertThrows(UnsupportedOperationException.class, () -> encontrados.clear());
+		assertSame(encontrados, cache.buscar(AUTOR, "x"));
+	}
+
+	@Test
+	void testLosResultadosGrandesNoSeGuardan() {
+		String[] autores = new String[CacheConsultas.TAMANIO_MAXIMO_RESULTADO + 1];
+		Arrays.fill(autores, "Ana");
+		cache.guardarLibros(AUTOR, "grande", libros(autores));
+		assertNull(cache.buscar(AUTOR, "grande"));
+
+		cache.guardarLibros(AUTOR, "limite", libros(Arrays.copyOf(autores, autores.length - 1)));
+		assertNotNull(cache.buscar(AUTOR, "limite"));
+	}
+
+	@Test
+	void testLosResultadosUsadosSobrevivenAlLimite() {
+		for (int i = 0; i < CacheConsultas.CAPACIDAD; i++) {
+			cache.guardarLibros(AUTOR, "consulta " + i, libros("Autor " + i));
+		}
+		assertNotNull(cache.buscar(AUTOR, "consulta 0"));
+
+		cache.guardarLibros(AUTOR, "nueva", libros("Nuevo"));
+
+		assertEquals(CacheConsultas.CAPACIDAD, cache.contarResultados());
+		assertNotNull(cache.buscar(AUTOR, "consulta 0"));
+		assertNull(cache.buscar(AUTOR, "consulta 1"));
+		assertNotNull(cache.buscar(AUTOR, "nueva"));
+
+		// El autor del resultado descartado ya no tiene consultas asociadas
+		cache.invalidarAutores(Collections.singleton("Autor 1"));
+		assertEquals(CacheConsultas.CAPACIDAD, cache.contarResultados());
+	}
+
+	@Test
+	void testLimiteDeElementos() {
+		String[] autores = new String[CacheConsultas.TAMANIO_MAXIMO_RESULTADO];
+		Arrays.fill(autores, "Ana");
+		int cabenCompletos = CacheConsultas.CAPACIDAD_ELEMENTOS / autores.length;
+		for (int i = 0; i <= cabenCompletos; i++) {
+			cache.guardarLibros(AUTOR, "consulta " + i, libros(autores));
+		}
+		assertEquals(cabenCompletos, cache.contarResultados());
+		assertNull(cache.buscar(AUTOR, "consulta 0"));
+		assertNotNull(cache.buscar(AUTOR, "consulta " + cabenCompletos));
+	}
+
+	@Test
+	void testCopiaTraduceLosResultados() {
+		ArrayList<Libro> originales = libros("Ana", "Beto", "Carla");
+		cache.guardarLibros(AUTOR, "ab", new ArrayList<Libro>(originales.subList(0, 2)));
+		cache.guardarLibros(AUTOR, "c", new ArrayList<Libro>(originales.subList(2, 3)));
+		cache.guardar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Ana", new ArrayList<Categoria>(List.of(categoria)),
+				Collections.singleton("Ana"));
+
+		// Carla no pasa a la copia
+		Categoria categoriaCopia = new Categoria("Novela", true);
+		IdentityHashMap<Categoria, Categoria> categorias = new IdentityHashMap<Categoria, Categoria>();
+		categorias.put(categoria, categoriaCopia);
+		IdentityHashMap<Libro, Libro> copias = new IdentityHashMap<Libro, Libro>();
+		for (Libro libro : originales.subList(0, 2)) {
+			copias.put(libro, new Libro(libro.darTitulo(), libro.darAutor(), libro.darCalificacion(), categoriaCopia));
+		}
+		CacheConsultas copia = cache.copiar(copias::get, categorias::get);
+
+		List<Libro> ab = copia.buscar(AUTOR, "ab");
+		assertSame(copias.get(originales.get(0)), ab.get(0));
+		assertSame(copias.get(originales.get(1)), ab.get(1));
+		assertSame(categoriaCopia, copia.<Categoria>buscar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Ana").get(0));
+		assertNull(copia.buscar(AUTOR, "c"));
+
+		copia.invalidarAutores(Collections.singleton("Ana"));
+		assertNull(copia.buscar(AUTOR, "ab"));
+		assertSame(originales.get(0), cache.<Libro>buscar(AUTOR, "ab").get(0));
+		assertNotNull(cache.buscar(Operacion.BUSCAR_CATEGORIAS_AUTOR, "Ana"));
+	}
+
+	@Test
+	void testVersionesNuevasConservanResultadosVigentes() throws Exception {
+		LibreriaConcurrente libreria = new LibreriaConcurrente("./data/categorias.csv", "./data/libreria.csv");
+		String[] consultas = { "verne", "king", "a", "allende", "rowling" };
+		for (String consulta : consultas) {
+			libreria.buscarLibrosAutor(consulta);
+		}
+		libreria.borrarLibros("Stephen King");
+
+		Libreria version = libreria.darVersion();
+		IdentityHashMap<Libro, Boolean> vigentes = new IdentityHashMap<Libro, Boolean>();
+		for (Libro libro : version.darLibros()) {
+			vigentes.put(libro, true);
+		}
+		for (String consulta : consultas) {
+			ArrayList<Libro> esperados = new ArrayList<Libro>();
+			for (Categoria categoria : version.darCategorias()) {
+				for (Libro libro : categoria.darLibros()) {
+					if (libro.darAutor().toLowerCase().contains(consulta)) {
+						esperados.add(libro);
+					}
+				}
+			}
+			List<Libro> encontrados = libreria.buscarLibrosAutor(consulta);
+			assertEquals(esperados.size(), encontrados.size(), consulta);
+			for (int i = 0; i < esperados.size(); i++) {
+				assertSame(esperados.get(i), encontrados.get(i), consulta);
+				assertTrue(vigentes.containsKey(encontrados.get(i)), consulta);
+			}
+		}
+	}
+
+	private ArrayList<Libro> libros(String... autores) {
+		ArrayList<Libro> libros = new ArrayList<Libro>();
+		for (int i = 0; i < autores.length; i++) {
+			libros.add(new Libro("Libro " + i, autores[i], 3, categoria));
+		}
+		return libros;
+	}
+}
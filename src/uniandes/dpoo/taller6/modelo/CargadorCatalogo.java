@@ -0,0 +1,432 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Esta clase se encarga de leer el archivo CSV con la informacin de los libros
+ * de una librera.
+ *
+ * El archivo se proyecta en memoria y se divide en bloques que siempre terminan
+ * en un final de lnea. Los bloques se interpretan en paralelo usando todos los
+ * procesadores disponibles, pero se le entregan al consumidor en el mismo orden
+ * en el que aparecen en el archivo. Slo se mantienen en memoria unos pocos
+ * bloques a la vez.
+ */
+class CargadorCatalogo
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Tamao aproximado en bytes de cada bloque del archivo
+	 */
+	private static final int TAMANIO_BLOQUE = 4 * 1024 * 1024;
+
+	/**
+	 * Tamao del buffer que se usa para buscar el final de una lnea
+	 */
+	private static final int TAMANIO_BUSQUEDA = 8 * 1024;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El nombre del archivo CSV con la informacin de los libros
+	 */
+	private String nombreArchivo;
+
+	/**
+	 * La codificacin con la que se interpreta el archivo. Es la misma que usa un
+	 * FileReader.
+	 */
+	private Charset codificacion;
+
+	/**
+	 * La cantidad de hilos que se usan para interpretar los bloques
+	 */
+	private int hilos;
+
+	/**
+	 * El objeto al que se le informa el avance de la lectura. Puede ser null.
+	 */
+	private MonitorCarga monitor;
+
+	/**
+	 * El ndice que se usa para saber si existen los archivos de las portadas
+	 */
+	private IndicePortadas portadas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un nuevo cargador para el archivo indicado
+	 *
+	 * @param nombreArchivo El nombre del archivo CSV que tiene la informacin de
+	 *                      los libros
+	 */
+	CargadorCatalogo(String nombreArchivo)
+	{
+		this(nombreArchivo, null);
+	}
+
+	/**
+	 * Construye un nuevo cargador para el archivo indicado, que le informa su
+	 * avance al monitor
+	 *
+	 * @param nombreArchivo El nombre del archivo CSV que tiene la informacin de
+	 *                      los libros
+	 * @param monitor       El objeto al que se le informa el avance de la lectura
+	 *                      y que puede cancelarla. Puede ser null.
+	 */
+	CargadorCatalogo(String nombreArchivo, MonitorCarga monitor)
+	{
+		this(nombreArchivo, monitor, new IndicePortadas());
+	}
+
+	/**
+	 * Construye un nuevo cargador para el archivo indicado, que le informa su
+	 * avance al monitor y usa el ndice de portadas indicado
+	 *
+	 * @param nombreArchivo El nombre del archivo CSV que tiene la informacin de
+	 *                      los libros
+	 * @param monitor       El objeto al que se le informa el avance de la lectura
+	 *                      y que puede cancelarla. Puede ser null.
+	 * @param portadas      El ndice con el que se revisa si existen las
+	 *                      portadas. Al terminar tiene las carpetas que se
+	 *                      revisaron.
+	 */
+	CargadorCatalogo(String nombreArchivo, MonitorCarga monitor, IndicePortadas portadas)
+	{
+		this.nombreArchivo = nombreArchivo;
+		this.codificacion = Charset.defaultCharset();
+		this.hilos = Runtime.getRuntime().availableProcessors();
+		this.monitor = monitor;
+		this.portadas = portadas;
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Lee el archivo completo y le entrega al consumidor los registros de cada
+	 * bloque, en el orden del archivo. La primera lnea del archivo se ignora
+	 * porque tiene los ttulos de las columnas.
+	 *
+	 * @param consumidor El objeto que recibe los registros de cada bloque
+	 * @throws IOException           Se lanza esta excepcin si hay algn problema
+	 *                               leyendo el archivo
+	 * @throws CancellationException Se lanza esta excepcin si el monitor pidi
+	 *                               cancelar la lectura
+	 */
+	void procesar(ConsumidorBloque consumidor) throws IOException
+	{
+		try (FileChannel canal = FileChannel.open(Paths.get(nombreArchivo), StandardOpenOption.READ))
+		{
+			long tamanio = canal.size();
+			if (tamanio <= TAMANIO_BLOQUE)
+			{
+				// Un archivo pequeo se procesa en el hilo actual
+				if (tamanio > 0)
+				{
+					verificarCancelacion();
+					consumidor.consumir(interpretarBloque(mapear(canal, 0, tamanio), true));
+					informarAvance(tamanio, tamanio);
+				}
+				return;
+			}
+
+			ExecutorService ejecutor = Executors.newFixedThreadPool(hilos, tarea -> {
+				Thread hilo = new Thread(tarea, "cargador-catalogo");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+			try
+			{
+				ArrayDeque<Future<ArrayList<RegistroLibro>>> pendientes = new ArrayDeque<>();
+				ArrayDeque<Long> finales = new ArrayDeque<>();
+				long inicio = 0;
+				while (inicio < tamanio || !pendientes.isEmpty())
+				{
+					verificarCancelacion();
+					while (inicio < tamanio && pendientes.size() < 2 * hilos)
+					{
+						long fin = buscarFinDeLinea(canal, Math.min(inicio + TAMANIO_BLOQUE, tamanio), tamanio);
+						MappedByteBuffer bloque = mapear(canal, inicio, fin - inicio);
+						boolean esPrimero = inicio == 0;
+						pendientes.add(ejecutor.submit(() -> interpretarBloque(bloque, esPrimero)));
+						finales.add(fin);
+						inicio = fin;
+					}
+					consumidor.consumir(esperar(pendientes.poll()));
+					informarAvance(finales.poll(), tamanio);
+				}
+			}
+			finally
+			{
+				ejecutor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Lanza una CancellationException si el monitor pidi cancelar la lectura
+	 */
+	private void verificarCancelacion()
+	{
+		if (monitor != null && monitor.cancelado())
+		{
+			throw new CancellationException("Se cancel la lectura de " + nombreArchivo);
+		}
+	}
+
+	/**
+	 * Le informa al monitor cuntos bytes del archivo ya se procesaron
+	 */
+	private void informarAvance(long bytesProcesados, long bytesTotales)
+	{
+		if (monitor != null)
+		{
+			monitor.avanzar(bytesProcesados, bytesTotales);
+		}
+	}
+
+	/**
+	 * Proyecta en memoria una parte del archivo
+	 */
+	private MappedByteBuffer mapear(FileChannel canal, long inicio, long longitud) throws IOException
+	{
+		return canal.map(FileChannel.MapMode.READ_ONLY, inicio, longitud);
+	}
+
+	/**
+	 * Busca la posicin que sigue al primer '\n' que se encuentre a partir de la
+	 * posicin indicada.
+	 *
+	 * @return La posicin siguiente al final de lnea, o el tamao del archivo si
+	 *         no hay ms finales de lnea
+	 */
+	private long buscarFinDeLinea(FileChannel canal, long posicion, long tamanio) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(TAMANIO_BUSQUEDA);
+		while (posicion < tamanio)
+		{
+			buffer.clear();
+			int leidos = canal.read(buffer, posicion);
+			if (leidos <= 0)
+			{
+				break;
+			}
+			for (int i = 0; i < leidos; i++)
+			{
+				if (buffer.get(i) == '\n')
+				{
+					return posicion + i + 1;
+				}
+			}
+			posicion += leidos;
+		}
+		return tamanio;
+	}
+
+	/**
+	 * Interpreta las lneas de un bloque del archivo. Las lneas se separan igual
+	 * que lo hace BufferedReader.readLine.
+	 *
+	 * @param bloque       Los bytes del bloque
+	 * @param saltarTitulo Indica si se debe ignorar la primera lnea del bloque
+	 * @return Los registros del bloque, en el orden del archivo
+	 */
+	private ArrayList<RegistroLibro> interpretarBloque(ByteBuffer bloque, boolean saltarTitulo)
+	{
+		CharBuffer texto = codificacion.decode(bloque);
+		ArrayList<RegistroLibro> registros = new ArrayList<RegistroLibro>();
+
+		boolean saltar = saltarTitulo;
+		int inicioLinea = 0;
+		int i = 0;
+		int largo = texto.length();
+		while (i < largo)
+		{
+			char c = texto.charAt(i);
+			if (c == '\n' || c == '\r')
+			{
+				if (!saltar)
+				{
+					registros.add(interpretarLinea(texto.subSequence(inicioLinea, i).toString()));
+				}
+				saltar = false;
+				if (c == '\r' && i + 1 < largo && texto.charAt(i + 1) == '\n')
+				{
+					i++;
+				}
+				inicioLinea = i + 1;
+			}
+			i++;
+		}
+		if (inicioLinea < largo && !saltar)
+		{
+			registros.add(interpretarLinea(texto.subSequence(inicioLinea, largo).toString()));
+		}
+
+		return registros;
+	}
+
+	/**
+	 * Interpreta una lnea del archivo:
+	 * Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto
+	 *
+	 * La existencia del archivo de la portada se resuelve contra el ndice de
+	 * portadas, en el mismo hilo que interpreta el bloque.
+	 */
+	private RegistroLibro interpretarLinea(String linea)
+	{
+		String[] partes = linea.trim().split(",");
+		String elTitulo = partes[0];
+		String elAutor = partes[1];
+		double laCalificacion = Double.parseDouble(partes[2]);
+		String nombreCategoria = partes[3];
+		String archivoPortada = partes[4];
+		int ancho = Integer.parseInt(partes[5]);
+		int alto = Integer.parseInt(partes[6]);
+		boolean existePortada = portadas.existe(archivoPortada);
+
+		return new RegistroLibro(elTitulo, elAutor, laCalificacion, nombreCategoria, archivoPortada, ancho, alto,
+				existePortada);
+	}
+
+	/**
+	 * Espera a que termine de interpretarse un bloque y relanza los problemas que
+	 * hayan ocurrido en el hilo que lo interpret.
+	 */
+	private ArrayList<RegistroLibro> esperar(Future<ArrayList<RegistroLibro>> pendiente) throws IOException
+	{
+		try
+		{
+			return pendiente.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Se interrumpi la lectura de " + nombreArchivo);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException)
+				throw (RuntimeException) causa;
+			if (causa instanceof Error)
+				throw (Error) causa;
+			throw new IOException(causa);
+		}
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Recibe los registros de cada bloque del archivo, en orden
+	 */
+	interface ConsumidorBloque
+	{
+		void consumir(ArrayList<RegistroLibro> registros) throws IOException;
+	}
+
+	/**
+	 * Agrupa la informacin de una lnea del archivo de libros
+	 */
+	static final class RegistroLibro
+	{
+		private final String titulo;
+
+		private final String autor;
+
+		private final double calificacion;
+
+		private final String nombreCategoria;
+
+		private final String archivoPortada;
+
+		private final int ancho;
+
+		private final int alto;
+
+		private final boolean existePortada;
+
+		RegistroLibro(String titulo, String autor, double calificacion, String nombreCategoria, String archivoPortada,
+				int ancho, int alto, boolean existePortada)
+		{
+			this.titulo = titulo;
+			this.autor = autor;
+			this.calificacion = calificacion;
+			this.nombreCategoria = nombreCategoria;
+			this.archivoPortada = archivoPortada;
+			this.ancho = ancho;
+			this.alto = alto;
+			this.existePortada = existePortada;
+		}
+
+		String darTitulo()
+		{
+			return titulo;
+		}
+
+		String darAutor()
+		{
+			return autor;
+		}
+
+		double darCalificacion()
+		{
+			return calificacion;
+		}
+
+		String darNombreCategoria()
+		{
+			return nombreCategoria;
+		}
+
+		String darArchivoPortada()
+		{
+			return archivoPortada;
+		}
+
+		int darAncho()
+		{
+			return ancho;
+		}
+
+		int darAlto()
+		{
+			return alto;
+		}
+
+		/**
+		 * Indica si el archivo de la portada existe dentro de la carpeta "data"
+		 */
+		boolean existePortada()
+		{
+			return existePortada;
+		}
+	}
+}
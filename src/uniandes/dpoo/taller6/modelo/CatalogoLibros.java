@@ -0,0 +1,414 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Esta clase es el catlogo de libros de una versin de la librera: una lista
+ * inmodificable con los libros en el orden de sus consecutivos.
+ *
+ * Los libros se reparten en bloques segn su consecutivo: el bloque b tiene,
+ * en orden, los libros con consecutivos desde b * TAMANIO_BLOQUE hasta
+ * (b + 1) * TAMANIO_BLOQUE - 1. As un libro se encuentra por su consecutivo
+ * con una bsqueda binaria dentro de un solo bloque, y una posicin de la lista
+ * con una bsqueda binaria sobre la cantidad de libros acumulada antes de cada
+ * bloque.
+ *
+ * El catlogo no cambia despus de construirse. Para retirar o reemplazar
+ * libros se construye otro catlogo que comparte los bloques que no cambiaron,
+ * as que una versin nueva de la librera no tiene que copiar todos los
+ * libros. Los ndices guardan los libros con los que se construyeron y los
+ * traducen a los de cada versin buscndolos por su consecutivo.
+ */
+class CatalogoLibros extends AbstractList<Libro> implements RandomAccess
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La cantidad de consecutivos que cubre cada bloque
+	 */
+	static final int TAMANIO_BLOQUE = 256;
+
+	private static final Libro[] VACIO = new Libro[0];
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros de cada bloque, ordenados por consecutivo. Los bloques no se
+	 * modifican despus de construir el catlogo, as que se comparten con los
+	 * catlogos que se construyen a partir de este.
+	 */
+	private final Libro[][] bloques;
+
+	/**
+	 * La cantidad de libros de los bloques anteriores a cada bloque. La ltima
+	 * posicin tiene la cantidad total de libros.
+	 */
+	private final int[] acumulados;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un catlogo con los libros indicados
+	 *
+	 * @param libros Los libros, en orden de consecutivo y sin repetir consecutivos
+	 * @throws IllegalArgumentException Si los libros no estn en orden de
+	 *                                  consecutivo o alguno tiene un consecutivo
+	 *                                  negativo
+	 */
+	CatalogoLibros(List<Libro> libros)
+	{
+		int ultimo = libros.isEmpty() ? -1 : libros.get(libros.size() - 1).darConsecutivo();
+		bloques = new Libro[(ultimo + TAMANIO_BLOQUE) / TAMANIO_BLOQUE][];
+
+		ArrayList<Libro> bloque = new ArrayList<Libro>(TAMANIO_BLOQUE);
+		int actual = 0;
+		int anterior = -1;
+		for (Libro libro : libros)
+		{
+			int consecutivo = libro.darConsecutivo();
+			if (consecutivo <= anterior)
+			{
+				throw new IllegalArgumentException("Los libros del catlogo deben estar en orden de consecutivo: "
+						+ consecutivo + " despus de " + anterior);
+			}
+			anterior = consecutivo;
+			while (consecutivo / TAMANIO_BLOQUE > actual)
+			{
+				bloques[actual++] = bloque.isEmpty() ? VACIO : bloque.toArray(VACIO);
+				bloque.clear();
+			}
+			bloque.add(libro);
+		}
+		while (actual < bloques.length)
+		{
+			bloques[actual++] = bloque.isEmpty() ? VACIO : bloque.toArray(VACIO);
+			bloque.clear();
+		}
+		acumulados = acumular(bloques);
+	}
+
+	private CatalogoLibros(Libro[][] bloques)
+	{
+		this.bloques = bloques;
+		this.acumulados = acumular(bloques);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Busca el libro del catlogo que tiene el consecutivo indicado
+	 *
+	 * @param consecutivo El consecutivo del libro
+	 * @return El libro, o null si el catlogo no tiene un libro con ese
+	 *         consecutivo
+	 */
+	Libro buscar(int consecutivo)
+	{
+		if (consecutivo < 0 || consecutivo / TAMANIO_BLOQUE >= bloques.length)
+		{
+			return null;
+		}
+		Libro[] bloque = bloques[consecutivo / TAMANIO_BLOQUE];
+		int posicion = posicion(bloque, consecutivo);
+		return posicion >= 0 ? bloque[posicion] : null;
+	}
+
+	/**
+	 * Traduce unos libros a los de este catlogo, segn su consecutivo
+	 *
+	 * @param libros Los libros, que pueden ser de otra versin del catlogo
+	 * @return Una lista nueva con los libros del catlogo que corresponden a los
+	 *         indicados, en el mismo orden. Los libros que ya no estn en el
+	 *         catlogo se omiten.
+	 */
+	ArrayList<Libro> vigentes(Collection<Libro> libros)
+	{
+		ArrayList<Libro> vigentes = new ArrayList<Libro>(libros.size());
+		for (Libro libro : libros)
+		{
+			Libro actual = buscar(libro.darConsecutivo());
+			if (actual != null)
+			{
+				vigentes.add(actual);
+			}
+		}
+		return vigentes;
+	}
+
+	/**
+	 * Construye un catlogo nuevo sin los libros retirados y con los libros
+	 * reemplazados. Slo se copian los bloques que cambian; los dems se
+	 * comparten con este catlogo, que no cambia.
+	 *
+	 * @param retirados  Los libros que salen del catlogo. Los que no estn en
+	 *                   el catlogo se ignoran.
+	 * @param reemplazos Los libros que toman el lugar de los libros del catlogo
+	 *                   con su mismo consecutivo
+	 * @return El catlogo nuevo
+	 * @throws IllegalArgumentException Si el catlogo no tiene un libro con el
+	 *                                  consecutivo de alguno de los reemplazos
+	 */
+	CatalogoLibros cambiar(Collection<Libro> retirados, Collection<Libro> reemplazos)
+	{
+		Libro[][] nuevos = bloques.clone();
+		boolean[] copiados = new boolean[bloques.length];
+		for (Libro libro : reemplazos)
+		{
+			int consecutivo = libro.darConsecutivo();
+			int posicion = consecutivo < 0 || consecutivo / TAMANIO_BLOQUE >= bloques.length ? -1
+					: posicion(bloques[consecutivo / TAMANIO_BLOQUE], consecutivo);
+			if (posicion < 0)
+			{
+				throw new IllegalArgumentException("El catlogo no tiene un libro con el consecutivo " + consecutivo);
+			}
+			copiar(nuevos, copiados, consecutivo / TAMANIO_BLOQUE)[posicion] = libro;
+		}
+
+		for (Libro libro : retirados)
+		{
+			int consecutivo = libro.darConsecutivo();
+			if (consecutivo >= 0 && consecutivo / TAMANIO_BLOQUE < bloques.length)
+			{
+				int posicion = posicion(bloques[consecutivo / TAMANIO_BLOQUE], consecutivo);
+				if (posicion >= 0)
+				{
+					copiar(nuevos, copiados, consecutivo / TAMANIO_BLOQUE)[posicion] = null;
+				}
+			}
+		}
+
+		// Los bloques copiados se compactan sin las posiciones de los retirados
+		for (int i = 0; i < nuevos.length; i++)
+		{
+			if (copiados[i])
+			{
+				int cantidad = 0;
+				for (Libro libro : nuevos[i])
+				{
+					if (libro != null)
+					{
+						nuevos[i][cantidad++] = libro;
+					}
+				}
+				if (cantidad < nuevos[i].length)
+				{
+					nuevos[i] = cantidad == 0 ? VACIO : Arrays.copyOf(nuevos[i], cantidad);
+				}
+			}
+		}
+		return new CatalogoLibros(nuevos);
+	}
+
+	@Override
+	public Libro get(int indice)
+	{
+		if (indice < 0 || indice >= size())
+		{
+			throw new IndexOutOfBoundsException("Posicin " + indice + " de " + size());
+		}
+		int bloque = bloqueDePosicion(indice);
+		return bloques[bloque][indice - acumulados[bloque]];
+	}
+
+	@Override
+	public int size()
+	{
+		return acumulados[bloques.length];
+	}
+
+	@Override
+	public Iterator<Libro> iterator()
+	{
+		return new Recorrido(0);
+	}
+
+	@Override
+	public ListIterator<Libro> listIterator(int indice)
+	{
+		if (indice < 0 || indice > size())
+		{
+			throw new IndexOutOfBoundsException("Posicin " + indice + " de " + size());
+		}
+		return new Recorrido(indice);
+	}
+
+	/**
+	 * Busca el bloque que tiene el libro de una posicin de la lista: el ltimo
+	 * bloque cuya cantidad acumulada no supera la posicin
+	 */
+	private int bloqueDePosicion(int indice)
+	{
+		int bajo = 0;
+		int alto = bloques.length - 1;
+		while (bajo < alto)
+		{
+			int medio = (bajo + alto + 1) >>> 1;
+			if (acumulados[medio] <= indice)
+				bajo = medio;
+			else
+				alto = medio - 1;
+		}
+		return bajo;
+	}
+
+	/**
+	 * Busca la posicin de un consecutivo dentro de un bloque
+	 *
+	 * @return La posicin, o un nmero negativo si el bloque no tiene el
+	 *         consecutivo
+	 */
+	private static int posicion(Libro[] bloque, int consecutivo)
+	{
+		int bajo = 0;
+		int alto = bloque.length - 1;
+		while (bajo <= alto)
+		{
+			int medio = (bajo + alto) >>> 1;
+			int actual = bloque[medio].darConsecutivo();
+			if (actual < consecutivo)
+				bajo = medio + 1;
+			else if (actual > consecutivo)
+				alto = medio - 1;
+			else
+				return medio;
+		}
+		return -1;
+	}
+
+	/**
+	 * Retorna el bloque indicado del catlogo nuevo, copindolo la primera vez
+	 * para no modificar el de este catlogo
+	 */
+	private static Libro[] copiar(Libro[][] nuevos, boolean[] copiados, int bloque)
+	{
+		if (!copiados[bloque])
+		{
+			nuevos[bloque] = nuevos[bloque].clone();
+			copiados[bloque] = true;
+		}
+		return nuevos[bloque];
+	}
+
+	private static int[] acumular(Libro[][] bloques)
+	{
+		int[] acumulados = new int[bloques.length + 1];
+		for (int i = 0; i < bloques.length; i++)
+		{
+			acumulados[i + 1] = acumulados[i] + bloques[i].length;
+		}
+		return acumulados;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Recorre el catlogo bloque por bloque, sin buscar cada posicin
+	 */
+	private final class Recorrido implements ListIterator<Libro>
+	{
+		/**
+		 * La posicin del libro que retorna next
+		 */
+		private int siguiente;
+
+		/**
+		 * Un bloque cuya cantidad acumulada no supera la posicin siguiente
+		 */
+		private int bloque;
+
+		Recorrido(int indice)
+		{
+			siguiente = indice;
+			bloque = bloqueDePosicion(Math.max(0, Math.min(indice, size() - 1)));
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return siguiente < size();
+		}
+
+		@Override
+		public Libro next()
+		{
+			if (siguiente >= size())
+			{
+				throw new NoSuchElementException();
+			}
+			while (siguiente >= acumulados[bloque + 1])
+			{
+				bloque++;
+			}
+			return bloques[bloque][siguiente++ - acumulados[bloque]];
+		}
+
+		@Override
+		public boolean hasPrevious()
+		{
+			return siguiente > 0;
+		}
+
+		@Override
+		public Libro previous()
+		{
+			if (siguiente <= 0)
+			{
+				throw new NoSuchElementException();
+			}
+			siguiente--;
+			while (siguiente < acumulados[bloque])
+			{
+				bloque--;
+			}
+			return bloques[bloque][siguiente - acumulados[bloque]];
+		}
+
+		@Override
+		public int nextIndex()
+		{
+			return siguiente;
+		}
+
+		@Override
+		public int previousIndex()
+		{
+			return siguiente - 1;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException("El catlogo no se puede modificar");
+		}
+
+		@Override
+		public void set(Libro libro)
+		{
+			throw new UnsupportedOperationException("El catlogo no se puede modificar");
+		}
+
+		@Override
+		public void add(Libro libro)
+		{
+			throw new UnsupportedOperationException("El catlogo no se puede modificar");
+		}
+	}
+}
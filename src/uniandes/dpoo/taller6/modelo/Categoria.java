@@ -1,6 +1,7 @@
 package uniandes.dpoo.taller6.modelo;
 
 import java.util.ArrayList;
+import java.util.Set;
 
 /**
  * Esta clase representa a una categor�a de libros dentro de la librer�a. Cada
@@ -28,6 +29,12 @@ public class Categoria
 	 */
 	private ArrayList<Libro> libros;
 
+	/**
+	 * Suma de las calificaciones de los libros de la categoría. Se actualiza cada
+	 * vez que se agrega o se retira un libro.
+	 */
+	private final SumaCompensada sumaCalificaciones = new SumaCompensada();
+
 	// ************************************************************************
 	// Constructores
 	// ************************************************************************
@@ -86,6 +93,32 @@ public class Categoria
 	public void agregarLibro(Libro nuevoLibro)
 	{
 		libros.add(nuevoLibro);
+		sumaCalificaciones.sumar(nuevoLibro.darCalificacion());
+	}
+
+	/**
+	 * Retira de la categoría todos los libros cuyo título está en el conjunto
+	 * indicado. La lista de libros se compacta en un solo recorrido.
+	 * 
+	 * @param titulos Los títulos de los libros que se deben retirar
+	 * @return La cantidad de libros que se retiraron
+	 */
+	public int removerLibros(Set<String> titulos)
+	{
+		int antes = libros.size();
+		libros.removeIf(libro -> {
+			if (!titulos.contains(libro.darTitulo()))
+			{
+				return false;
+			}
+			sumaCalificaciones.restar(libro.darCalificacion());
+			return true;
+		});
+		if (libros.isEmpty())
+		{
+			sumaCalificaciones.reiniciar();
+		}
+		return antes - libros.size();
 	}
 
 	/**
@@ -101,18 +134,15 @@ public class Categoria
 	/**
 	 * Calcula la calificaci�n promedio de los libros que pertenecen a la categor�a
 	 * 
-	 * @return Calificaci�n promedio
+	 * @return Calificaci�n promedio, o NaN si la categoría no tiene libros
 	 */
 	public double calificacionPromedio()
 	{
-		double total = 0;
-
-		for (Libro libro : libros)
+		if (libros.isEmpty())
 		{
-			total += libro.darCalificacion();
+			return Double.NaN;
 		}
-
-		return total / (double) libros.size();
+		return sumaCalificaciones.darValor() / libros.size();
 	}
 
 	/**
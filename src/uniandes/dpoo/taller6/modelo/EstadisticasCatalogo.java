@@ -0,0 +1,375 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import uniandes.dpoo.taller6.modelo.CargadorCatalogo.RegistroLibro;
+
+/**
+ * Esta clase calcula las estadsticas de un catlogo de libros leyendo el
+ * archivo CSV una sola vez, sin construir los objetos de una Libreria.
+ *
+ * El archivo se lee por bloques (ver CargadorCatalogo) y de cada libro slo se
+ * acumulan contadores, as que se pueden procesar archivos ms grandes que la
+ * memoria disponible. La nica estructura que crece con el archivo es la que
+ * recuerda la categora de cada autor, y se descarta en cuanto se encuentra un
+ * autor con libros en dos categoras. Si ningn autor tiene libros en dos
+ * categoras, esa estructura termina con una entrada por autor distinto, as
+ * que la memoria que usa la clase crece con la cantidad de autores y no slo
+ * con la de categoras.
+ *
+ * Las categoras se identifican por su nombre. Los resultados son los mismos
+ * que calculara una Libreria recin cargada con los mismos archivos.
+ */
+public class EstadisticasCatalogo
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los nombres de las categoras encontradas, en el mismo orden que tendran
+	 * en una Libreria
+	 */
+	private ArrayList<String> categorias;
+
+	/**
+	 * Indica si cada categora es de ficcin, en el mismo orden de los nombres
+	 */
+	private boolean[] ficcion;
+
+	/**
+	 * La posicin de cada categora segn su nombre
+	 */
+	private HashMap<String, Integer> posicionesCategorias;
+
+	/**
+	 * Los nombres de las categoras que no estaban en el archivo de categoras
+	 */
+	private ArrayList<String> nuevasCategorias;
+
+	/**
+	 * Cantidad de libros de cada categora
+	 */
+	private int[] librosPorCategoria;
+
+	/**
+	 * Suma de las calificaciones de los libros de cada categora
+	 */
+	private double[] calificacionesPorCategoria;
+
+	/**
+	 * Cantidad de libros en el catlogo
+	 */
+	private long cantidadLibros;
+
+	/**
+	 * Suma de las calificaciones de todos los libros
+	 */
+	private double sumaCalificaciones;
+
+	/**
+	 * Cantidad de libros cuya portada no existe
+	 */
+	private int librosSinPortada;
+
+	/**
+	 * Indica si ya se encontr un autor con libros en dos categoras
+	 */
+	private boolean hayAutorEnVariasCategorias;
+
+	/**
+	 * La categora del primer libro de cada autor. Deja de usarse (y queda en
+	 * null) cuando se encuentra un autor con libros en dos categoras.
+	 */
+	private HashMap<String, Integer> categoriaPorAutor;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Calcula las estadsticas a partir de los mismos archivos que usa una
+	 * Libreria
+	 *
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                informacin sobre las categoras de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                informacin sobre los libros
+	 * @throws IOException Lanza esta excepcin si hay algn problema leyendo un
+	 *                     archivo
+	 */
+	public EstadisticasCatalogo(String nombreArchivoCategorias, String nombreArchivoLibros) throws IOException
+	{
+		Categoria[] delArchivo = Libreria.cargarCategorias(nombreArchivoCategorias);
+		categorias = new ArrayList<String>();
+		posicionesCategorias = new HashMap<String, Integer>();
+		nuevasCategorias = new ArrayList<String>();
+		librosPorCategoria = new int[Math.max(16, delArchivo.length)];
+		calificacionesPorCategoria = new double[librosPorCategoria.length];
+		ficcion = new boolean[librosPorCategoria.length];
+		for (int i = 0; i < delArchivo.length; i++)
+		{
+			categorias.add(delArchivo[i].darNombre());
+			ficcion[i] = delArchivo[i].esFiccion();
+			posicionesCategorias.putIfAbsent(delArchivo[i].darNombre(), i);
+		}
+		categoriaPorAutor = new HashMap<String, Integer>();
+
+		CargadorCatalogo cargador = new CargadorCatalogo(nombreArchivoLibros);
+		cargador.procesar(registros -> {
+			for (RegistroLibro registro : registros)
+			{
+				acumular(registro);
+			}
+		});
+
+		categoriaPorAutor = null;
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Agrega la informacin de un libro a los contadores
+	 */
+	private void acumular(RegistroLibro registro)
+	{
+		int categoria = buscarCategoria(registro.darNombreCategoria());
+		double calificacion = registro.darCalificacion();
+
+		cantidadLibros++;
+		sumaCalificaciones += calificacion;
+		librosPorCategoria[categoria]++;
+		calificacionesPorCategoria[categoria] += calificacion;
+
+		if (!registro.existePortada())
+		{
+			librosSinPortada++;
+		}
+
+		if (!hayAutorEnVariasCategorias)
+		{
+			Integer anterior = categoriaPorAutor.putIfAbsent(registro.darAutor(), categoria);
+			if (anterior != null && anterior != categoria)
+			{
+				hayAutorEnVariasCategorias = true;
+				categoriaPorAutor.clear();
+			}
+		}
+	}
+
+	/**
+	 * Busca la posicin de una categora a partir de su nombre. Si no existe, la
+	 * agrega al final, igual que lo hace Libreria.
+	 */
+	private int buscarCategoria(String nombreCategoria)
+	{
+		Integer posicion = posicionesCategorias.get(nombreCategoria);
+		if (posicion == null)
+		{
+			posicion = categorias.size();
+			categorias.add(nombreCategoria);
+			posicionesCategorias.put(nombreCategoria, posicion);
+			nuevasCategorias.add(nombreCategoria);
+			if (posicion == librosPorCategoria.length)
+			{
+				librosPorCategoria = Arrays.copyOf(librosPorCategoria, posicion * 2);
+				calificacionesPorCategoria = Arrays.copyOf(calificacionesPorCategoria, posicion * 2);
+				ficcion = Arrays.copyOf(ficcion, posicion * 2);
+			}
+		}
+		return posicion;
+	}
+
+	/**
+	 * Retorna los nombres de las categoras encontradas
+	 *
+	 * @return Los nombres de las categoras, en el mismo orden que tendran en
+	 *         una Libreria
+	 */
+	public String[] darCategorias()
+	{
+		return categorias.toArray(new String[categorias.size()]);
+	}
+
+	/**
+	 * Consulta si una categora es de ficcin. Las categoras que no estaban en
+	 * el archivo de categoras no son de ficcin, igual que en una Libreria.
+	 *
+	 * @param nombreCategoria El nombre de la categora
+	 * @return true si la categora existe y es de ficcin
+	 */
+	public boolean esFiccion(String nombreCategoria)
+	{
+		Integer posicion = posicionesCategorias.get(nombreCategoria);
+		return posicion != null && ficcion[posicion];
+	}
+
+	/**
+	 * Retorna los nombres de las categoras que no estaban en el archivo de
+	 * categoras
+	 *
+	 * @return nuevasCategorias
+	 */
+	public ArrayList<String> darNuevasCategorias()
+	{
+		return nuevasCategorias;
+	}
+
+	/**
+	 * Retorna la cantidad de libros del catlogo
+	 *
+	 * @return cantidadLibros
+	 */
+	public long contarLibros()
+	{
+		return cantidadLibros;
+	}
+
+	/**
+	 * Retorna la cantidad de libros de una categora
+	 *
+	 * @param nombreCategoria El nombre de la categora
+	 * @return Cantidad de libros de la categora, o 0 si la categora no existe
+	 */
+	public int contarLibrosEnCategoria(String nombreCategoria)
+	{
+		Integer posicion = posicionesCategorias.get(nombreCategoria);
+		return posicion == null ? 0 : librosPorCategoria[posicion];
+	}
+
+	/**
+	 * Retorna la calificacin promedio de todos los libros del catlogo
+	 *
+	 * @return Calificacin promedio del catlogo
+	 */
+	public double calificacionPromedio()
+	{
+		return sumaCalificaciones / (double) cantidadLibros;
+	}
+
+	/**
+	 * Retorna la calificacin promedio de los libros de una categora
+	 *
+	 * @param nombreCategoria El nombre de la categora
+	 * @return Calificacin promedio de la categora, o NaN si la categora no
+	 *         existe o no tiene libros
+	 */
+	public double calificacionPromedio(String nombreCategoria)
+	{
+		Integer posicion = posicionesCategorias.get(nombreCategoria);
+		if (posicion == null)
+		{
+			return Double.NaN;
+		}
+		return calificacionesPorCategoria[posicion] / (double) librosPorCategoria[posicion];
+	}
+
+	/**
+	 * Busca cul es la categora que tiene ms libros
+	 *
+	 * @return El nombre de la categora con ms libros. Si hay empate, retorna la
+	 *         primera de las que estn empatadas. Si no hay categoras, retorna
+	 *         null.
+	 */
+	public String categoriaConMasLibros()
+	{
+		int mayorCantidad = -1;
+		String categoriaGanadora = null;
+		for (int i = 0; i < categorias.size(); i++)
+		{
+			if (librosPorCategoria[i] > mayorCantidad)
+			{
+				mayorCantidad = librosPorCategoria[i];
+				categoriaGanadora = categorias.get(i);
+			}
+		}
+		return categoriaGanadora;
+	}
+
+	/**
+	 * Busca cul es la categora cuyos libros tienen el mayor promedio en su
+	 * calificacin
+	 *
+	 * @return El nombre de la categora con los mejores libros
+	 */
+	public String categoriaConMejoresLibros()
+	{
+		double mejorPromedio = -1;
+		String categoriaGanadora = null;
+		for (int i = 0; i < categorias.size(); i++)
+		{
+			double promedio = calificacionesPorCategoria[i] / (double) librosPorCategoria[i];
+			if (promedio > mejorPromedio)
+			{
+				mejorPromedio = promedio;
+				categoriaGanadora = categorias.get(i);
+			}
+		}
+		return categoriaGanadora;
+	}
+
+	/**
+	 * Retorna cuntos libros del catlogo no tienen portada
+	 *
+	 * @return Cantidad de libros sin portada
+	 */
+	public int contarLibrosSinPortada()
+	{
+		return librosSinPortada;
+	}
+
+	/**
+	 * Consulta si hay algn autor que tenga un libro en ms de una categora
+	 *
+	 * @return Retorna true si hay algn autor que tenga al menos un libro en dos
+	 *         categoras diferentes. Retorna false en caso contrario.
+	 */
+	public boolean hayAutorEnVariasCategorias()
+	{
+		return hayAutorEnVariasCategorias;
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Imprime el reporte de estadsticas de un catlogo
+	 *
+	 * @param args El archivo de categoras y el archivo de libros
+	 * @throws IOException Si hay algn problema leyendo los archivos
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length != 2)
+		{
+			System.err.println("Uso: EstadisticasCatalogo <archivo categorias> <archivo libros>");
+			System.exit(1);
+		}
+
+		EstadisticasCatalogo estadisticas = new EstadisticasCatalogo(args[0], args[1]);
+		String masLibros = estadisticas.categoriaConMasLibros();
+		String mejoresLibros = estadisticas.categoriaConMejoresLibros();
+
+		System.out.println("Libros: " + estadisticas.contarLibros());
+		System.out.println("Calificacin promedio: " + estadisticas.calificacionPromedio());
+		if (masLibros != null)
+		{
+			System.out.println("Categora con ms libros: " + masLibros + " ("
+					+ estadisticas.contarLibrosEnCategoria(masLibros) + " libros)");
+		}
+		if (mejoresLibros != null)
+		{
+			System.out.println("Categora con mejores libros: " + mejoresLibros + " ("
+					+ estadisticas.calificacionPromedio(mejoresLibros) + ")");
+		}
+		System.out.println("Libros sin portada: " + estadisticas.contarLibrosSinPortada());
+		System.out.println("Hay autores en varias categoras: " + estadisticas.hayAutorEnVariasCategorias());
+		System.out.println("Categoras nuevas: " + estadisticas.darNuevasCategorias());
+	}
+}
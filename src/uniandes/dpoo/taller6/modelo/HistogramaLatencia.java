@@ -0,0 +1,181 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Esta clase es un histograma de latencias que varios hilos pueden actualizar
+ * al mismo tiempo sin usar candados.
+ *
+ * Las latencias se cuentan en baldes logartmicos: cada potencia de 2 se divide
+ * en 16 baldes del mismo tamao, as que los percentiles se reportan con un
+ * error relativo de mximo 1/16. Las latencias menores a 16 nanosegundos
+ * tienen un balde cada una.
+ *
+ * Cada balde es un LongAdder: los hilos que registran latencias del mismo
+ * balde al mismo tiempo suman en celdas distintas, que slo se juntan al
+ * calcular el resumen.
+ */
+class HistogramaLatencia
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de bits con los que se divide cada potencia de 2
+	 */
+	private static final int BITS_SUBDIVISION = 4;
+
+	private static final int SUBDIVISIONES = 1 << BITS_SUBDIVISION;
+
+	/**
+	 * Cantidad de baldes: alcanza para cualquier valor positivo de un long
+	 */
+	private static final int BALDES = (64 - BITS_SUBDIVISION) * SUBDIVISIONES;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La cantidad de latencias registradas en cada balde. La cantidad total es la
+	 * suma de los baldes.
+	 */
+	private final LongAdder[] conteos;
+
+	/**
+	 * La suma de las latencias registradas. Todos los registros la actualizan,
+	 * as que cada hilo suma en su propia celda.
+	 */
+	private final LongAdder totalNanos = new LongAdder();
+
+	/**
+	 * La mayor latencia registrada. Slo se escribe cuando aparece un mximo nuevo.
+	 */
+	private final AtomicLong maximoNanos = new AtomicLong();
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un histograma vaco
+	 */
+	HistogramaLatencia()
+	{
+		conteos = new LongAdder[BALDES];
+		for (int i = 0; i < BALDES; i++)
+		{
+			conteos[i] = new LongAdder();
+		}
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Registra una latencia
+	 *
+	 * @param nanos La latencia en nanosegundos. Los valores negativos se cuentan
+	 *              como 0.
+	 */
+	void registrar(long nanos)
+	{
+		long valor = Math.max(0, nanos);
+		conteos[balde(valor)].increment();
+		totalNanos.add(valor);
+		long maximo = maximoNanos.get();
+		while (valor > maximo && !maximoNanos.compareAndSet(maximo, valor))
+		{
+			maximo = maximoNanos.get();
+		}
+	}
+
+	/**
+	 * Calcula un resumen del histograma. Si se registran latencias mientras se
+	 * calcula, el resumen puede incluir slo una parte de ellas.
+	 *
+	 * @return El resumen
+	 */
+	ResumenLatencia resumir()
+	{
+		long[] copia = new long[BALDES];
+		long total = 0;
+		for (int i = 0; i < BALDES; i++)
+		{
+			copia[i] = conteos[i].sum();
+			total += copia[i];
+		}
+		long maximo = maximoNanos.get();
+		long promedio = total == 0 ? 0 : totalNanos.sum() / total;
+		return new ResumenLatencia(total, promedio, percentil(copia, total, 0.5, maximo),
+				percentil(copia, total, 0.99, maximo), percentil(copia, total, 0.999, maximo), maximo);
+	}
+
+	/**
+	 * Borra todas las latencias registradas
+	 */
+	void reiniciar()
+	{
+		for (int i = 0; i < BALDES; i++)
+		{
+			conteos[i].reset();
+		}
+		totalNanos.reset();
+		maximoNanos.set(0);
+	}
+
+	/**
+	 * Calcula el percentil indicado como el lmite superior del balde donde cae,
+	 * sin superar el mximo registrado
+	 */
+	private static long percentil(long[] conteos, long total, double fraccion, long maximo)
+	{
+		if (total == 0)
+		{
+			return 0;
+		}
+		long posicion = (long) Math.ceil(fraccion * total);
+		long acumulado = 0;
+		for (int i = 0; i < conteos.length; i++)
+		{
+			acumulado += conteos[i];
+			if (acumulado >= posicion)
+			{
+				return Math.min(limiteSuperior(i), maximo);
+			}
+		}
+		return maximo;
+	}
+
+	/**
+	 * Calcula el balde al que pertenece un valor
+	 */
+	static int balde(long valor)
+	{
+		if (valor < SUBDIVISIONES)
+		{
+			return (int) valor;
+		}
+		int exponente = 63 - Long.numberOfLeadingZeros(valor);
+		int desplazamiento = exponente - BITS_SUBDIVISION;
+		int subdivision = (int) (valor >>> desplazamiento) & (SUBDIVISIONES - 1);
+		return (desplazamiento + 1) * SUBDIVISIONES + subdivision;
+	}
+
+	/**
+	 * Calcula el mayor valor que pertenece a un balde
+	 */
+	static long limiteSuperior(int balde)
+	{
+		if (balde < SUBDIVISIONES)
+		{
+			return balde;
+		}
+		int desplazamiento = balde / SUBDIVISIONES - 1;
+		long inferior = (long) (SUBDIVISIONES + balde % SUBDIVISIONES) << desplazamiento;
+		return inferior + (1L << desplazamiento) - 1;
+	}
+}
@@ -0,0 +1,157 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Esta clase es un ndice que permite encontrar los libros de una librera a
+ * partir de una parte del nombre de su autor, sin tener en cuenta maysculas y
+ * minsculas.
+ *
+ * Los nombres de los autores se guardan en minsculas y se descomponen en
+ * trigramas (secuencias de tres caracteres consecutivos). Para cada trigrama se
+ * guardan los autores que lo contienen, de forma que una bsqueda slo tiene que
+ * revisar los autores que comparten los trigramas de la cadena buscada.
+ *
+ * El ndice no cambia despus de construirse, as que las versiones de la
+ * librera lo comparten: cada bsqueda traduce los libros a los del catlogo de
+ * la versin y omite los que ya se retiraron.
+ */
+class IndiceAutores
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de caracteres de cada segmento del ndice
+	 */
+	private static final int TAMANIO_TRIGRAMA = 3;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros agrupados por el nombre de su autor en minsculas
+	 */
+	private HashMap<String, ArrayList<Libro>> librosPorAutor;
+
+	/**
+	 * Los nombres de los autores (en minsculas) que contienen cada trigrama
+	 */
+	private HashMap<String, HashSet<String>> autoresPorTrigrama;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un ndice vaco
+	 */
+	IndiceAutores()
+	{
+		librosPorAutor = new HashMap<String, ArrayList<Libro>>();
+		autoresPorTrigrama = new HashMap<String, HashSet<String>>();
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Agrega un libro al ndice mientras se construye
+	 *
+	 * @param libro El libro que se va a agregar
+	 */
+	void agregar(Libro libro)
+	{
+		String autor = libro.darAutor().toLowerCase();
+		ArrayList<Libro> libros = librosPorAutor.get(autor);
+		if (libros == null)
+		{
+			libros = new ArrayList<Libro>(1);
+			librosPorAutor.put(autor, libros);
+			for (String trigrama : trigramas(autor))
+			{
+				HashSet<String> autores = autoresPorTrigrama.get(trigrama);
+				if (autores == null)
+				{
+					autores = new HashSet<String>();
+					autoresPorTrigrama.put(trigrama, autores);
+				}
+				autores.add(autor);
+			}
+		}
+		libros.add(libro);
+	}
+
+	/**
+	 * Busca los libros cuyo autor contiene la cadena indicada, sin tener en cuenta
+	 * maysculas y minsculas.
+	 *
+	 * @param cadenaAutor La cadena que se usar para consultar el autor
+	 * @param catalogo    El catlogo de la versin que se consulta
+	 * @return Una lista con los libros del catlogo encontrados. Los libros de un
+	 *         mismo autor estn en el orden del catlogo, pero los autores no
+	 *         tienen un orden particular.
+	 */
+	ArrayList<Libro> buscar(String cadenaAutor, CatalogoLibros catalogo)
+	{
+		String cadena = cadenaAutor.toLowerCase();
+		ArrayList<Libro> encontrados = new ArrayList<Libro>();
+
+		for (String autor : candidatos(cadena))
+		{
+			if (autor.contains(cadena))
+			{
+				encontrados.addAll(catalogo.vigentes(librosPorAutor.get(autor)));
+			}
+		}
+
+		return encontrados;
+	}
+
+	/**
+	 * Calcula los autores que podran contener la cadena: los que comparten el
+	 * trigrama menos frecuente de la cadena. Si la cadena es demasiado corta para
+	 * tener trigramas, todos los autores son candidatos.
+	 */
+	private Collection<String> candidatos(String cadena)
+	{
+		if (cadena.length() < TAMANIO_TRIGRAMA)
+		{
+			return librosPorAutor.keySet();
+		}
+
+		HashSet<String> menor = null;
+		for (String trigrama : trigramas(cadena))
+		{
+			HashSet<String> autores = autoresPorTrigrama.get(trigrama);
+			if (autores == null)
+			{
+				return new ArrayList<String>();
+			}
+			if (menor == null || autores.size() < menor.size())
+			{
+				menor = autores;
+			}
+		}
+		return menor;
+	}
+
+	/**
+	 * Calcula los trigramas distintos de un texto
+	 */
+	private static HashSet<String> trigramas(String texto)
+	{
+		HashSet<String> trigramas = new HashSet<String>();
+		for (int i = 0; i + TAMANIO_TRIGRAMA <= texto.length(); i++)
+		{
+			trigramas.add(texto.substring(i, i + TAMANIO_TRIGRAMA));
+		}
+		return trigramas;
+	}
+}
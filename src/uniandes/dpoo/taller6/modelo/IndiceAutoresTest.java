@@ -0,0 +1,103 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara las bsquedas del ndice de autores con un recorrido de todos los
+ * libros. Los libros que se retiran salen del catlogo con el que se consulta
+ * el ndice, que no cambia.
+ */
+class IndiceAutoresTest {
+
+	private static final String[] NOMBRES = { "Julio Verne", "julio cortzar", "Ana Mara Matute", "JULIA de Burgos",
+			"Gabriel Garca Mrquez", "Jo", "Al", "Mario Vargas Llosa", "Mara Luisa Bombal", "Isabel Allende" };
+
+	private Random aleatorio;
+
+	private IndiceAutores indice;
+
+	private ArrayList<Libro> libros;
+
+	@BeforeEach
+	void setUp() {
+		aleatorio = new Random(42);
+		indice = new IndiceAutores();
+		libros = new ArrayList<Libro>();
+		Categoria categoria = new Categoria("Novela", true);
+		for (int i = 0; i < 2000; i++) {
+			String autor = NOMBRES[aleatorio.nextInt(NOMBRES.length)];
+			if (aleatorio.nextInt(4) == 0) {
+				autor = autor + " " + (char) ('a' + aleatorio.nextInt(26)) + aleatorio.nextInt(50);
+			}
+			Libro libro = new Libro("Libro " + i, autor, aleatorio.nextInt(50) / 10.0, categoria);
+			libro.cambiarConsecutivo(i);
+			libros.add(libro);
+			indice.agregar(libro);
+		}
+	}
+
+	@Test
+	void testBuscarCoincideConRecorrido() {
+		for (String cadena : consultas()) {
+			verificar(cadena);
+		}
+	}
+
+	@Test
+	void testBuscarDespuesDeEliminar() {
+		for (int ronda = 0; ronda < 10; ronda++) {
+			for (int i = 0; i < 100 && !libros.isEmpty(); i++) {
+				libros.remove(aleatorio.nextInt(libros.size()));
+			}
+			for (String cadena : consultas()) {
+				verificar(cadena);
+			}
+		}
+	}
+
+	@Test
+	void testAutorSinLibrosNoSeEncuentra() {
+		libros.removeIf(libro -> libro.darAutor().startsWith("Isabel Allende"));
+		assertTrue(indice.buscar("Isabel Allende", new CatalogoLibros(libros)).isEmpty());
+		verificar("allende");
+	}
+
+	private List<String> consultas() {
+		ArrayList<String> consultas = new ArrayList<String>();
+		consultas.add("");
+		consultas.add("a");
+		consultas.add("JU");
+		consultas.add("zzz");
+		for (int i = 0; i < 50; i++) {
+			String autor = libros.get(aleatorio.nextInt(libros.size())).darAutor();
+			int inicio = aleatorio.nextInt(autor.length());
+			int fin = inicio + aleatorio.nextInt(autor.length() - inicio + 1);
+			String cadena = autor.substring(inicio, fin);
+			consultas.add(aleatorio.nextBoolean() ? cadena.toUpperCase() : cadena);
+		}
+		return consultas;
+	}
+
+	private void verificar(String cadena) {
+		ArrayList<Libro> esperados = new ArrayList<Libro>();
+		for (Libro libro : libros) {
+			if (libro.darAutor().toLowerCase().contains(cadena.toLowerCase())) {
+				esperados.add(libro);
+			}
+		}
+		ArrayList<Libro> encontrados = indice.buscar(cadena, new CatalogoLibros(libros));
+		encontrados.sort(Comparator.comparingInt(Libro::darConsecutivo));
+		assertEquals(esperados.size(), encontrados.size(), cadena);
+		for (int i = 0; i < esperados.size(); i++) {
+			assertSame(esperados.get(i), encontrados.get(i), cadena);
+		}
+	}
+}
@@ -0,0 +1,468 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Esta clase es un ndice que permite encontrar los libros cuya calificacin
+ * est en un rango, en todo el catlogo o en una categora.
+ *
+ * Para el catlogo y para cada categora se guardan los libros ordenados por
+ * calificacin (y por su consecutivo cuando la calificacin es la misma),
+ * divididos en bloques de TAMANIO_BLOQUE libros, junto con sus calificaciones
+ * en arreglos paralelos. Un rango se encuentra con bsquedas binarias y se
+ * entrega como una vista sobre los bloques, sin copiar los libros.
+ *
+ * El ndice no cambia despus de construirse. Las consultas slo leen los
+ * bloques, as que varios hilos las pueden hacer al mismo tiempo sin candados,
+ * y las vistas que ya se entregaron no cambian. Para retirar libros se
+ * construye un ndice nuevo que copia slo los bloques del catlogo que tenan
+ * esos libros y vuelve a ordenar los libros de las categoras que cambiaron;
+ * lo dems se comparte. Como los bloques del catlogo pueden tener libros de
+ * otra versin de la librera, las vistas traducen cada libro al del catlogo
+ * que se consulta.
+ */
+class IndiceCalificaciones
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	private static final Comparator<Libro> ORDEN = Comparator.comparingDouble(Libro::darCalificacion)
+			.thenComparingInt(Libro::darConsecutivo);
+
+	/**
+	 * La cantidad mxima de libros de cada bloque
+	 */
+	private static final int TAMANIO_BLOQUE = 256;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros del catlogo ordenados
+	 */
+	private final Tramo catalogo;
+
+	/**
+	 * Los libros ordenados de cada categora
+	 */
+	private final IdentityHashMap<Categoria, Tramo> porCategoria;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el ndice de los libros de un catlogo y de todas las categoras.
+	 * Los libros de las categoras se reparten del catlogo, que ya est
+	 * ordenado.
+	 *
+	 * @param libros     Los libros del catlogo
+	 * @param categorias Las categoras de la librera
+	 */
+	IndiceCalificaciones(List<Libro> libros, Categoria[] categorias)
+	{
+		Libro[] ordenados = libros.toArray(new Libro[0]);
+		Arrays.parallelSort(ordenados, ORDEN);
+		catalogo = Tramo.dividir(ordenados);
+
+		IdentityHashMap<Categoria, ArrayList<Libro>> grupos = new IdentityHashMap<Categoria, ArrayList<Libro>>(
+				categorias.length * 2);
+		for (Categoria categoria : categorias)
+		{
+			grupos.put(categoria, new ArrayList<Libro>(categoria.contarLibrosEnCategoria()));
+		}
+		for (Libro libro : ordenados)
+		{
+			ArrayList<Libro> grupo = grupos.get(libro.darCategoria());
+			if (grupo != null)
+			{
+				grupo.add(libro);
+			}
+		}
+		porCategoria = new IdentityHashMap<Categoria, Tramo>(categorias.length * 2);
+		for (Map.Entry<Categoria, ArrayList<Libro>> entrada : grupos.entrySet())
+		{
+			porCategoria.put(entrada.getKey(), Tramo.dividir(entrada.getValue().toArray(new Libro[0])));
+		}
+	}
+
+	private IndiceCalificaciones(Tramo catalogo, IdentityHashMap<Categoria, Tramo> porCategoria)
+	{
+		this.catalogo = catalogo;
+		this.porCategoria = porCategoria;
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Construye el ndice de una versin de la librera en la que se retiraron
+	 * libros o se reemplazaron categoras. Este ndice no cambia.
+	 *
+	 * @param retirados Los libros que se retiraron del catlogo
+	 * @param cambiadas Para cada categora cuyos libros cambiaron, la categora
+	 *                  que le corresponde en la versin nueva (que puede ser la
+	 *                  misma). Si la categora perdi libros, los que le quedan
+	 *                  se vuelven a ordenar; si no, se conservan los libros
+	 *                  ordenados, que se traducen al consultarlos.
+	 * @return El ndice de la versin nueva
+	 */
+	IndiceCalificaciones cambiar(Collection<Libro> retirados, Map<Categoria, Categoria> cambiadas)
+	{
+		IdentityHashMap<Categoria, Tramo> categoriasNuevas = new IdentityHashMap<Categoria, Tramo>(porCategoria);
+		for (Categoria anterior : cambiadas.keySet())
+		{
+			categoriasNuevas.remove(anterior);
+		}
+		for (Map.Entry<Categoria, Categoria> entrada : cambiadas.entrySet())
+		{
+			Tramo tramo = porCategoria.get(entrada.getKey());
+			Categoria nueva = entrada.getValue();
+			if (tramo == null || tramo.cantidad() != nueva.contarLibrosEnCategoria())
+			{
+				Libro[] ordenados = nueva.darLibros().toArray(new Libro[0]);
+				Arrays.sort(ordenados, ORDEN);
+				tramo = Tramo.dividir(ordenados);
+			}
+			categoriasNuevas.put(nueva, tramo);
+		}
+		return new IndiceCalificaciones(retirados.isEmpty() ? catalogo : catalogo.sin(retirados), categoriasNuevas);
+	}
+
+	/**
+	 * Busca los libros cuya calificacin est entre los valores indicados,
+	 * incluyndolos
+	 *
+	 * @param categoria La categora de los libros, o null para buscar en el
+	 *                  catlogo
+	 * @param minima    La calificacin mnima
+	 * @param maxima    La calificacin mxima
+	 * @param libros    El catlogo de la versin que se consulta
+	 * @return Una vista inmodificable con los libros del catlogo, de menor a
+	 *         mayor calificacin. Si el rango est vaco o alguno de los lmites
+	 *         no es un nmero, la vista est vaca.
+	 */
+	List<Libro> buscar(Categoria categoria, double minima, double maxima, CatalogoLibros libros)
+	{
+		Tramo tramo = obtener(categoria);
+		if (!(minima <= maxima))
+		{
+			return new Vista(tramo, 0, 0, libros);
+		}
+		return new Vista(tramo, tramo.primeroMayorOIgual(minima), tramo.primeroMayor(maxima), libros);
+	}
+
+	/**
+	 * Cuenta los libros cuya calificacin est entre los valores indicados,
+	 * incluyndolos
+	 *
+	 * @param categoria La categora de los libros, o null para contar en el
+	 *                  catlogo
+	 * @param minima    La calificacin mnima
+	 * @param maxima    La calificacin mxima
+	 * @return La cantidad de libros
+	 */
+	int contar(Categoria categoria, double minima, double maxima)
+	{
+		if (!(minima <= maxima))
+		{
+			return 0;
+		}
+		Tramo tramo = obtener(categoria);
+		return tramo.primeroMayor(maxima) - tramo.primeroMayorOIgual(minima);
+	}
+
+	/**
+	 * Retorna los libros ordenados del catlogo o de una categora
+	 */
+	private Tramo obtener(Categoria categoria)
+	{
+		Tramo tramo = categoria == null ? catalogo : porCategoria.get(categoria);
+		if (tramo == null)
+		{
+			throw new IllegalArgumentException("La categora " + categoria + " no es de esta versin de la librera");
+		}
+		return tramo;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Los libros de una lista ordenados por calificacin y divididos en bloques,
+	 * con sus calificaciones en arreglos paralelos. Ningn bloque est vaco.
+	 */
+	private static final class Tramo
+	{
+		private final Libro[][] libros;
+
+		private final double[][] calificaciones;
+
+		/**
+		 * La cantidad de libros de los bloques anteriores a cada bloque. La ltima
+		 * posicin tiene la cantidad total de libros.
+		 */
+		private final int[] acumulados;
+
+		private Tramo(Libro[][] libros, double[][] calificaciones)
+		{
+			this.libros = libros;
+			this.calificaciones = calificaciones;
+			this.acumulados = new int[libros.length + 1];
+			for (int i = 0; i < libros.length; i++)
+			{
+				acumulados[i + 1] = acumulados[i] + libros[i].length;
+			}
+		}
+
+		/**
+		 * Divide en bloques unos libros que ya estn ordenados
+		 */
+		static Tramo dividir(Libro[] ordenados)
+		{
+			int cantidad = (ordenados.length + TAMANIO_BLOQUE - 1) / TAMANIO_BLOQUE;
+			Libro[][] libros = new Libro[cantidad][];
+			double[][] calificaciones = new double[cantidad][];
+			for (int i = 0; i < cantidad; i++)
+			{
+				libros[i] = Arrays.copyOfRange(ordenados, i * TAMANIO_BLOQUE,
+						Math.min(ordenados.length, (i + 1) * TAMANIO_BLOQUE));
+				calificaciones[i] = calificar(libros[i]);
+			}
+			return new Tramo(libros, calificaciones);
+		}
+
+		private static double[] calificar(Libro[] libros)
+		{
+			double[] calificaciones = new double[libros.length];
+			for (int i = 0; i < libros.length; i++)
+			{
+				calificaciones[i] = libros[i].darCalificacion();
+			}
+			return calificaciones;
+		}
+
+		int cantidad()
+		{
+			return acumulados[libros.length];
+		}
+
+		/**
+		 * Retorna el libro de una posicin del tramo
+		 */
+		Libro darLibro(int posicion)
+		{
+			int bajo = 0;
+			int alto = libros.length - 1;
+			while (bajo < alto)
+			{
+				int medio = (bajo + alto + 1) >>> 1;
+				if (acumulados[medio] <= posicion)
+					bajo = medio;
+				else
+					alto = medio - 1;
+			}
+			return libros[bajo][posicion - acumulados[bajo]];
+		}
+
+		/**
+		 * Construye un tramo con los mismos libros, excepto los retirados. Slo se
+		 * copian los bloques que tenan alguno de los retirados.
+		 */
+		Tramo sin(Collection<Libro> retirados)
+		{
+			Libro[][] nuevos = libros.clone();
+			boolean[] copiados = new boolean[libros.length];
+			for (Libro libro : retirados)
+			{
+				int bloque = bloqueDe(libro);
+				int posicion = bloque < 0 ? -1 : Arrays.binarySearch(libros[bloque], libro, ORDEN);
+				if (posicion >= 0)
+				{
+					if (!copiados[bloque])
+					{
+						nuevos[bloque] = libros[bloque].clone();
+						copiados[bloque] = true;
+					}
+					nuevos[bloque][posicion] = null;
+				}
+			}
+
+			ArrayList<Libro[]> quedanLibros = new ArrayList<Libro[]>(libros.length);
+			ArrayList<double[]> quedanCalificaciones = new ArrayList<double[]>(libros.length);
+			for (int i = 0; i < libros.length; i++)
+			{
+				if (!copiados[i])
+				{
+					quedanLibros.add(libros[i]);
+					quedanCalificaciones.add(calificaciones[i]);
+					continue;
+				}
+				Libro[] bloque = new Libro[nuevos[i].length];
+				int cantidad = 0;
+				for (Libro libro : nuevos[i])
+				{
+					if (libro != null)
+					{
+						bloque[cantidad++] = libro;
+					}
+				}
+				if (cantidad > 0)
+				{
+					bloque = Arrays.copyOf(bloque, cantidad);
+					quedanLibros.add(bloque);
+					quedanCalificaciones.add(calificar(bloque));
+				}
+			}
+			return new Tramo(quedanLibros.toArray(new Libro[0][]), quedanCalificaciones.toArray(new double[0][]));
+		}
+
+		/**
+		 * Busca el ltimo bloque cuyo primer libro no va despus del libro
+		 * indicado
+		 *
+		 * @return El bloque, o -1 si el libro va antes de todos los bloques
+		 */
+		private int bloqueDe(Libro libro)
+		{
+			int bajo = -1;
+			int alto = libros.length - 1;
+			while (bajo < alto)
+			{
+				int medio = (bajo + alto + 1) >>> 1;
+				if (ORDEN.compare(libros[medio][0], libro) <= 0)
+					bajo = medio;
+				else
+					alto = medio - 1;
+			}
+			return bajo;
+		}
+
+		/**
+		 * Busca la primera posicin con una calificacin mayor o igual al valor
+		 */
+		int primeroMayorOIgual(double valor)
+		{
+			// Primero el bloque cuya ltima calificacin es mayor o igual al valor
+			int bajo = 0;
+			int alto = libros.length;
+			while (bajo < alto)
+			{
+				int medio = (bajo + alto) >>> 1;
+				if (ultima(medio) < valor)
+					bajo = medio + 1;
+				else
+					alto = medio;
+			}
+			if (bajo == libros.length)
+			{
+				return cantidad();
+			}
+
+			double[] bloque = calificaciones[bajo];
+			int desde = 0;
+			int hasta = bloque.length;
+			while (desde < hasta)
+			{
+				int medio = (desde + hasta) >>> 1;
+				if (bloque[medio] < valor)
+					desde = medio + 1;
+				else
+					hasta = medio;
+			}
+			return acumulados[bajo] + desde;
+		}
+
+		/**
+		 * Busca la primera posicin con una calificacin estrictamente mayor al
+		 * valor
+		 */
+		int primeroMayor(double valor)
+		{
+			// Primero el bloque cuya ltima calificacin es mayor al valor
+			int bajo = 0;
+			int alto = libros.length;
+			while (bajo < alto)
+			{
+				int medio = (bajo + alto) >>> 1;
+				if (ultima(medio) <= valor)
+					bajo = medio + 1;
+				else
+					alto = medio;
+			}
+			if (bajo == libros.length)
+			{
+				return cantidad();
+			}
+
+			double[] bloque = calificaciones[bajo];
+			int desde = 0;
+			int hasta = bloque.length;
+			while (desde < hasta)
+			{
+				int medio = (desde + hasta) >>> 1;
+				if (bloque[medio] <= valor)
+					desde = medio + 1;
+				else
+					hasta = medio;
+			}
+			return acumulados[bajo] + desde;
+		}
+
+		private double ultima(int bloque)
+		{
+			return calificaciones[bloque][calificaciones[bloque].length - 1];
+		}
+	}
+
+	/**
+	 * Una vista inmodificable sobre una parte de un tramo. Cada libro se traduce
+	 * al del catlogo de la versin que se consult.
+	 */
+	private static final class Vista extends AbstractList<Libro> implements RandomAccess
+	{
+		private final Tramo tramo;
+
+		private final int desde;
+
+		private final int hasta;
+
+		private final CatalogoLibros catalogo;
+
+		Vista(Tramo tramo, int desde, int hasta, CatalogoLibros catalogo)
+		{
+			this.tramo = tramo;
+			this.desde = desde;
+			this.hasta = hasta;
+			this.catalogo = catalogo;
+		}
+
+		@Override
+		public Libro get(int posicion)
+		{
+			if (posicion < 0 || posicion >= hasta - desde)
+			{
+				throw new IndexOutOfBoundsException("Posicin " + posicion + " de " + (hasta - desde));
+			}
+			return catalogo.buscar(tramo.darLibro(desde + posicion).darConsecutivo());
+		}
+
+		@Override
+		public int size()
+		{
+			return hasta - desde;
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Esta clase es un ndice que guarda los libros de cada autor, para saber en
+ * qu categoras tiene libros.
+ *
+ * El ndice tambin lleva la cuenta de cuntos autores tienen libros en ms de
+ * una categora, para no tener que recorrer el catlogo cada vez que se
+ * consulta.
+ *
+ * Los libros de cada autor no cambian despus de construir el ndice, as que
+ * las versiones de la librera los comparten y los traducen a los libros de su
+ * catlogo. Cada versin tiene su propia cuenta: cuando se retiran libros slo
+ * se vuelven a revisar los autores de esos libros.
+ */
+class IndiceCategoriasAutores
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros de cada autor (con el nombre exacto), en el orden del catlogo
+	 */
+	private final HashMap<String, ArrayList<Libro>> librosPorAutor;
+
+	/**
+	 * Cantidad de autores que tienen libros en al menos dos categoras
+	 */
+	private final int autoresEnVariasCategorias;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private IndiceCategoriasAutores(HashMap<String, ArrayList<Libro>> librosPorAutor, int autoresEnVariasCategorias)
+	{
+		this.librosPorAutor = librosPorAutor;
+		this.autoresEnVariasCategorias = autoresEnVariasCategorias;
+	}
+
+	/**
+	 * Construye el ndice de los libros de un catlogo
+	 *
+	 * @param catalogo Los libros del catlogo, en orden
+	 * @return El ndice
+	 */
+	static IndiceCategoriasAutores construir(List<Libro> catalogo)
+	{
+		HashMap<String, ArrayList<Libro>> librosPorAutor = new HashMap<String, ArrayList<Libro>>();
+		for (Libro libro : catalogo)
+		{
+			ArrayList<Libro> libros = librosPorAutor.get(libro.darAutor());
+			if (libros == null)
+			{
+				libros = new ArrayList<Libro>(1);
+				librosPorAutor.put(libro.darAutor(), libros);
+			}
+			libros.add(libro);
+		}
+
+		int autoresEnVariasCategorias = 0;
+		for (ArrayList<Libro> libros : librosPorAutor.values())
+		{
+			if (enVariasCategorias(libros))
+			{
+				autoresEnVariasCategorias++;
+			}
+		}
+		return new IndiceCategoriasAutores(librosPorAutor, autoresEnVariasCategorias);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Construye el ndice de una versin de la librera de la que se retiraron
+	 * libros. Los libros de cada autor se comparten con este ndice, que no
+	 * cambia.
+	 *
+	 * @param retirados Los libros que se retiraron
+	 * @param anterior  El catlogo antes de retirar los libros
+	 * @param nuevo     El catlogo sin los libros retirados
+	 * @return El ndice de la versin nueva
+	 */
+	IndiceCategoriasAutores retirar(Collection<Libro> retirados, CatalogoLibros anterior, CatalogoLibros nuevo)
+	{
+		int enVarias = autoresEnVariasCategorias;
+		HashSet<String> revisados = new HashSet<String>();
+		for (Libro libro : retirados)
+		{
+			ArrayList<Libro> libros = librosPorAutor.get(libro.darAutor());
+			if (libros != null && revisados.add(libro.darAutor()))
+			{
+				if (enVariasCategorias(anterior.vigentes(libros)))
+				{
+					enVarias--;
+				}
+				if (enVariasCategorias(nuevo.vigentes(libros)))
+				{
+					enVarias++;
+				}
+			}
+		}
+		return new IndiceCategoriasAutores(librosPorAutor, enVarias);
+	}
+
+	/**
+	 * Busca las categoras en las que el autor tiene libros
+	 *
+	 * @param nombreAutor El nombre exacto del autor
+	 * @param orden       Las categoras de la librera, en el orden en el que se
+	 *                    deben retornar
+	 * @param catalogo    El catlogo de la versin que se consulta
+	 * @return Una lista nueva con las categoras que tienen libros del autor, en
+	 *         el orden del arreglo. Si el autor no tiene libros, est vaca.
+	 */
+	ArrayList<Categoria> buscar(String nombreAutor, Categoria[] orden, CatalogoLibros catalogo)
+	{
+		ArrayList<Categoria> encontradas = new ArrayList<Categoria>();
+		ArrayList<Libro> libros = librosPorAutor.get(nombreAutor);
+		if (libros != null)
+		{
+			// Categoria no redefine equals, as que las categoras se comparan por
+			// identidad
+			Set<Categoria> categorias = Collections.newSetFromMap(new IdentityHashMap<Categoria, Boolean>());
+			for (Libro libro : catalogo.vigentes(libros))
+			{
+				categorias.add(libro.darCategoria());
+			}
+			for (int i = 0; i < orden.length && encontradas.size() < categorias.size(); i++)
+			{
+				if (categorias.contains(orden[i]))
+				{
+					encontradas.add(orden[i]);
+				}
+			}
+		}
+		return encontradas;
+	}
+
+	/**
+	 * Consulta si hay algn autor con libros en ms de una categora
+	 *
+	 * @return true si hay al menos un autor con libros en dos categoras
+	 *         diferentes
+	 */
+	boolean hayAutorEnVariasCategorias()
+	{
+		return autoresEnVariasCategorias > 0;
+	}
+
+	/**
+	 * Revisa si los libros estn en al menos dos categoras diferentes
+	 */
+	private static boolean enVariasCategorias(List<Libro> libros)
+	{
+		for (int i = 1; i < libros.size(); i++)
+		{
+			if (libros.get(i).darCategoria() != libros.get(0).darCategoria())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,111 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Esta clase permite saber si existe el archivo de una portada sin consultar el
+ * sistema de archivos por cada libro.
+ *
+ * La primera vez que se pregunta por un archivo de una carpeta, se lista la
+ * carpeta completa y sus nombres se guardan en un conjunto. Las dems
+ * consultas sobre esa carpeta slo revisan el conjunto. Varios hilos pueden
+ * consultar el ndice al mismo tiempo.
+ */
+class IndicePortadas
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * La carpeta con respecto a la cual se interpretan las rutas de las portadas
+	 */
+	private static final String CARPETA_DATOS = "./data/";
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los nombres de los archivos de cada carpeta que ya se list. Si la carpeta
+	 * no existe, su conjunto est vaco.
+	 */
+	private ConcurrentHashMap<String, Set<String>> archivosPorCarpeta;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un ndice vaco. Las carpetas se listan a medida que se
+	 * necesitan.
+	 */
+	IndicePortadas()
+	{
+		archivosPorCarpeta = new ConcurrentHashMap<String, Set<String>>();
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Verifica si existe el archivo con el nombre indicado dentro de la carpeta
+	 * "data"
+	 *
+	 * @param nombreArchivo El nombre del archivo, relativo a la carpeta "data"
+	 * @return true si el archivo existe
+	 */
+	boolean existe(String nombreArchivo)
+	{
+		File archivo = new File(CARPETA_DATOS + nombreArchivo);
+		String carpeta = archivo.getParent();
+		String nombre = archivo.getName();
+		if (carpeta == null || nombre.isEmpty() || nombre.equals(".") || nombre.equals(".."))
+		{
+			// Rutas que no se pueden resolver contra un listado
+			return archivo.exists();
+		}
+		return archivosPorCarpeta.computeIfAbsent(carpeta, IndicePortadas::listar).contains(nombre);
+	}
+
+	/**
+	 * Retorna las carpetas que se han listado, existan o no. Son las carpetas de
+	 * las que depende saber si existen las portadas consultadas.
+	 *
+	 * @return Las rutas de las carpetas, formadas con la carpeta "data" y la ruta
+	 *         de cada portada
+	 */
+	Set<String> darCarpetas()
+	{
+		return archivosPorCarpeta.keySet();
+	}
+
+	/**
+	 * Retorna cuntas carpetas se han listado
+	 *
+	 * @return Cantidad de carpetas listadas
+	 */
+	int contarCarpetas()
+	{
+		return archivosPorCarpeta.size();
+	}
+
+	/**
+	 * Lista los nombres de los archivos de una carpeta
+	 */
+	private static Set<String> listar(String carpeta)
+	{
+		String[] nombres = new File(carpeta).list();
+		if (nombres == null)
+		{
+			return Collections.emptySet();
+		}
+		return new HashSet<String>(Arrays.asList(nombres));
+	}
+}
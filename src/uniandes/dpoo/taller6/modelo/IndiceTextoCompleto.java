@@ -0,0 +1,1153 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Esta clase es un ndice invertido que permite buscar palabras dentro de los
+ * ttulos de los libros y ordenar los resultados segn su relevancia (BM25).
+ *
+ * Los ttulos se dividen en palabras formadas por letras y dgitos, en
+ * minsculas y sin tildes. Cada libro se identifica con su consecutivo. Para
+ * cada palabra se guarda la lista de libros que la contienen, ordenada por
+ * consecutivo y comprimida: cada entrada guarda la diferencia con el
+ * consecutivo anterior y la cantidad de veces que aparece la palabra, con
+ * codificacin de longitud variable (7 bits por byte). Las listas se dividen en
+ * bloques de entradas y para cada bloque se guarda su primer consecutivo, lo
+ * que permite saltar bloques completos al intersecar listas.
+ *
+ * Las listas, los libros y las longitudes de los ttulos no cambian despus de
+ * construirse, as que las versiones de la librera los comparten. Al retirar
+ * libros se construye otro ndice que slo copia las cantidades de libros
+ * vigentes de las palabras que cambiaron; los libros retirados siguen en las
+ * listas y se ignoran en las bsquedas, que traducen cada libro al del catlogo
+ * de la versin que se consulta.
+ */
+class IndiceTextoCompleto
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Cantidad de entradas de cada bloque de una lista
+	 */
+	private static final int TAMANIO_BLOQUE = 128;
+
+	/**
+	 * Cantidad de palabras de cada bloque de las cantidades de libros vigentes
+	 */
+	private static final int TAMANIO_BLOQUE_VIGENTES = 1024;
+
+	/**
+	 * Cantidad de libros que indexa cada tarea durante la construccin
+	 */
+	private static final int LIBROS_POR_TAREA = 1 << 16;
+
+	/**
+	 * Cantidad de grupos de frecuencia para los que se guarda la menor longitud
+	 * de ttulo de cada bloque: frecuencia 1, 2, y 3 o ms
+	 */
+	private static final int GRUPOS_FRECUENCIA = 3;
+
+	/**
+	 * Parmetros de BM25: la saturacin de la frecuencia de una palabra y el peso
+	 * de la longitud del ttulo
+	 */
+	private static final double K1 = 1.2;
+
+	private static final double B = 0.75;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las listas de cada palabra. El mapa y las listas no cambian despus de
+	 * construirse.
+	 */
+	private final HashMap<String, Termino> terminos;
+
+	/**
+	 * La cantidad de libros vigentes que tiene cada palabra, segn el nmero de
+	 * la palabra, en bloques de TAMANIO_BLOQUE_VIGENTES palabras. Los bloques no
+	 * se modifican: los ndices que se construyen al retirar libros copian slo
+	 * los que cambian.
+	 */
+	private final int[][] vigentesPorTermino;
+
+	/**
+	 * Los libros con los que se construy el ndice, segn su consecutivo
+	 */
+	private final Libro[] documentos;
+
+	/**
+	 * La cantidad de palabras del ttulo de cada libro, segn su consecutivo
+	 */
+	private final int[] longitudes;
+
+	/**
+	 * La cantidad de libros vigentes y la suma de las longitudes de sus ttulos
+	 */
+	private final int vigentes;
+
+	private final long sumaLongitudes;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private IndiceTextoCompleto(HashMap<String, Termino> terminos, int[][] vigentesPorTermino, Libro[] documentos,
+			int[] longitudes, int vigentes, long sumaLongitudes)
+	{
+		this.terminos = terminos;
+		this.vigentesPorTermino = vigentesPorTermino;
+		this.documentos = documentos;
+		this.longitudes = longitudes;
+		this.vigentes = vigentes;
+		this.sumaLongitudes = sumaLongitudes;
+	}
+
+	/**
+	 * Construye el ndice de los libros indicados. Los libros se dividen en
+	 * grupos que se indexan en paralelo y luego las listas de cada palabra se
+	 * comprimen tambin en paralelo.
+	 *
+	 * @param libros Los libros. Cada uno debe tener un consecutivo distinto.
+	 * @return El ndice
+	 */
+	static IndiceTextoCompleto construir(List<Libro> libros)
+	{
+		int tamanio = 0;
+		for (Libro libro : libros)
+		{
+			tamanio = Math.max(tamanio, libro.darConsecutivo() + 1);
+		}
+		Libro[] documentos = new Libro[tamanio];
+		for (Libro libro : libros)
+		{
+			documentos[libro.darConsecutivo()] = libro;
+		}
+
+		int[] longitudes = new int[tamanio];
+		HashMap<String, Termino> terminos = indexar(documentos, longitudes);
+		int[][] vigentesPorTermino = new int[(terminos.size() + TAMANIO_BLOQUE_VIGENTES - 1)
+				/ TAMANIO_BLOQUE_VIGENTES][];
+		for (int i = 0; i < vigentesPorTermino.length; i++)
+		{
+			vigentesPorTermino[i] = new int[Math.min(TAMANIO_BLOQUE_VIGENTES,
+					terminos.size() - i * TAMANIO_BLOQUE_VIGENTES)];
+		}
+		for (Termino termino : terminos.values())
+		{
+			vigentesPorTermino[termino.numero / TAMANIO_BLOQUE_VIGENTES][termino.numero
+					% TAMANIO_BLOQUE_VIGENTES] = termino.cantidad;
+		}
+
+		int vigentes = 0;
+		long sumaLongitudes = 0;
+		for (int i = 0; i < tamanio; i++)
+		{
+			if (documentos[i] != null)
+			{
+				vigentes++;
+				sumaLongitudes += longitudes[i];
+			}
+		}
+		return new IndiceTextoCompleto(terminos, vigentesPorTermino, documentos, longitudes, vigentes, sumaLongitudes);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Construye el ndice de una versin de la librera sin los libros
+	 * indicados. Este ndice no cambia.
+	 *
+	 * @param libros Los libros que se retiraron. Deben estar vigentes en este
+	 *               ndice y no repetirse.
+	 * @return El ndice nuevo, que comparte las listas con este
+	 */
+	IndiceTextoCompleto retirar(Collection<Libro> libros)
+	{
+		int[][] nuevosVigentes = vigentesPorTermino.clone();
+		boolean[] copiados = new boolean[vigentesPorTermino.length];
+		int nuevosVigentesTotal = vigentes;
+		long nuevaSuma = sumaLongitudes;
+		for (Libro libro : libros)
+		{
+			int documento = libro.darConsecutivo();
+			if (documento >= documentos.length || documentos[documento] == null)
+			{
+				continue;
+			}
+			nuevosVigentesTotal--;
+			nuevaSuma -= longitudes[documento];
+			for (String palabra : new LinkedHashSet<String>(palabras(libro.darTitulo())))
+			{
+				Termino termino = terminos.get(palabra);
+				if (termino != null)
+				{
+					int bloque = termino.numero / TAMANIO_BLOQUE_VIGENTES;
+					if (!copiados[bloque])
+					{
+						nuevosVigentes[bloque] = nuevosVigentes[bloque].clone();
+						copiados[bloque] = true;
+					}
+					nuevosVigentes[bloque][termino.numero % TAMANIO_BLOQUE_VIGENTES]--;
+				}
+			}
+		}
+		return new IndiceTextoCompleto(terminos, nuevosVigentes, documentos, longitudes, nuevosVigentesTotal,
+				nuevaSuma);
+	}
+
+	/**
+	 * Busca los libros cuyo ttulo contiene las palabras de la consulta
+	 *
+	 * @param consulta         Las palabras buscadas
+	 * @param todasLasPalabras Indica si los ttulos deben tener todas las
+	 *                         palabras (true) o al menos una (false)
+	 * @param cantidad         La cantidad mxima de libros que se quieren
+	 * @param catalogo         El catlogo de la versin que se consulta. Los
+	 *                         libros que no estn en l se ignoran.
+	 * @return Los libros del catlogo encontrados, del ms relevante al menos
+	 *         relevante. Los libros igual de relevantes estn en el orden del
+	 *         catlogo.
+	 */
+	ArrayList<Libro> buscar(String consulta, boolean todasLasPalabras, int cantidad, CatalogoLibros catalogo)
+	{
+		double longitudPromedio = vigentes == 0 ? 1 : Math.max(1, sumaLongitudes / (double) vigentes);
+		ArrayList<Cursor> cursores = new ArrayList<Cursor>();
+		for (String palabra : new LinkedHashSet<String>(palabras(consulta)))
+		{
+			Termino termino = terminos.get(palabra);
+			if (termino != null && vigentes(termino) > 0)
+			{
+				cursores.add(new Cursor(termino, idf(termino), longitudPromedio));
+			}
+			else if (todasLasPalabras)
+			{
+				return new ArrayList<Libro>();
+			}
+		}
+		if (cursores.isEmpty() || cantidad <= 0)
+		{
+			return new ArrayList<Libro>();
+		}
+
+		Seleccion seleccion = new Seleccion(cantidad, catalogo);
+		if (todasLasPalabras)
+			intersecar(cursores, seleccion);
+		else
+			unir(cursores, seleccion);
+
+		Resultado[] ordenados = seleccion.mejores.toArray(new Resultado[0]);
+		Arrays.sort(ordenados, (a, b) -> b.compareTo(a));
+		ArrayList<Libro> libros = new ArrayList<Libro>(ordenados.length);
+		for (Resultado resultado : ordenados)
+		{
+			libros.add(catalogo.buscar(resultado.documento));
+		}
+		return libros;
+	}
+
+	/**
+	 * Recorre los libros que tienen todas las palabras. Se avanza por la lista
+	 * ms corta y las dems listas saltan hasta el libro candidato. Los bloques
+	 * de la lista ms corta cuyos libros no pueden superar al peor de los mejores
+	 * (segn las cotas de los bloques de todas las listas en ese rango) se saltan
+	 * completos.
+	 */
+	private void intersecar(ArrayList<Cursor> cursores, Seleccion seleccion)
+	{
+		cursores.sort((a, b) -> Integer.compare(a.termino.cantidad, b.termino.cantidad));
+		Cursor menor = cursores.get(0);
+		boolean hay = menor.siguiente();
+		while (hay)
+		{
+			if (menor.cotaBloqueConOtros(cursores) <= seleccion.umbral())
+			{
+				hay = menor.saltarBloque();
+				continue;
+			}
+			int candidato = menor.documento;
+			boolean todos = true;
+			for (int i = 1; i < cursores.size() && todos; i++)
+			{
+				Cursor cursor = cursores.get(i);
+				if (!cursor.avanzarHasta(candidato))
+				{
+					return;
+				}
+				if (cursor.documento != candidato)
+				{
+					todos = false;
+					hay = menor.avanzarHasta(cursor.documento);
+				}
+			}
+			if (todos)
+			{
+				puntuar(cursores, candidato, seleccion);
+				hay = menor.siguiente();
+			}
+		}
+	}
+
+	/**
+	 * Recorre los libros que tienen al menos una de las palabras, en orden de
+	 * consecutivo, de forma que cada libro se califica una sola vez.
+	 *
+	 * Se usa la estrategia MaxScore: las palabras se ordenan por la mayor
+	 * relevancia que pueden aportar, y las palabras cuya suma no alcanza a superar
+	 * al peor de los mejores dejan de proponer candidatos; slo se consultan para
+	 * completar la relevancia de los candidatos de las dems palabras. Adems, un
+	 * bloque completo de una lista se salta si sus libros no pueden superar al
+	 * peor de los mejores ni sumando las cotas de las dems listas en ese rango.
+	 */
+	private void unir(ArrayList<Cursor> cursores, Seleccion seleccion)
+	{
+		cursores.sort((a, b) -> Double.compare(a.cotaTermino, b.cotaTermino));
+		double[] cotasAcumuladas = new double[cursores.size()];
+		double total = 0;
+		for (int i = 0; i < cursores.size(); i++)
+		{
+			total += cursores.get(i).cotaTermino;
+			cotasAcumuladas[i] = total;
+		}
+
+		PriorityQueue<Cursor> pendientes = new PriorityQueue<Cursor>(cursores.size(),
+				(a, b) -> Integer.compare(a.documento, b.documento));
+		for (Cursor cursor : cursores)
+		{
+			if (cursor.siguiente())
+			{
+				pendientes.add(cursor);
+			}
+		}
+
+		// Las palabras con posicin menor que esenciales no proponen candidatos
+		int esenciales = 0;
+		ArrayList<Cursor> actuales = new ArrayList<Cursor>(cursores.size());
+		while (!pendientes.isEmpty())
+		{
+			double umbral = seleccion.umbral();
+			while (esenciales < cursores.size() && cotasAcumuladas[esenciales] <= umbral)
+			{
+				pendientes.remove(cursores.get(esenciales));
+				esenciales++;
+			}
+			if (pendientes.isEmpty())
+			{
+				return;
+			}
+
+			Cursor primero = pendientes.poll();
+			if (primero.cotaBloqueConOtros(cursores) <= umbral)
+			{
+				if (primero.saltarBloque())
+				{
+					pendientes.add(primero);
+				}
+				continue;
+			}
+
+			int documento = primero.documento;
+			actuales.clear();
+			actuales.add(primero);
+			while (!pendientes.isEmpty() && pendientes.peek().documento == documento)
+			{
+				actuales.add(pendientes.poll());
+			}
+
+			// Las palabras no esenciales se consultan de la ms a la menos
+			// relevante, mientras el libro todava pueda superar el umbral
+			double puntaje = 0;
+			for (Cursor cursor : actuales)
+			{
+				puntaje += cursor.puntaje();
+			}
+			for (int i = esenciales - 1; i >= 0 && puntaje + cotasAcumuladas[i] > umbral; i--)
+			{
+				Cursor cursor = cursores.get(i);
+				if (cursor.avanzarHasta(documento) && cursor.documento == documento)
+				{
+					puntaje += cursor.puntaje();
+				}
+			}
+			seleccion.considerar(documento, puntaje);
+
+			for (Cursor cursor : actuales)
+			{
+				if (cursor.siguiente())
+				{
+					pendientes.add(cursor);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calcula la relevancia de un libro para las palabras de los cursores (que
+	 * estn todos en ese libro) y lo agrega a los mejores si corresponde
+	 */
+	private void puntuar(List<Cursor> cursores, int documento, Seleccion seleccion)
+	{
+		double puntaje = 0;
+		for (Cursor cursor : cursores)
+		{
+			puntaje += cursor.puntaje();
+		}
+		seleccion.considerar(documento, puntaje);
+	}
+
+	/**
+	 * Calcula qu tan informativa es una palabra segn la cantidad de libros
+	 * vigentes que la tienen
+	 */
+	private double idf(Termino termino)
+	{
+		int frecuencia = vigentes(termino);
+		return Math.log(1 + (vigentes - frecuencia + 0.5) / (frecuencia + 0.5));
+	}
+
+	private int vigentes(Termino termino)
+	{
+		return vigentesPorTermino[termino.numero / TAMANIO_BLOQUE_VIGENTES][termino.numero % TAMANIO_BLOQUE_VIGENTES];
+	}
+
+	/**
+	 * Divide un texto en palabras: secuencias de letras y dgitos, en minsculas
+	 * y sin tildes
+	 *
+	 * @param texto El texto
+	 * @return Las palabras, en el orden del texto y con repeticiones
+	 */
+	static ArrayList<String> palabras(String texto)
+	{
+		String normalizado = texto.toLowerCase(Locale.ROOT);
+		for (int i = 0; i < normalizado.length(); i++)
+		{
+			if (normalizado.charAt(i) > 127)
+			{
+				normalizado = quitarTildes(normalizado);
+				break;
+			}
+		}
+
+		ArrayList<String> palabras = new ArrayList<String>();
+		int inicio = -1;
+		for (int i = 0; i <= normalizado.length(); i++)
+		{
+			boolean parte = i < normalizado.length() && Character.isLetterOrDigit(normalizado.charAt(i));
+			if (parte && inicio < 0)
+			{
+				inicio = i;
+			}
+			else if (!parte && inicio >= 0)
+			{
+				palabras.add(normalizado.substring(inicio, i));
+				inicio = -1;
+			}
+		}
+		return palabras;
+	}
+
+	/**
+	 * Separa las letras de sus tildes y elimina las tildes
+	 */
+	private static String quitarTildes(String texto)
+	{
+		String separado = Normalizer.normalize(texto, Normalizer.Form.NFD);
+		StringBuilder sinTildes = new StringBuilder(separado.length());
+		for (int i = 0; i < separado.length(); i++)
+		{
+			char c = separado.charAt(i);
+			if (Character.getType(c) != Character.NON_SPACING_MARK)
+			{
+				sinTildes.append(c);
+			}
+		}
+		return sinTildes.toString();
+	}
+
+	/**
+	 * Construye las listas de todas las palabras de los documentos y calcula la
+	 * longitud de cada ttulo
+	 */
+	private static HashMap<String, Termino> indexar(Libro[] documentos, int[] longitudes)
+	{
+		// Cada tarea indexa un grupo consecutivo de documentos, as que al juntar
+		// los grupos en orden las listas quedan ordenadas por consecutivo
+		ArrayList<Callable<HashMap<String, ListaEntradas>>> grupos = new ArrayList<>();
+		for (int inicio = 0; inicio < documentos.length; inicio += LIBROS_POR_TAREA)
+		{
+			int desde = inicio;
+			int hasta = Math.min(documentos.length, inicio + LIBROS_POR_TAREA);
+			grupos.add(() -> indexarGrupo(documentos, longitudes, desde, hasta));
+		}
+		HashMap<String, ListaEntradas> listas = null;
+		for (HashMap<String, ListaEntradas> grupo : ejecutar(grupos))
+		{
+			if (listas == null)
+			{
+				listas = grupo;
+			}
+			else
+			{
+				for (Map.Entry<String, ListaEntradas> entrada : grupo.entrySet())
+				{
+					listas.merge(entrada.getKey(), entrada.getValue(), ListaEntradas::concatenar);
+				}
+			}
+		}
+		if (listas == null)
+		{
+			listas = new HashMap<String, ListaEntradas>();
+		}
+
+		// Las palabras se reparten entre tareas que comprimen sus listas
+		ArrayList<Map.Entry<String, ListaEntradas>> entradas = new ArrayList<>(listas.entrySet());
+		int partes = ForkJoinPool.getCommonPoolParallelism() * 4;
+		int porTarea = Math.max(1, (entradas.size() + partes - 1) / partes);
+		ArrayList<Callable<Termino[]>> compresiones = new ArrayList<>();
+		for (int inicio = 0; inicio < entradas.size(); inicio += porTarea)
+		{
+			int desde = inicio;
+			int hasta = Math.min(entradas.size(), inicio + porTarea);
+			compresiones.add(() -> {
+				Termino[] comprimidos = new Termino[hasta - desde];
+				for (int i = desde; i < hasta; i++)
+				{
+					comprimidos[i - desde] = new Termino(i, entradas.get(i).getValue(), longitudes);
+				}
+				return comprimidos;
+			});
+		}
+
+		HashMap<String, Termino> terminos = new HashMap<String, Termino>(entradas.size() * 2);
+		int i = 0;
+		for (Termino[] comprimidos : ejecutar(compresiones))
+		{
+			for (Termino termino : comprimidos)
+			{
+				terminos.put(entradas.get(i++).getKey(), termino);
+			}
+		}
+		return terminos;
+	}
+
+	/**
+	 * Indexa un grupo de documentos: para cada palabra, los consecutivos de los
+	 * documentos que la tienen y cuntas veces
+	 */
+	private static HashMap<String, ListaEntradas> indexarGrupo(Libro[] documentos, int[] longitudes, int desde,
+			int hasta)
+	{
+		HashMap<String, ListaEntradas> listas = new HashMap<String, ListaEntradas>();
+		for (int documento = desde; documento < hasta; documento++)
+		{
+			if (documentos[documento] == null)
+			{
+				continue;
+			}
+			ArrayList<String> palabras = palabras(documentos[documento].darTitulo());
+			longitudes[documento] = palabras.size();
+			for (String palabra : palabras)
+			{
+				ListaEntradas lista = listas.get(palabra);
+				if (lista == null)
+				{
+					listas.put(palabra, new ListaEntradas(documento));
+				}
+				else
+				{
+					lista.agregar(documento);
+				}
+			}
+		}
+		return listas;
+	}
+
+	/**
+	 * Ejecuta las tareas en el grupo de hilos comn y retorna sus resultados en
+	 * el mismo orden
+	 */
+	private static <T> ArrayList<T> ejecutar(List<Callable<T>> tareas)
+	{
+		ArrayList<T> resultados = new ArrayList<T>(tareas.size());
+		try
+		{
+			for (Future<T> tarea : ForkJoinPool.commonPool().invokeAll(tareas))
+			{
+				resultados.add(tarea.get());
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Se interrumpi la construccin del ndice de texto", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable causa = e.getCause();
+			if (causa instanceof RuntimeException)
+				throw (RuntimeException) causa;
+			if (causa instanceof Error)
+				throw (Error) causa;
+			throw new IllegalStateException(causa);
+		}
+		return resultados;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * La lista sin comprimir de una palabra en un grupo de documentos. Las
+	 * frecuencias slo se guardan cuando alguna es mayor que 1.
+	 */
+	private static final class ListaEntradas
+	{
+		private int[] documentos;
+
+		private int[] frecuencias;
+
+		private int cantidad;
+
+		ListaEntradas(int documento)
+		{
+			documentos = new int[] { documento };
+			cantidad = 1;
+		}
+
+		void agregar(int documento)
+		{
+			if (documentos[cantidad - 1] == documento)
+			{
+				if (frecuencias == null)
+				{
+					frecuencias = new int[documentos.length];
+					Arrays.fill(frecuencias, 0, cantidad, 1);
+				}
+				frecuencias[cantidad - 1]++;
+				return;
+			}
+			if (cantidad == documentos.length)
+			{
+				documentos = Arrays.copyOf(documentos, cantidad * 2);
+				if (frecuencias != null)
+				{
+					frecuencias = Arrays.copyOf(frecuencias, cantidad * 2);
+				}
+			}
+			documentos[cantidad] = documento;
+			if (frecuencias != null)
+			{
+				frecuencias[cantidad] = 1;
+			}
+			cantidad++;
+		}
+
+		int frecuencia(int i)
+		{
+			return frecuencias == null ? 1 : frecuencias[i];
+		}
+
+		/**
+		 * Agrega al final las entradas de la lista de un grupo posterior
+		 */
+		static ListaEntradas concatenar(ListaEntradas primera, ListaEntradas segunda)
+		{
+			int total = primera.cantidad + segunda.cantidad;
+			primera.documentos = Arrays.copyOf(primera.documentos, total);
+			System.arraycopy(segunda.documentos, 0, primera.documentos, primera.cantidad, segunda.cantidad);
+			if (primera.frecuencias != null || segunda.frecuencias != null)
+			{
+				int[] frecuencias = new int[total];
+				for (int i = 0; i < primera.cantidad; i++)
+				{
+					frecuencias[i] = primera.frecuencia(i);
+				}
+				for (int i = 0; i < segunda.cantidad; i++)
+				{
+					frecuencias[primera.cantidad + i] = segunda.frecuencia(i);
+				}
+				primera.frecuencias = frecuencias;
+			}
+			primera.cantidad = total;
+			return primera;
+		}
+	}
+
+	/**
+	 * La lista comprimida de una palabra. No cambia despus de construirse.
+	 *
+	 * Para cada bloque se guardan CAMPOS_BLOQUE enteros seguidos: el primer
+	 * consecutivo, la posicin en datos donde empieza, la mayor frecuencia y, para
+	 * cada grupo de frecuencias, la menor longitud de ttulo. Con ellos se calcula
+	 * la mayor relevancia posible de los libros de un bloque; separar por
+	 * frecuencia evita que un ttulo largo con la palabra repetida y un ttulo
+	 * corto con la palabra una vez se combinen en una cota demasiado alta. Despus
+	 * del ltimo bloque hay un bloque adicional con los mismos datos para la lista
+	 * completa.
+	 */
+	private static final class Termino
+	{
+		private static final int PRIMERO = 0;
+
+		private static final int POSICION = 1;
+
+		private static final int MAXIMA_FRECUENCIA = 2;
+
+		private static final int MINIMA_LONGITUD = 3;
+
+		private static final int CAMPOS_BLOQUE = MINIMA_LONGITUD + GRUPOS_FRECUENCIA;
+
+		/**
+		 * El nmero de la palabra dentro del ndice
+		 */
+		private final int numero;
+
+		/**
+		 * Las entradas comprimidas
+		 */
+		private final byte[] datos;
+
+		/**
+		 * Los datos de cada bloque
+		 */
+		private final int[] bloques;
+
+		/**
+		 * La cantidad de entradas y de bloques de la lista
+		 */
+		private final int cantidad;
+
+		private final int cantidadBloques;
+
+		Termino(int numero, ListaEntradas lista, int[] longitudes)
+		{
+			this.numero = numero;
+			this.cantidad = lista.cantidad;
+			this.cantidadBloques = (cantidad + TAMANIO_BLOQUE - 1) / TAMANIO_BLOQUE;
+			this.bloques = new int[(cantidadBloques + 1) * CAMPOS_BLOQUE];
+			for (int bloque = 0; bloque <= cantidadBloques; bloque++)
+			{
+				Arrays.fill(bloques, bloque * CAMPOS_BLOQUE + MINIMA_LONGITUD, (bloque + 1) * CAMPOS_BLOQUE,
+						Integer.MAX_VALUE);
+			}
+
+			// Primero se calcula el tamao exacto de los datos comprimidos
+			int tamanio = 0;
+			int anterior = 0;
+			for (int i = 0; i < cantidad; i++)
+			{
+				int documento = lista.documentos[i];
+				if (i % TAMANIO_BLOQUE == 0)
+				{
+					anterior = documento;
+				}
+				tamanio += bytes(documento - anterior) + bytes(lista.frecuencia(i));
+				anterior = documento;
+			}
+
+			datos = new byte[tamanio];
+			int escritos = 0;
+			int total = cantidadBloques * CAMPOS_BLOQUE;
+			for (int i = 0; i < cantidad; i++)
+			{
+				int documento = lista.documentos[i];
+				int frecuencia = lista.frecuencia(i);
+				int base = (i / TAMANIO_BLOQUE) * CAMPOS_BLOQUE;
+				if (i % TAMANIO_BLOQUE == 0)
+				{
+					bloques[base + PRIMERO] = documento;
+					bloques[base + POSICION] = escritos;
+					anterior = documento;
+				}
+				escritos = escribir(datos, escritos, documento - anterior);
+				escritos = escribir(datos, escritos, frecuencia);
+				anterior = documento;
+
+				int campo = MINIMA_LONGITUD + Math.min(frecuencia, GRUPOS_FRECUENCIA) - 1;
+				bloques[base + MAXIMA_FRECUENCIA] = Math.max(bloques[base + MAXIMA_FRECUENCIA], frecuencia);
+				bloques[base + campo] = Math.min(bloques[base + campo], longitudes[documento]);
+				bloques[total + MAXIMA_FRECUENCIA] = Math.max(bloques[total + MAXIMA_FRECUENCIA], frecuencia);
+				bloques[total + campo] = Math.min(bloques[total + campo], longitudes[documento]);
+			}
+		}
+
+		int primero(int bloque)
+		{
+			return bloques[bloque * CAMPOS_BLOQUE + PRIMERO];
+		}
+
+		int posicion(int bloque)
+		{
+			return bloques[bloque * CAMPOS_BLOQUE + POSICION];
+		}
+
+		int maximaFrecuencia(int bloque)
+		{
+			return bloques[bloque * CAMPOS_BLOQUE + MAXIMA_FRECUENCIA];
+		}
+
+		int minimaLongitud(int bloque, int grupo)
+		{
+			return bloques[bloque * CAMPOS_BLOQUE + MINIMA_LONGITUD + grupo];
+		}
+
+		private static int bytes(int valor)
+		{
+			int cantidad = 1;
+			while ((valor & ~0x7F) != 0)
+			{
+				valor >>>= 7;
+				cantidad++;
+			}
+			return cantidad;
+		}
+
+		private static int escribir(byte[] bytes, int posicion, int valor)
+		{
+			while ((valor & ~0x7F) != 0)
+			{
+				bytes[posicion++] = (byte) ((valor & 0x7F) | 0x80);
+				valor >>>= 7;
+			}
+			bytes[posicion++] = (byte) valor;
+			return posicion;
+		}
+	}
+
+	/**
+	 * Recorre la lista comprimida de una palabra en orden de consecutivo
+	 */
+	private final class Cursor
+	{
+		private final Termino termino;
+
+		private final double idf;
+
+		private final double longitudPromedio;
+
+		/**
+		 * La mayor relevancia que puede aportar la palabra a un libro
+		 */
+		private final double cotaTermino;
+
+		/**
+		 * El bloque y la entrada actuales, y la posicin en datos de la siguiente
+		 * entrada
+		 */
+		private int bloque;
+
+		private int entrada = -1;
+
+		private int posicion;
+
+		/**
+		 * El documento de la entrada actual y la frecuencia de la palabra en l
+		 */
+		private int documento = -1;
+
+		private int frecuencia;
+
+		/**
+		 * El bloque para el que se calcul la ltima cota con las dems palabras, y
+		 * esa cota
+		 */
+		private int bloqueCotado = -1;
+
+		private double cotaBloqueCotado;
+
+		Cursor(Termino termino, double idf, double longitudPromedio)
+		{
+			this.termino = termino;
+			this.idf = idf;
+			this.longitudPromedio = longitudPromedio;
+			this.cotaTermino = cotaBloque(termino.cantidadBloques);
+		}
+
+		/**
+		 * Calcula la relevancia que aporta la palabra al libro de la entrada actual
+		 */
+		double puntaje()
+		{
+			return relevancia(frecuencia, longitudes[documento]);
+		}
+
+		/**
+		 * Calcula la mayor relevancia que puede aportar la palabra a un libro del
+		 * bloque actual
+		 */
+		double cotaBloque()
+		{
+			return cotaBloque(bloque);
+		}
+
+		/**
+		 * Calcula la mayor relevancia que puede aportar la palabra a un libro del
+		 * bloque indicado. El bloque adicional corresponde a la lista completa.
+		 */
+		private double cotaBloque(int indice)
+		{
+			double cota = 0;
+			for (int grupo = 0; grupo < GRUPOS_FRECUENCIA; grupo++)
+			{
+				int minimaLongitud = termino.minimaLongitud(indice, grupo);
+				if (minimaLongitud != Integer.MAX_VALUE)
+				{
+					int frecuencia = grupo == GRUPOS_FRECUENCIA - 1 ? termino.maximaFrecuencia(indice) : grupo + 1;
+					cota = Math.max(cota, relevancia(frecuencia, minimaLongitud));
+				}
+			}
+			return cota;
+		}
+
+		/**
+		 * Calcula la mayor relevancia que puede tener un libro del bloque actual
+		 * sumando lo que pueden aportar las dems palabras en el rango de
+		 * consecutivos del bloque. El resultado se guarda mientras el cursor siga en
+		 * el mismo bloque.
+		 */
+		double cotaBloqueConOtros(List<Cursor> cursores)
+		{
+			if (bloqueCotado != bloque)
+			{
+				int desde = termino.primero(bloque);
+				int hasta = bloque + 1 < termino.cantidadBloques ? termino.primero(bloque + 1) - 1 : Integer.MAX_VALUE;
+				double cota = cotaBloque();
+				for (Cursor otro : cursores)
+				{
+					if (otro != this)
+					{
+						cota += otro.cotaRango(desde, hasta);
+					}
+				}
+				cotaBloqueCotado = cota;
+				bloqueCotado = bloque;
+			}
+			return cotaBloqueCotado;
+		}
+
+		/**
+		 * Calcula la mayor relevancia que puede aportar la palabra a un libro con un
+		 * consecutivo en el rango indicado, a partir de los bloques que lo cubren
+		 */
+		private double cotaRango(int desde, int hasta)
+		{
+			double cota = 0;
+			for (int i = ultimoBloqueHasta(desde, 0); i < termino.cantidadBloques && termino.primero(i) <= hasta; i++)
+			{
+				cota = Math.max(cota, cotaBloque(i));
+			}
+			return cota;
+		}
+
+		/**
+		 * Busca el ltimo bloque, a partir del indicado, cuyo primer documento no
+		 * supera el documento indicado. Si ninguno cumple, retorna el indicado.
+		 */
+		private int ultimoBloqueHasta(int documento, int desde)
+		{
+			int bajo = desde;
+			int alto = termino.cantidadBloques - 1;
+			while (bajo < alto)
+			{
+				int medio = (bajo + alto + 1) >>> 1;
+				if (termino.primero(medio) <= documento)
+					bajo = medio;
+				else
+					alto = medio - 1;
+			}
+			return bajo;
+		}
+
+		/**
+		 * Calcula la relevancia BM25 de la palabra para un libro. Crece con la
+		 * frecuencia y decrece con la longitud del ttulo.
+		 */
+		private double relevancia(int frecuencia, int longitud)
+		{
+			double normalizacion = K1 * (1 - B + B * longitud / longitudPromedio);
+			return idf * frecuencia * (K1 + 1) / (frecuencia + normalizacion);
+		}
+
+		/**
+		 * Pasa a la primera entrada del siguiente bloque
+		 *
+		 * @return false si ya no hay ms entradas
+		 */
+		boolean saltarBloque()
+		{
+			entrada = (bloque + 1) * TAMANIO_BLOQUE - 1;
+			return siguiente();
+		}
+
+		/**
+		 * Pasa a la siguiente entrada
+		 *
+		 * @return false si ya no hay ms entradas
+		 */
+		boolean siguiente()
+		{
+			entrada++;
+			if (entrada >= termino.cantidad)
+			{
+				return false;
+			}
+			if (entrada % TAMANIO_BLOQUE == 0)
+			{
+				bloque = entrada / TAMANIO_BLOQUE;
+				posicion = termino.posicion(bloque);
+				documento = termino.primero(bloque);
+			}
+			documento += leer();
+			frecuencia = leer();
+			return true;
+		}
+
+		/**
+		 * Avanza hasta la primera entrada con un documento mayor o igual al
+		 * indicado, saltando los bloques que terminan antes
+		 *
+		 * @return false si ya no hay ms entradas
+		 */
+		boolean avanzarHasta(int objetivo)
+		{
+			if (entrada >= 0 && documento >= objetivo)
+			{
+				return entrada < termino.cantidad;
+			}
+
+			// Si el objetivo est despus del bloque actual, se salta al ltimo
+			// bloque cuyo primer documento no lo supera
+			if (bloque + 1 < termino.cantidadBloques && termino.primero(bloque + 1) <= objetivo)
+			{
+				entrada = ultimoBloqueHasta(objetivo, bloque + 1) * TAMANIO_BLOQUE - 1;
+			}
+
+			while (siguiente())
+			{
+				if (documento >= objetivo)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private int leer()
+		{
+			byte[] datos = termino.datos;
+			int valor = 0;
+			int desplazamiento = 0;
+			byte b;
+			do
+			{
+				b = datos[posicion++];
+				valor |= (b & 0x7F) << desplazamiento;
+				desplazamiento += 7;
+			}
+			while (b < 0);
+			return valor;
+		}
+	}
+
+	/**
+	 * Los libros ms relevantes encontrados hasta el momento, en un montculo
+	 * acotado cuya cima es el peor de ellos
+	 */
+	private static final class Seleccion
+	{
+		private final PriorityQueue<Resultado> mejores;
+
+		private final int cantidad;
+
+		/**
+		 * El catlogo de la versin que se consulta
+		 */
+		private final CatalogoLibros catalogo;
+
+		Seleccion(int cantidad, CatalogoLibros catalogo)
+		{
+			this.cantidad = cantidad;
+			this.catalogo = catalogo;
+			this.mejores = new PriorityQueue<Resultado>(cantidad + 1);
+		}
+
+		/**
+		 * Calcula la relevancia que debe superar un libro para quedar entre los
+		 * mejores. Como los libros se recorren en orden de consecutivo, un libro con
+		 * la misma relevancia que el peor de los mejores ya no puede entrar.
+		 */
+		double umbral()
+		{
+			return mejores.size() < cantidad ? Double.NEGATIVE_INFINITY : mejores.peek().puntaje;
+		}
+
+		/**
+		 * Agrega un libro a los mejores si los supera y no se ha retirado
+		 */
+		void considerar(int documento, double puntaje)
+		{
+			// Se busca en el catlogo slo si el libro entrara a los mejores
+			if (mejores.size() < cantidad)
+			{
+				if (catalogo.buscar(documento) != null)
+				{
+					mejores.add(new Resultado(documento, puntaje));
+				}
+			}
+			else if (puntaje >= mejores.peek().puntaje)
+			{
+				Resultado resultado = new Resultado(documento, puntaje);
+				if (resultado.compareTo(mejores.peek()) > 0 && catalogo.buscar(documento) != null)
+				{
+					mejores.poll();
+					mejores.add(resultado);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Un libro encontrado y su relevancia. Un resultado es mayor que otro si es
+	 * ms relevante o, con la misma relevancia, si est antes en el catlogo.
+	 */
+	private static final class Resultado implements Comparable<Resultado>
+	{
+		private final int documento;
+
+		private final double puntaje;
+
+		Resultado(int documento, double puntaje)
+		{
+			this.documento = documento;
+			this.puntaje = puntaje;
+		}
+
+		@Override
+		public int compareTo(Resultado otro)
+		{
+			int comparacion = Double.compare(puntaje, otro.puntaje);
+			return comparacion != 0 ? comparacion : Integer.compare(otro.documento, documento);
+		}
+	}
+}
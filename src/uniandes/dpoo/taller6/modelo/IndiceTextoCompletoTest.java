@@ -0,0 +1,172 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara las bsquedas del ndice de texto completo con el clculo de BM25
+ * sobre todos los libros
+ */
+class IndiceTextoCompletoTest {
+
+	private static final String[] PALABRAS = { "amor", "Guerra", "cancin", "CANCION", "la", "de", "el", "mar",
+			"historia", "noche", "1984", "sol", "ro", "ciudad", "perdida" };
+
+	private Random aleatorio;
+
+	private IndiceTextoCompleto indice;
+
+	private ArrayList<Libro> libros;
+
+	@BeforeEach
+	void setUp() {
+		aleatorio = new Random(11);
+		libros = new ArrayList<Libro>();
+		Categoria categoria = new Categoria("Novela", true);
+		for (int i = 0; i < 3000; i++) {
+			// Las palabras ms comunes aparecen en ms ttulos y algunas se repiten
+			StringBuilder titulo = new StringBuilder();
+			for (int j = 1 + aleatorio.nextInt(7); j > 0; j--) {
+				int palabra = Math.min(aleatorio.nextInt(PALABRAS.length), aleatorio.nextInt(PALABRAS.length));
+				titulo.append(PALABRAS[palabra]).append(aleatorio.nextBoolean() ? " " : ", ");
+			}
+			Libro libro = new Libro(titulo.toString(), "Autor", 3, categoria);
+			libro.cambiarConsecutivo(i);
+			libros.add(libro);
+		}
+		indice = IndiceTextoCompleto.construir(libros);
+	}
+
+	@Test
+	void testBuscarCoincideConRecorrido() {
+		for (String consulta : consultas()) {
+			verificar(indice, libros, consulta);
+		}
+	}
+
+	@Test
+	void testBuscarDespuesDeRetirar() {
+		for (int ronda = 0; ronda < 8; ronda++) {
+			indice = indice.retirar(retirar(libros, 350));
+			for (String consulta : consultas()) {
+				verificar(indice, libros, consulta);
+			}
+		}
+	}
+
+	@Test
+	void testVersionesSonIndependientes() {
+		indice = indice.retirar(retirar(libros, 500));
+		ArrayList<Libro> librosNuevos = new ArrayList<Libro>(libros);
+		IndiceTextoCompleto nuevo = indice.retirar(retirar(librosNuevos, 1500));
+
+		for (String consulta : consultas()) {
+			verificar(indice, libros, consulta);
+			verificar(nuevo, librosNuevos, consulta);
+		}
+	}
+
+	/**
+	 * Retira libros al azar de la lista, que sigue en orden de consecutivo
+	 */
+	private List<Libro> retirar(List<Libro> libros, int cantidad) {
+		ArrayList<Libro> retirados = new ArrayList<Libro>();
+		for (int i = 0; i < cantidad && !libros.isEmpty(); i++) {
+			retirados.add(libros.remove(aleatorio.nextInt(libros.size())));
+		}
+		return retirados;
+	}
+
+	private List<String> consultas() {
+		ArrayList<String> consultas = new ArrayList<String>();
+		consultas.add("");
+		consultas.add("inexistente");
+		consultas.add("amor inexistente");
+		for (int i = 0; i < 30; i++) {
+			StringBuilder consulta = new StringBuilder();
+			for (int j = 1 + aleatorio.nextInt(3); j > 0; j--) {
+				consulta.append(PALABRAS[aleatorio.nextInt(PALABRAS.length)]).append(' ');
+			}
+			consultas.add(consulta.toString());
+		}
+		return consultas;
+	}
+
+	private void verificar(IndiceTextoCompleto indice, List<Libro> libros, String consulta) {
+		CatalogoLibros catalogo = new CatalogoLibros(libros);
+		for (boolean todasLasPalabras : new boolean[] { true, false }) {
+			IdentityHashMap<Libro, Double> puntajes = puntuar(libros, consulta, todasLasPalabras);
+			ArrayList<Libro> esperados = new ArrayList<Libro>(puntajes.keySet());
+			esperados.sort((a, b) -> {
+				int comparacion = Double.compare(puntajes.get(b), puntajes.get(a));
+				return comparacion != 0 ? comparacion : Integer.compare(a.darConsecutivo(), b.darConsecutivo());
+			});
+
+			for (int cantidad : new int[] { 1, 7, 40, libros.size() + 1 }) {
+				String descripcion = consulta + " " + todasLasPalabras + " " + cantidad;
+				ArrayList<Libro> encontrados = indice.buscar(consulta, todasLasPalabras, cantidad, catalogo);
+				assertEquals(Math.min(cantidad, esperados.size()), encontrados.size(), descripcion);
+				Set<Libro> distintos = Collections.newSetFromMap(new IdentityHashMap<Libro, Boolean>());
+				distintos.addAll(encontrados);
+				assertEquals(encontrados.size(), distintos.size(), descripcion);
+				// Los puntajes se suman en otro orden, as que los empates se comparan
+				// con una tolerancia
+				for (int i = 0; i < encontrados.size(); i++) {
+					Double puntaje = puntajes.get(encontrados.get(i));
+					assertNotNull(puntaje, descripcion);
+					assertEquals(puntajes.get(esperados.get(i)), puntaje, 1e-9, descripcion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calcula el puntaje BM25 de cada libro que cumple la consulta
+	 */
+	private static IdentityHashMap<Libro, Double> puntuar(List<Libro> libros, String consulta,
+			boolean todasLasPalabras) {
+		HashMap<String, Integer> librosPorPalabra = new HashMap<String, Integer>();
+		long sumaLongitudes = 0;
+		for (Libro libro : libros) {
+			ArrayList<String> palabras = IndiceTextoCompleto.palabras(libro.darTitulo());
+			sumaLongitudes += palabras.size();
+			for (String palabra : new LinkedHashSet<String>(palabras)) {
+				librosPorPalabra.merge(palabra, 1, Integer::sum);
+			}
+		}
+		double longitudPromedio = libros.isEmpty() ? 1 : Math.max(1, sumaLongitudes / (double) libros.size());
+
+		IdentityHashMap<Libro, Double> puntajes = new IdentityHashMap<Libro, Double>();
+		LinkedHashSet<String> buscadas = new LinkedHashSet<String>(IndiceTextoCompleto.palabras(consulta));
+		for (Libro libro : libros) {
+			ArrayList<String> palabras = IndiceTextoCompleto.palabras(libro.darTitulo());
+			double puntaje = 0;
+			int encontradas = 0;
+			for (String buscada : buscadas) {
+				int frecuencia = Collections.frequency(palabras, buscada);
+				if (frecuencia > 0) {
+					int conPalabra = librosPorPalabra.get(buscada);
+					double idf = Math.log(1 + (libros.size() - conPalabra + 0.5) / (conPalabra + 0.5));
+					puntaje += idf * frecuencia * 2.2
+							/ (frecuencia + 1.2 * (0.25 + 0.75 * palabras.size() / longitudPromedio));
+					encontradas++;
+				}
+			}
+			if (todasLasPalabras ? encontradas == buscadas.size() && encontradas > 0 : encontradas > 0) {
+				puntajes.put(libro, puntaje);
+			}
+		}
+		return puntajes;
+	}
+}
@@ -0,0 +1,144 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Esta clase es un ndice que permite encontrar los libros de una librera a
+ * partir de su ttulo exacto.
+ *
+ * Para cada ttulo se guardan todos los libros que lo tienen, en el mismo orden
+ * en el que estn en el catlogo, y lo mismo para cada ttulo en minsculas.
+ *
+ * El ndice no cambia despus de construirse, as que las versiones de la
+ * librera lo comparten: cada bsqueda traduce los libros a los del catlogo de
+ * la versin y omite los que ya se retiraron.
+ */
+class IndiceTitulos
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los libros agrupados por su ttulo exacto
+	 */
+	private HashMap<String, ArrayList<Libro>> librosPorTitulo;
+
+	/**
+	 * Los libros agrupados por su ttulo en minsculas. Es null mientras no se
+	 * haya terminado de construir el ndice (ver construirMinusculas).
+	 */
+	private HashMap<String, ArrayList<Libro>> librosPorTituloMinusculas;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un ndice vaco
+	 */
+	IndiceTitulos()
+	{
+		librosPorTitulo = new HashMap<String, ArrayList<Libro>>();
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Agrega un libro al ndice mientras se construye. Los libros se deben
+	 * agregar en el orden del catlogo.
+	 *
+	 * @param libro El libro que se va a agregar
+	 */
+	void agregar(Libro libro)
+	{
+		ArrayList<Libro> grupo = librosPorTitulo.get(libro.darTitulo());
+		if (grupo == null)
+		{
+			grupo = new ArrayList<Libro>(1);
+			librosPorTitulo.put(libro.darTitulo(), grupo);
+		}
+		grupo.add(libro);
+	}
+
+	/**
+	 * Busca los libros que tienen exactamente el ttulo indicado
+	 *
+	 * @param titulo   El ttulo buscado
+	 * @param catalogo El catlogo de la versin que se consulta
+	 * @return Una lista nueva con los libros del catlogo que tienen ese ttulo,
+	 *         en el orden del catlogo. Si no hay ninguno, la lista est vaca.
+	 */
+	ArrayList<Libro> buscar(String titulo, CatalogoLibros catalogo)
+	{
+		return vigentes(librosPorTitulo.get(titulo), catalogo);
+	}
+
+	/**
+	 * Busca los libros cuyo ttulo coincide con el indicado sin tener en cuenta
+	 * maysculas y minsculas
+	 *
+	 * @param titulo   El ttulo buscado
+	 * @param catalogo El catlogo de la versin que se consulta
+	 * @return Una lista nueva con los libros del catlogo que tienen ese ttulo,
+	 *         en el orden del catlogo. Si no hay ninguno, la lista est vaca.
+	 */
+	ArrayList<Libro> buscarSinMayusculas(String titulo, CatalogoLibros catalogo)
+	{
+		return vigentes(librosPorTituloMinusculas.get(titulo.toLowerCase()), catalogo);
+	}
+
+	/**
+	 * Termina de construir el ndice: construye el ndice por ttulo en
+	 * minsculas a partir del ndice exacto. El orden del catlogo se respeta
+	 * porque cada grupo del ndice exacto ya est ordenado y los grupos que
+	 * coinciden en minsculas se mezclan por posicin.
+	 */
+	void construirMinusculas()
+	{
+		HashMap<String, ArrayList<Libro>> indice = new HashMap<String, ArrayList<Libro>>(librosPorTitulo.size() * 2);
+		for (ArrayList<Libro> grupo : librosPorTitulo.values())
+		{
+			String llave = grupo.get(0).darTitulo().toLowerCase();
+			ArrayList<Libro> existentes = indice.get(llave);
+			if (existentes == null)
+			{
+				indice.put(llave, new ArrayList<Libro>(grupo));
+			}
+			else
+			{
+				indice.put(llave, mezclar(existentes, grupo));
+			}
+		}
+		librosPorTituloMinusculas = indice;
+	}
+
+	/**
+	 * Mezcla dos listas que estn en el orden del catlogo
+	 */
+	private ArrayList<Libro> mezclar(ArrayList<Libro> a, ArrayList<Libro> b)
+	{
+		ArrayList<Libro> mezcla = new ArrayList<Libro>(a.size() + b.size());
+		int i = 0;
+		int j = 0;
+		while (i < a.size() && j < b.size())
+		{
+			if (a.get(i).darConsecutivo() <= b.get(j).darConsecutivo())
+				mezcla.add(a.get(i++));
+			else
+				mezcla.add(b.get(j++));
+		}
+		mezcla.addAll(a.subList(i, a.size()));
+		mezcla.addAll(b.subList(j, b.size()));
+		return mezcla;
+	}
+
+	private static ArrayList<Libro> vigentes(List<Libro> grupo, CatalogoLibros catalogo)
+	{
+		return grupo == null ? new ArrayList<Libro>() : catalogo.vigentes(grupo);
+	}
+}
@@ -0,0 +1,393 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Esta clase es un ndice que permite encontrar los ttulos parecidos a un
+ * ttulo buscado, sin tener en cuenta maysculas y minsculas. Dos ttulos se
+ * parecen si su distancia de edicin (la cantidad mnima de caracteres que hay
+ * que insertar, borrar o cambiar para pasar de uno al otro) es pequea.
+ *
+ * Los ttulos distintos (en minsculas) se organizan en un rbol BK: cada hijo
+ * de un nodo est a una distancia conocida del nodo, as que por la desigualdad
+ * triangular una bsqueda con distancia mxima k slo tiene que visitar los
+ * hijos cuya distancia est a menos de k de la distancia entre el ttulo
+ * buscado y el nodo.
+ *
+ * La librera construye el rbol en otro hilo despus de cargar el catlogo,
+ * porque construirlo toma mucho ms que una bsqueda; mientras no se ha
+ * construido, las bsquedas comparan el ttulo con todos los del catlogo. Las
+ * bsquedas no modifican el ndice ni usan candados: cada una usa su propio
+ * arreglo de mscaras para calcular distancias, as que varios hilos pueden
+ * buscar al mismo tiempo.
+ *
+ * El rbol no cambia despus de construirse, as que las versiones de la
+ * librera lo comparten. Los ttulos cuyos libros se retiraron se quedan en el
+ * rbol y las bsquedas los siguen encontrando: quien busca los descarta cuando
+ * no encuentra libros vigentes con ese ttulo.
+ */
+class IndiceTitulosAproximados
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La raz del rbol. Es null mientras no se haya construido o si no hay
+	 * ttulos.
+	 */
+	private Nodo raiz;
+
+	/**
+	 * Los nodos del rbol segn su ttulo en minsculas. Es null mientras el rbol
+	 * no se haya construido.
+	 */
+	private HashMap<String, Nodo> nodos;
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Construye el rbol con los ttulos de todos los libros del catlogo, si
+	 * todava no existe
+	 *
+	 * @param catalogo Los libros del catlogo
+	 */
+	void construir(Collection<Libro> catalogo)
+	{
+		if (nodos == null)
+		{
+			nodos = new HashMap<String, Nodo>();
+			long[] mascaras = new long[256];
+			for (Libro libro : catalogo)
+			{
+				insertar(libro.darTitulo().toLowerCase(), mascaras);
+			}
+		}
+	}
+
+	/**
+	 * Busca los ttulos que estn a una distancia de edicin mxima del ttulo
+	 * indicado
+	 *
+	 * @param titulo           El ttulo buscado
+	 * @param distanciaMaxima  La distancia de edicin mxima
+	 * @param catalogo         Los libros del catlogo, que se recorren si el rbol
+	 *                         todava no existe
+	 * @return Los ttulos encontrados (en minsculas), del ms parecido al menos
+	 *         parecido. Los ttulos a la misma distancia estn en orden
+	 *         alfabtico. Si el rbol ya existe, pueden incluir ttulos que ya no
+	 *         tienen libros en el catlogo.
+	 */
+	ArrayList<String> buscar(String titulo, int distanciaMaxima, Collection<Libro> catalogo)
+	{
+		if (nodos == null)
+		{
+			return buscarRecorriendo(titulo, distanciaMaxima, catalogo);
+		}
+
+		ArrayList<Coincidencia> coincidencias = new ArrayList<Coincidencia>();
+		if (raiz != null && distanciaMaxima >= 0)
+		{
+			String buscado = titulo.toLowerCase();
+			long[] mascaras = new long[256];
+			ArrayDeque<Nodo> pendientes = new ArrayDeque<Nodo>();
+			pendientes.push(raiz);
+			while (!pendientes.isEmpty())
+			{
+				Nodo nodo = pendientes.pop();
+				int distancia = distancia(buscado, nodo.titulo, mascaras);
+				if (distancia <= distanciaMaxima)
+				{
+					coincidencias.add(new Coincidencia(nodo.titulo, distancia));
+				}
+				for (int i = 0; i < nodo.cantidadHijos; i++)
+				{
+					if (Math.abs(nodo.distancias[i] - distancia) <= distanciaMaxima)
+					{
+						pendientes.push(nodo.hijos[i]);
+					}
+				}
+			}
+		}
+
+		return ordenar(coincidencias);
+	}
+
+	/**
+	 * Busca los ttulos que estn a una distancia de edicin mxima del ttulo
+	 * indicado, comparndolo con el ttulo de cada libro del catlogo. Sirve
+	 * mientras el rbol todava no se ha construido.
+	 *
+	 * @param titulo          El ttulo buscado
+	 * @param distanciaMaxima La distancia de edicin mxima
+	 * @param catalogo        Los libros del catlogo
+	 * @return Los ttulos encontrados (en minsculas), en el mismo orden que
+	 *         retorna buscar
+	 */
+	static ArrayList<String> buscarRecorriendo(String titulo, int distanciaMaxima, Collection<Libro> catalogo)
+	{
+		ArrayList<Coincidencia> coincidencias = new ArrayList<Coincidencia>();
+		if (distanciaMaxima >= 0)
+		{
+			String buscado = titulo.toLowerCase();
+			long[] mascaras = new long[256];
+			HashSet<String> revisados = new HashSet<String>();
+			for (Libro libro : catalogo)
+			{
+				String candidato = libro.darTitulo().toLowerCase();
+				// La diferencia de longitudes es una cota inferior de la distancia
+				if (Math.abs(candidato.length() - buscado.length()) <= distanciaMaxima && revisados.add(candidato))
+				{
+					int distancia = distancia(buscado, candidato, mascaras);
+					if (distancia <= distanciaMaxima)
+					{
+						coincidencias.add(new Coincidencia(candidato, distancia));
+					}
+				}
+			}
+		}
+		return ordenar(coincidencias);
+	}
+
+	/**
+	 * Ordena los ttulos encontrados por distancia y luego alfabticamente
+	 */
+	private static ArrayList<String> ordenar(ArrayList<Coincidencia> coincidencias)
+	{
+		coincidencias.sort((a, b) -> a.distancia != b.distancia ? Integer.compare(a.distancia, b.distancia)
+				: a.titulo.compareTo(b.titulo));
+		ArrayList<String> titulos = new ArrayList<String>(coincidencias.size());
+		for (Coincidencia coincidencia : coincidencias)
+		{
+			titulos.add(coincidencia.titulo);
+		}
+		return titulos;
+	}
+
+	/**
+	 * Inserta un ttulo en el rbol si todava no est
+	 *
+	 * @param mascaras Un arreglo de 256 posiciones en 0 para calcular distancias
+	 * @return El nodo del ttulo
+	 */
+	private Nodo insertar(String titulo, long[] mascaras)
+	{
+		Nodo existente = nodos.get(titulo);
+		if (existente != null)
+		{
+			return existente;
+		}
+
+		Nodo nuevo = new Nodo(titulo);
+		nodos.put(titulo, nuevo);
+		if (raiz == null)
+		{
+			raiz = nuevo;
+			return nuevo;
+		}
+
+		Nodo actual = raiz;
+		while (true)
+		{
+			int distancia = distancia(titulo, actual.titulo, mascaras);
+			Nodo hijo = actual.darHijo(distancia);
+			if (hijo == null)
+			{
+				actual.agregarHijo(distancia, nuevo);
+				return nuevo;
+			}
+			actual = hijo;
+		}
+	}
+
+	/**
+	 * Calcula la distancia de edicin entre dos textos.
+	 *
+	 * Si el ms corto tiene mximo 64 caracteres se usa el algoritmo de vectores
+	 * de bits de Myers: cada columna de la tabla de programacin dinmica se
+	 * representa con dos long que guardan si cada celda sube o baja respecto a la
+	 * de arriba, as que una columna completa se calcula con unas pocas
+	 * operaciones. Los textos ms largos usan la tabla.
+	 *
+	 * @param mascaras Un arreglo de 256 posiciones en 0, donde se marcan las
+	 *                 posiciones de cada caracter del texto corto. Al terminar
+	 *                 queda otra vez en 0.
+	 */
+	private static int distancia(String a, String b, long[] mascaras)
+	{
+		if (a.length() > b.length())
+		{
+			String temporal = a;
+			a = b;
+			b = temporal;
+		}
+		int largo = a.length();
+		if (largo == 0)
+		{
+			return b.length();
+		}
+		if (largo > Long.SIZE)
+		{
+			return distanciaTabla(b, a);
+		}
+
+		// Las posiciones donde aparece cada caracter del texto corto
+		for (int i = 0; i < largo; i++)
+		{
+			char c = a.charAt(i);
+			if (c < mascaras.length)
+			{
+				mascaras[c] |= 1L << i;
+			}
+		}
+
+		long ultimo = 1L << (largo - 1);
+		long positivos = -1L;
+		long negativos = 0;
+		int distancia = largo;
+		for (int j = 0; j < b.length(); j++)
+		{
+			char c = b.charAt(j);
+			long iguales = c < mascaras.length ? mascaras[c] : mascara(a, c);
+			long x = iguales | negativos;
+			long horizontal = (((iguales & positivos) + positivos) ^ positivos) | iguales;
+			long subeHorizontal = negativos | ~(horizontal | positivos);
+			long bajaHorizontal = positivos & horizontal;
+			if ((subeHorizontal & ultimo) != 0)
+				distancia++;
+			else if ((bajaHorizontal & ultimo) != 0)
+				distancia--;
+			subeHorizontal = (subeHorizontal << 1) | 1;
+			bajaHorizontal <<= 1;
+			positivos = bajaHorizontal | ~(x | subeHorizontal);
+			negativos = subeHorizontal & x;
+		}
+
+		for (int i = 0; i < largo; i++)
+		{
+			char c = a.charAt(i);
+			if (c < mascaras.length)
+			{
+				mascaras[c] = 0;
+			}
+		}
+		return distancia;
+	}
+
+	/**
+	 * Calcula las posiciones donde aparece un caracter que no est en la tabla de
+	 * mscaras
+	 */
+	private static long mascara(String texto, char c)
+	{
+		long mascara = 0;
+		for (int i = 0; i < texto.length(); i++)
+		{
+			if (texto.charAt(i) == c)
+			{
+				mascara |= 1L << i;
+			}
+		}
+		return mascara;
+	}
+
+	/**
+	 * Calcula la distancia de edicin entre dos textos usando slo dos filas de la
+	 * tabla de programacin dinmica. El segundo texto debe ser el ms corto.
+	 */
+	static int distanciaTabla(String a, String b)
+	{
+		int[] anterior = new int[b.length() + 1];
+		int[] actual = new int[b.length() + 1];
+		for (int j = 0; j <= b.length(); j++)
+		{
+			anterior[j] = j;
+		}
+		for (int i = 1; i <= a.length(); i++)
+		{
+			actual[0] = i;
+			char c = a.charAt(i - 1);
+			for (int j = 1; j <= b.length(); j++)
+			{
+				int cambio = anterior[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+				actual[j] = Math.min(cambio, Math.min(anterior[j], actual[j - 1]) + 1);
+			}
+			int[] temporal = anterior;
+			anterior = actual;
+			actual = temporal;
+		}
+		return anterior[b.length()];
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Un ttulo del rbol con sus hijos. Los hijos se guardan en arreglos
+	 * paralelos porque cada nodo suele tener pocos.
+	 */
+	private static final class Nodo
+	{
+		private final String titulo;
+
+		private int[] distancias = new int[0];
+
+		private Nodo[] hijos = new Nodo[0];
+
+		private int cantidadHijos;
+
+		Nodo(String titulo)
+		{
+			this.titulo = titulo;
+		}
+
+		Nodo darHijo(int distancia)
+		{
+			for (int i = 0; i < cantidadHijos; i++)
+			{
+				if (distancias[i] == distancia)
+				{
+					return hijos[i];
+				}
+			}
+			return null;
+		}
+
+		void agregarHijo(int distancia, Nodo hijo)
+		{
+			if (cantidadHijos == hijos.length)
+			{
+				int capacidad = Math.max(2, cantidadHijos * 2);
+				distancias = Arrays.copyOf(distancias, capacidad);
+				hijos = Arrays.copyOf(hijos, capacidad);
+			}
+			distancias[cantidadHijos] = distancia;
+			hijos[cantidadHijos] = hijo;
+			cantidadHijos++;
+		}
+	}
+
+	/**
+	 * Un ttulo encontrado y su distancia al ttulo buscado
+	 */
+	private static final class Coincidencia
+	{
+		private final String titulo;
+
+		private final int distancia;
+
+		Coincidencia(String titulo, int distancia)
+		{
+			this.titulo = titulo;
+			this.distancia = distancia;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compara las bsquedas del ndice de ttulos parecidos con el clculo de la
+ * distancia de edicin contra todos los ttulos. El ndice no cambia cuando se
+ * retiran libros, as que de sus resultados slo se comparan los ttulos que
+ * todava tienen libros.
+ */
+class IndiceTitulosAproximadosTest {
+
+	/**
+	 * Los caracteres de los ttulos. Los dos ltimos estn por fuera de la tabla
+	 * de mscaras del ndice.
+	 */
+	private static final String ALFABETO = "abcde AB\u0101\u20ac";
+
+	private Random aleatorio;
+
+	private IndiceTitulosAproximados indice;
+
+	private ArrayList<Libro> libros;
+
+	@BeforeEach
+	void setUp() {
+		aleatorio = new Random(7);
+		indice = new IndiceTitulosAproximados();
+		libros = new ArrayList<Libro>();
+		Categoria categoria = new Categoria("Novela", true);
+		for (int i = 0; i < 600; i++) {
+			// Algunos ttulos son ms largos que 64 caracteres y otros se repiten
+			String titulo;
+			if (i % 10 == 9) {
+				titulo = libros.get(aleatorio.nextInt(i)).darTitulo();
+			} else if (i % 7 == 0) {
+				titulo = tituloAleatorio(60 + aleatorio.nextInt(20));
+			} else {
+				titulo = tituloAleatorio(1 + aleatorio.nextInt(8));
+			}
+			libros.add(new Libro(titulo, "Autor", 3, categoria));
+		}
+		indice.construir(libros);
+	}
+
+	@Test
+	void testBuscarCoincideConRecorrido() {
+		for (String consulta : consultas()) {
+			verificar(indice, libros, consulta);
+		}
+	}
+
+	@Test
+	void testBuscarDespuesDeEliminar() {
+		for (int ronda = 0; ronda < 5; ronda++) {
+			for (int i = 0; i < 80 && !libros.isEmpty(); i++) {
+				libros.remove(aleatorio.nextInt(libros.size()));
+			}
+			for (String consulta : consultas()) {
+				verificar(indice, libros, consulta);
+			}
+		}
+	}
+
+	private String tituloAleatorio(int largo) {
+		StringBuilder titulo = new StringBuilder();
+		for (int i = 0; i < largo; i++) {
+			titulo.append(ALFABETO.charAt(aleatorio.nextInt(ALFABETO.length())));
+		}
+		return titulo.toString();
+	}
+
+	private List<String> consultas() {
+		ArrayList<String> consultas = new ArrayList<String>();
+		consultas.add("");
+		consultas.add("zz");
+		for (int i = 0; i < 40; i++) {
+			StringBuilder consulta = new StringBuilder(libros.get(aleatorio.nextInt(libros.size())).darTitulo());
+			for (int cambios = aleatorio.nextInt(3); cambios > 0 && consulta.length() > 0; cambios--) {
+				int posicion = aleatorio.nextInt(consulta.length());
+				consulta.setCharAt(posicion, ALFABETO.charAt(aleatorio.nextInt(ALFABETO.length())));
+			}
+			consultas.add(aleatorio.nextBoolean() ? consulta.toString().toUpperCase() : consulta.toString());
+		}
+		return consultas;
+	}
+
+	private void verificar(IndiceTitulosAproximados indice, List<Libro> libros, String consulta) {
+		String buscado = consulta.toLowerCase();
+		HashSet<String> vigentes = new HashSet<String>();
+		for (Libro libro : libros) {
+			vigentes.add(libro.darTitulo().toLowerCase());
+		}
+		for (int distanciaMaxima = 0; distanciaMaxima <= 3; distanciaMaxima++) {
+			// Los ttulos distintos agrupados por distancia y en orden alfabtico
+			TreeMap<Integer, TreeSet<String>> porDistancia = new TreeMap<Integer, TreeSet<String>>();
+			for (Libro libro : libros) {
+				String titulo = libro.darTitulo().toLowerCase();
+				int distancia = distancia(buscado, titulo);
+				if (distancia <= distanciaMaxima) {
+					porDistancia.computeIfAbsent(distancia, d -> new TreeSet<String>()).add(titulo);
+				}
+			}
+			ArrayList<String> esperados = new ArrayList<String>();
+			for (TreeSet<String> titulos : porDistancia.values()) {
+				esperados.addAll(titulos);
+			}
+			ArrayList<String> encontrados = indice.buscar(consulta, distanciaMaxima, libros);
+			encontrados.retainAll(vigentes);
+			assertEquals(esperados, encontrados, consulta);
+		}
+	}
+
+	/**
+	 * Calcula la distancia de edicin con la tabla completa
+	 */
+	private static int distancia(String a, String b) {
+		int[][] tabla = new int[a.length() + 1][b.length() + 1];
+		for (int i = 0; i <= a.length(); i++) {
+			for (int j = 0; j <= b.length(); j++) {
+				if (i == 0 || j == 0) {
+					tabla[i][j] = i + j;
+				} else {
+					int cambio = tabla[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+					tabla[i][j] = Math.min(cambio, Math.min(tabla[i - 1][j], tabla[i][j - 1]) + 1);
+				}
+			}
+		}
+		return tabla[a.length()][b.length()];
+	}
+}
@@ -0,0 +1,202 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import uniandes.dpoo.taller6.modelo.MetricasLibreria.Operacion;
+
+/**
+ * Esta clase agrupa los ndices que una librera construye a partir de los
+ * libros de su catlogo para responder las consultas.
+ *
+ * Construir los ndices toma mucho ms que cargar el catlogo, as que la
+ * librera los construye en otro hilo cuando termina de cargarlo y los publica
+ * todos juntos, listos para consultarse.
+ *
+ * Los ndices no cambian despus de construirse, as que varias versiones de
+ * la librera los pueden compartir. Cuando se retiran libros, la versin nueva
+ * recibe ndices que comparten casi todo con los anteriores (ver cambiar); los
+ * libros retirados siguen en algunos ndices y las consultas los descartan
+ * buscando cada libro en el catlogo de la versin. Cuando se han retirado ms
+ * libros de los que quedan, los ndices se vuelven a construir.
+ */
+class IndicesLibreria
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * ndice que permite encontrar los libros del catlogo a partir de su ttulo
+	 */
+	private final IndiceTitulos titulos;
+
+	/**
+	 * ndice que permite encontrar los ttulos parecidos a un ttulo buscado
+	 */
+	private final IndiceTitulosAproximados titulosAproximados;
+
+	/**
+	 * ndice que permite buscar los libros del catlogo a partir de una parte del
+	 * nombre de su autor
+	 */
+	private final IndiceAutores autores;
+
+	/**
+	 * ndice con las categoras en las que tiene libros cada autor
+	 */
+	private final IndiceCategoriasAutores categoriasAutores;
+
+	/**
+	 * ndice que permite buscar los libros del catlogo y de cada categora por
+	 * rango de calificacin
+	 */
+	private final IndiceCalificaciones calificaciones;
+
+	/**
+	 * ndice que permite buscar palabras dentro de los ttulos de los libros
+	 */
+	private final IndiceTextoCompleto texto;
+
+	/**
+	 * La cantidad de libros que se han retirado desde que se construyeron los
+	 * ndices
+	 */
+	private final int retirados;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private IndicesLibreria(IndiceTitulos titulos, IndiceTitulosAproximados titulosAproximados,
+			IndiceAutores autores, IndiceCategoriasAutores categoriasAutores, IndiceCalificaciones calificaciones,
+			IndiceTextoCompleto texto, int retirados)
+	{
+		this.titulos = titulos;
+		this.titulosAproximados = titulosAproximados;
+		this.autores = autores;
+		this.categoriasAutores = categoriasAutores;
+		this.calificaciones = calificaciones;
+		this.texto = texto;
+		this.retirados = retirados;
+	}
+
+	/**
+	 * Construye todos los ndices de los libros de un catlogo
+	 *
+	 * @param catalogo   Los libros del catlogo, en orden
+	 * @param categorias Las categoras de la librera
+	 * @return Los ndices
+	 */
+	static IndicesLibreria construir(List<Libro> catalogo, Categoria[] categorias)
+	{
+		IndiceTitulos titulos = new IndiceTitulos();
+		IndiceAutores autores = new IndiceAutores();
+		IndiceCategoriasAutores categoriasAutores;
+		long inicio = MetricasLibreria.iniciar();
+		try
+		{
+			for (Libro libro : catalogo)
+			{
+				titulos.agregar(libro);
+				autores.agregar(libro);
+			}
+			titulos.construirMinusculas();
+			categoriasAutores = IndiceCategoriasAutores.construir(catalogo);
+		}
+		finally
+		{
+			MetricasLibreria.registrar(Operacion.CONSTRUIR_INDICES, inicio);
+		}
+
+		IndiceTextoCompleto texto;
+		inicio = MetricasLibreria.iniciar();
+		try
+		{
+			texto = IndiceTextoCompleto.construir(catalogo);
+		}
+		finally
+		{
+			MetricasLibreria.registrar(Operacion.CONSTRUIR_INDICE_TEXTO, inicio);
+		}
+
+		IndiceTitulosAproximados titulosAproximados = new IndiceTitulosAproximados();
+		inicio = MetricasLibreria.iniciar();
+		try
+		{
+			titulosAproximados.construir(catalogo);
+		}
+		finally
+		{
+			MetricasLibreria.registrar(Operacion.CONSTRUIR_INDICE_APROXIMADO, inicio);
+		}
+
+		return new IndicesLibreria(titulos, titulosAproximados, autores, categoriasAutores,
+				new IndiceCalificaciones(catalogo, categorias), texto, 0);
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	IndiceTitulos darTitulos()
+	{
+		return titulos;
+	}
+
+	IndiceTitulosAproximados darTitulosAproximados()
+	{
+		return titulosAproximados;
+	}
+
+	IndiceAutores darAutores()
+	{
+		return autores;
+	}
+
+	IndiceCategoriasAutores darCategoriasAutores()
+	{
+		return categoriasAutores;
+	}
+
+	IndiceCalificaciones darCalificaciones()
+	{
+		return calificaciones;
+	}
+
+	IndiceTextoCompleto darTexto()
+	{
+		return texto;
+	}
+
+	/**
+	 * Construye los ndices de una versin de la librera en la que se retiraron
+	 * libros o se reemplazaron categoras. Estos ndices no cambian.
+	 *
+	 * @param librosRetirados Los libros que se retiraron del catlogo
+	 * @param cambiadas       Para cada categora cuyos libros cambiaron, la
+	 *                        categora que le corresponde en la versin nueva
+	 * @param anterior        El catlogo antes de retirar los libros
+	 * @param nuevo           El catlogo de la versin nueva
+	 * @param categorias      Las categoras de la versin nueva
+	 * @return Los ndices de la versin nueva
+	 */
+	IndicesLibreria cambiar(Collection<Libro> librosRetirados, Map<Categoria, Categoria> cambiadas,
+			CatalogoLibros anterior, CatalogoLibros nuevo, Categoria[] categorias)
+	{
+		int total = retirados + librosRetirados.size();
+		if (total > nuevo.size())
+		{
+			return construir(nuevo, categorias);
+		}
+		if (librosRetirados.isEmpty())
+		{
+			return new IndicesLibreria(titulos, titulosAproximados, autores, categoriasAutores,
+					calificaciones.cambiar(librosRetirados, cambiadas), texto, retirados);
+		}
+		return new IndicesLibreria(titulos, titulosAproximados, autores,
+				categoriasAutores.retirar(librosRetirados, anterior, nuevo),
+				calificaciones.cambiar(librosRetirados, cambiadas), texto.retirar(librosRetirados), total);
+	}
+}
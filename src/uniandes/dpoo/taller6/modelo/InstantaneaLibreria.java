@@ -0,0 +1,484 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Esta clase representa una instantnea binaria de una librera recin cargada
+ * de sus archivos CSV. Leer la instantnea es mucho ms rpido que volver a
+ * interpretar los archivos de texto y revisar si existe cada portada.
+ *
+ * El archivo tiene el siguiente formato (todos los nmeros en big-endian):
+ * <ol>
+ * <li>Encabezado: un nmero mgico, la versin del formato, el tamao y la fecha
+ * de modificacin de los dos archivos CSV.</li>
+ * <li>Las carpetas en las que se buscaron las portadas con su fecha de
+ * modificacin (0 si no existan), tengan o no portadas que existen.</li>
+ * <li>Una tabla con todas las cadenas distintas (ttulos, autores, categoras y
+ * rutas de portadas), cada una como su longitud seguida de sus bytes en
+ * UTF-8.</li>
+ * <li>Las categoras: cuntas venan en el archivo de categoras y, para cada
+ * una, su nombre y si es de ficcin.</li>
+ * <li>Los libros guardados por columnas: ttulos, autores, calificaciones,
+ * categoras, portadas (-1 si el libro no tiene portada), anchos y altos.</li>
+ * <li>Un CRC32 de todo lo anterior.</li>
+ * </ol>
+ *
+ * La instantnea slo se usa si los archivos CSV y las carpetas de portadas no
+ * han cambiado desde que se cre.
+ */
+class InstantaneaLibreria
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Nmero con el que empieza todo archivo de instantnea ("LIBR")
+	 */
+	private static final int MAGIA = 0x4C494252;
+
+	/**
+	 * Versin del formato del archivo
+	 */
+	private static final int VERSION = 2;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Las categoras de la librera, en el orden original
+	 */
+	private Categoria[] categorias;
+
+	/**
+	 * Los nombres de las categoras que no estaban en el archivo de categoras
+	 */
+	private ArrayList<String> nuevasCategorias;
+
+	/**
+	 * La tabla de cadenas del archivo
+	 */
+	private String[] cadenas;
+
+	private int[] titulos;
+
+	private int[] autores;
+
+	private double[] calificaciones;
+
+	private int[] categoriasLibros;
+
+	private int[] portadas;
+
+	private int[] anchos;
+
+	private int[] altos;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	private InstantaneaLibreria()
+	{
+	}
+
+	// ************************************************************************
+	// Mtodos de consulta
+	// ************************************************************************
+
+	Categoria[] darCategorias()
+	{
+		return categorias;
+	}
+
+	ArrayList<String> darNuevasCategorias()
+	{
+		return nuevasCategorias;
+	}
+
+	int contarLibros()
+	{
+		return titulos.length;
+	}
+
+	String darTitulo(int libro)
+	{
+		return cadenas[titulos[libro]];
+	}
+
+	String darAutor(int libro)
+	{
+		return cadenas[autores[libro]];
+	}
+
+	double darCalificacion(int libro)
+	{
+		return calificaciones[libro];
+	}
+
+	Categoria darCategoria(int libro)
+	{
+		return categorias[categoriasLibros[libro]];
+	}
+
+	/**
+	 * Retorna la portada del libro o null si el libro no tena portada cuando se
+	 * cre la instantnea
+	 */
+	Imagen darPortada(int libro)
+	{
+		if (portadas[libro] == -1)
+		{
+			return null;
+		}
+		return new Imagen(cadenas[portadas[libro]], anchos[libro], altos[libro]);
+	}
+
+	/**
+	 * Retorna el archivo donde se guarda la instantnea de una librera si no se
+	 * indica otro. Queda en la carpeta temporal del sistema y no junto a los
+	 * archivos CSV, para que escribirla no cambie la fecha de modificacin de una
+	 * carpeta de portadas.
+	 *
+	 * @param nombreArchivoCategorias El archivo CSV de categoras
+	 * @param nombreArchivoLibros     El archivo CSV de libros
+	 * @return La ruta del archivo, que depende de las rutas completas de los dos
+	 *         archivos CSV
+	 */
+	static String darArchivoPredeterminado(String nombreArchivoCategorias, String nombreArchivoLibros)
+	{
+		String rutas = new File(nombreArchivoCategorias).getAbsolutePath() + File.pathSeparator
+				+ new File(nombreArchivoLibros).getAbsolutePath();
+		UUID nombre = UUID.nameUUIDFromBytes(rutas.getBytes(StandardCharsets.UTF_8));
+		return Paths.get(System.getProperty("java.io.tmpdir"), "taller6-" + nombre + ".instantanea").toString();
+	}
+
+	// ************************************************************************
+	// Escritura
+	// ************************************************************************
+
+	/**
+	 * Escribe la instantnea de una librera que se acaba de cargar a partir de
+	 * sus archivos CSV. El archivo se escribe primero con otro nombre y luego se
+	 * reemplaza, para que nunca quede una instantnea a medio escribir.
+	 *
+	 * @param nombreArchivo           El archivo donde se guardar la instantnea
+	 * @param nombreArchivoCategorias El archivo CSV de categoras que se carg
+	 * @param nombreArchivoLibros     El archivo CSV de libros que se carg
+	 * @param categorias              Las categoras de la librera
+	 * @param cantidadNuevas          Cuntas de las categoras (las ltimas) no
+	 *                                estaban en el archivo de categoras
+	 * @param catalogo                Los libros de la librera, en el orden del
+	 *                                archivo
+	 * @param carpetasPortadas        Las carpetas en las que se buscaron las
+	 *                                portadas de los libros. Si alguna cambia, la
+	 *                                instantnea deja de usarse, porque pudo
+	 *                                aparecer o desaparecer una portada.
+	 * @throws IOException Se lanza esta excepcin si no se pudo escribir el archivo
+	 */
+	static void escribir(String nombreArchivo, String nombreArchivoCategorias, String nombreArchivoLibros,
+			Categoria[] categorias, int cantidadNuevas, List<Libro> catalogo, Collection<String> carpetasPortadas)
+			throws IOException
+	{
+		LinkedHashMap<String, Integer> tabla = new LinkedHashMap<String, Integer>();
+		IdentityHashMap<Categoria, Integer> posiciones = new IdentityHashMap<Categoria, Integer>();
+		for (int i = 0; i < categorias.length; i++)
+		{
+			posiciones.put(categorias[i], i);
+			registrar(tabla, categorias[i].darNombre());
+		}
+
+		int n = catalogo.size();
+		int[] titulos = new int[n];
+		int[] autores = new int[n];
+		int[] portadas = new int[n];
+		for (int i = 0; i < n; i++)
+		{
+			Libro libro = catalogo.get(i);
+			titulos[i] = registrar(tabla, libro.darTitulo());
+			autores[i] = registrar(tabla, libro.darAutor());
+			portadas[i] = -1;
+			if (libro.tienePortada())
+			{
+				String ruta = libro.darPortada().darRutaArchivo();
+				portadas[i] = registrar(tabla, ruta);
+			}
+		}
+		TreeSet<String> carpetas = new TreeSet<String>(carpetasPortadas);
+
+		Path destino = Paths.get(nombreArchivo);
+		Path temporal = Paths.get(nombreArchivo + ".tmp");
+		CRC32 crc = new CRC32();
+		try (DataOutputStream salida = new DataOutputStream(
+				new BufferedOutputStream(new CheckedOutputStream(new FileOutputStream(temporal.toFile()), crc))))
+		{
+			salida.writeInt(MAGIA);
+			salida.writeInt(VERSION);
+			escribirFirma(salida, nombreArchivoCategorias);
+			escribirFirma(salida, nombreArchivoLibros);
+
+			salida.writeInt(carpetas.size());
+			for (String carpeta : carpetas)
+			{
+				escribirCadena(salida, carpeta);
+				salida.writeLong(new File(carpeta).lastModified());
+			}
+
+			salida.writeInt(tabla.size());
+			for (String cadena : tabla.keySet())
+			{
+				escribirCadena(salida, cadena);
+			}
+
+			salida.writeInt(categorias.length - cantidadNuevas);
+			salida.writeInt(categorias.length);
+			for (Categoria categoria : categorias)
+			{
+				salida.writeInt(tabla.get(categoria.darNombre()));
+				salida.writeBoolean(categoria.esFiccion());
+			}
+
+			salida.writeInt(n);
+			for (int i = 0; i < n; i++)
+				salida.writeInt(titulos[i]);
+			for (int i = 0; i < n; i++)
+				salida.writeInt(autores[i]);
+			for (int i = 0; i < n; i++)
+				salida.writeDouble(catalogo.get(i).darCalificacion());
+			for (int i = 0; i < n; i++)
+				salida.writeInt(posiciones.get(catalogo.get(i).darCategoria()));
+			for (int i = 0; i < n; i++)
+				salida.writeInt(portadas[i]);
+			for (int i = 0; i < n; i++)
+				salida.writeInt(catalogo.get(i).tienePortada() ? catalogo.get(i).darPortada().darAncho() : 0);
+			for (int i = 0; i < n; i++)
+				salida.writeInt(catalogo.get(i).tienePortada() ? catalogo.get(i).darPortada().darAlto() : 0);
+
+			salida.flush();
+			salida.writeLong(crc.getValue());
+		}
+		Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static int registrar(HashMap<String, Integer> tabla, String cadena)
+	{
+		Integer id = tabla.get(cadena);
+		if (id == null)
+		{
+			id = tabla.size();
+			tabla.put(cadena, id);
+		}
+		return id;
+	}
+
+	private static void escribirFirma(DataOutputStream salida, String nombreArchivo) throws IOException
+	{
+		File archivo = new File(nombreArchivo);
+		salida.writeLong(archivo.length());
+		salida.writeLong(archivo.lastModified());
+	}
+
+	private static void escribirCadena(DataOutputStream salida, String cadena) throws IOException
+	{
+		byte[] bytes = cadena.getBytes(StandardCharsets.UTF_8);
+		salida.writeInt(bytes.length);
+		salida.write(bytes);
+	}
+
+	// ************************************************************************
+	// Lectura
+	// ************************************************************************
+
+	/**
+	 * Lee una instantnea, proyectando el archivo en memoria.
+	 *
+	 * @param nombreArchivo           El archivo con la instantnea
+	 * @param nombreArchivoCategorias El archivo CSV de categoras que se quiere
+	 *                                cargar
+	 * @param nombreArchivoLibros     El archivo CSV de libros que se quiere cargar
+	 * @return La instantnea, o null si no existe, est daada, es de otra versin
+	 *         o ya no corresponde a los archivos CSV o a las portadas
+	 */
+	static InstantaneaLibreria leer(String nombreArchivo, String nombreArchivoCategorias, String nombreArchivoLibros)
+	{
+		Path ruta = Paths.get(nombreArchivo);
+		if (!Files.isRegularFile(ruta))
+		{
+			return null;
+		}
+
+		try (FileChannel canal = FileChannel.open(ruta, StandardOpenOption.READ))
+		{
+			long tamanio = canal.size();
+			if (tamanio < 16 || tamanio > Integer.MAX_VALUE)
+			{
+				return null;
+			}
+			MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanio);
+
+			if (buffer.getInt() != MAGIA || buffer.getInt() != VERSION)
+			{
+				return null;
+			}
+
+			// Verificar el CRC antes de interpretar cualquier longitud del archivo.
+			// Despus el lmite se deja antes del CRC para que las longitudes se
+			// comparen slo contra los datos.
+			int inicioDatos = buffer.position();
+			CRC32 crc = new CRC32();
+			buffer.position(0).limit((int) tamanio - 8);
+			crc.update(buffer);
+			buffer.limit((int) tamanio);
+			if (crc.getValue() != buffer.getLong((int) tamanio - 8))
+			{
+				return null;
+			}
+			buffer.position(inicioDatos).limit((int) tamanio - 8);
+
+			if (!firmaVigente(buffer, nombreArchivoCategorias) || !firmaVigente(buffer, nombreArchivoLibros))
+			{
+				return null;
+			}
+			int cantidadCarpetas = leerCantidad(buffer, Integer.BYTES + Long.BYTES);
+			for (int i = 0; i < cantidadCarpetas; i++)
+			{
+				String carpeta = leerCadena(buffer);
+				if (new File(carpeta).lastModified() != buffer.getLong())
+				{
+					return null;
+				}
+			}
+
+			return interpretar(buffer);
+		}
+		catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Interpreta la tabla de cadenas, las categoras y los libros. Se lanza una
+	 * BufferUnderflowException o una IndexOutOfBoundsException si alguna cantidad
+	 * o alguna referencia no corresponde a los datos del archivo.
+	 */
+	private static InstantaneaLibreria interpretar(ByteBuffer buffer)
+	{
+		InstantaneaLibreria instantanea = new InstantaneaLibreria();
+
+		String[] cadenas = new String[leerCantidad(buffer, Integer.BYTES)];
+		for (int i = 0; i < cadenas.length; i++)
+		{
+			cadenas[i] = leerCadena(buffer);
+		}
+		instantanea.cadenas = cadenas;
+
+		int cantidadArchivo = buffer.getInt();
+		Categoria[] categorias = new Categoria[leerCantidad(buffer, Integer.BYTES + 1)];
+		instantanea.nuevasCategorias = new ArrayList<String>();
+		for (int i = 0; i < categorias.length; i++)
+		{
+			String nombre = cadenas[buffer.getInt()];
+			categorias[i] = new Categoria(nombre, buffer.get() != 0);
+			if (i >= cantidadArchivo)
+			{
+				instantanea.nuevasCategorias.add(nombre);
+			}
+		}
+		instantanea.categorias = categorias;
+
+		int n = leerCantidad(buffer, 6 * Integer.BYTES + Double.BYTES);
+		instantanea.titulos = leerReferencias(buffer, n, 0, cadenas.length);
+		instantanea.autores = leerReferencias(buffer, n, 0, cadenas.length);
+		instantanea.calificaciones = new double[n];
+		buffer.asDoubleBuffer().get(instantanea.calificaciones);
+		buffer.position(buffer.position() + n * Double.BYTES);
+		instantanea.categoriasLibros = leerReferencias(buffer, n, 0, categorias.length);
+		instantanea.portadas = leerReferencias(buffer, n, -1, cadenas.length);
+		instantanea.anchos = leerEnteros(buffer, n);
+		instantanea.altos = leerEnteros(buffer, n);
+
+		return instantanea;
+	}
+
+	/**
+	 * Lee una cantidad de elementos y verifica que quepan en lo que queda de los
+	 * datos
+	 *
+	 * @param bytesPorElemento La menor cantidad de bytes que ocupa cada elemento
+	 */
+	private static int leerCantidad(ByteBuffer buffer, int bytesPorElemento)
+	{
+		int cantidad = buffer.getInt();
+		if (cantidad < 0 || cantidad > buffer.remaining() / bytesPorElemento)
+		{
+			throw new BufferUnderflowException();
+		}
+		return cantidad;
+	}
+
+	/**
+	 * Lee posiciones en una tabla y verifica que estn entre minimo (incluido) y
+	 * limite (excluido)
+	 */
+	private static int[] leerReferencias(ByteBuffer buffer, int n, int minimo, int limite)
+	{
+		int[] referencias = leerEnteros(buffer, n);
+		for (int referencia : referencias)
+		{
+			if (referencia < minimo || referencia >= limite)
+			{
+				throw new IndexOutOfBoundsException(referencia);
+			}
+		}
+		return referencias;
+	}
+
+	private static boolean firmaVigente(ByteBuffer buffer, String nombreArchivo)
+	{
+		File archivo = new File(nombreArchivo);
+		long tamanio = buffer.getLong();
+		long modificacion = buffer.getLong();
+		return archivo.isFile() && archivo.length() == tamanio && archivo.lastModified() == modificacion;
+	}
+
+	private static int[] leerEnteros(ByteBuffer buffer, int n)
+	{
+		int[] enteros = new int[n];
+		buffer.asIntBuffer().get(enteros);
+		buffer.position(buffer.position() + n * Integer.BYTES);
+		return enteros;
+	}
+
+	private static String leerCadena(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[leerCantidad(buffer, 1)];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
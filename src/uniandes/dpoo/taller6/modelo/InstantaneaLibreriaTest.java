@@ -0,0 +1,182 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Verifica que las instantneas daadas o viejas se ignoren y que la librera
+ * se cargue entonces de los archivos CSV. Se debe ejecutar desde la carpeta del
+ * proyecto, porque las portadas se buscan en ./data.
+ */
+class InstantaneaLibreriaTest {
+
+	/**
+	 * Posicin de la longitud de la ruta de la primera carpeta de portadas: el
+	 * nmero mgico, la versin, las firmas de los dos CSV y la cantidad de
+	 * carpetas
+	 */
+	private static final int LONGITUD_PRIMERA_CARPETA = 4 + 4 + 16 + 16 + 4;
+
+	@TempDir
+	Path carpeta;
+
+	private String categorias;
+
+	private String libros;
+
+	private String instantanea;
+
+	private Libreria original;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		categorias = carpeta.resolve("categorias.csv").toString();
+		libros = carpeta.resolve("libros.csv").toString();
+		instantanea = carpeta.resolve("libreria.bin").toString();
+
+		Files.copy(new File("./data/categorias.csv").toPath(), carpeta.resolve("categorias.csv"));
+		// Las primeras lneas del catlogo, sin interpretar su codificacin, y un
+		// libro sin portada de una categora que no est en el archivo
+		byte[] catalogo = Files.readAllBytes(new File("./data/libreria.csv").toPath());
+		int fin = 0;
+		for (int lineas = 0; lineas < 200; fin++) {
+			if (catalogo[fin] == '\n') {
+				lineas++;
+			}
+		}
+		ByteArrayOutputStream seleccion = new ByteArrayOutputStream();
+		seleccion.write(catalogo, 0, fin);
+		seleccion.write("Sin portada,Nadie,3.5,Categoria inventada,./imagenes/no-existe.jpg,10,10\n".getBytes());
+		Files.write(carpeta.resolve("libros.csv"), seleccion.toByteArray());
+
+		original = new Libreria(categorias, libros);
+		new Libreria(categorias, libros, instantanea);
+		assertTrue(new File(instantanea).isFile());
+	}
+
+	@Test
+	void testLeerInstantanea() throws Exception {
+		assertNotNull(InstantaneaLibreria.leer(instantanea, categorias, libros));
+		verificarIgual(new Libreria(categorias, libros, instantanea));
+	}
+
+	@Test
+	void testInstantaneaConBytesCambiados() throws Exception {
+		byte[] bytes = Files.readAllBytes(Path.of(instantanea));
+		for (int posicion = 8; posicion < bytes.length; posicion += 97) {
+			byte[] daniados = bytes.clone();
+			daniados[posicion] ^= 0x40;
+			Files.write(Path.of(instantanea), daniados);
+			assertNull(InstantaneaLibreria.leer(instantanea, categorias, libros), "posicin " + posicion);
+		}
+		verificarIgual(new Libreria(categorias, libros, instantanea));
+	}
+
+	@Test
+	void testInstantaneaTruncada() throws Exception {
+		byte[] bytes = Files.readAllBytes(Path.of(instantanea));
+		for (int tamanio : new int[] { 0, 10, 44, bytes.length / 2, bytes.length - 1 }) {
+			Files.write(Path.of(instantanea), Arrays.copyOf(bytes, tamanio));
+			assertNull(InstantaneaLibreria.leer(instantanea, categorias, libros), "tamao " + tamanio);
+		}
+	}
+
+	@Test
+	void testLongitudesInvalidasConCrcCorrecto() throws Exception {
+		byte[] bytes = Files.readAllBytes(Path.of(instantanea));
+		assertTrue(ByteBuffer.wrap(bytes).getInt(LONGITUD_PRIMERA_CARPETA - 4) > 0);
+		for (int longitud : new int[] { -5, Integer.MIN_VALUE, Integer.MAX_VALUE, bytes.length }) {
+			byte[] daniados = bytes.clone();
+			ByteBuffer.wrap(daniados).putInt(LONGITUD_PRIMERA_CARPETA, longitud);
+			corregirCrc(daniados);
+			Files.write(Path.of(instantanea), daniados);
+			assertNull(InstantaneaLibreria.leer(instantanea, categorias, libros), "longitud " + longitud);
+			verificarIgual(new Libreria(categorias, libros, instantanea));
+			Files.write(Path.of(instantanea), daniados);
+		}
+	}
+
+	@Test
+	void testReferenciaInvalidaConCrcCorrecto() throws Exception {
+		// La ltima columna antes de los anchos y los altos es la de las portadas
+		byte[] bytes = Files.readAllBytes(Path.of(instantanea));
+		int libros = original.darLibros().size();
+		int ultimaPortada = bytes.length - 8 - 2 * libros * Integer.BYTES - Integer.BYTES;
+		ByteBuffer.wrap(bytes).putInt(ultimaPortada, 1_000_000);
+		corregirCrc(bytes);
+		Files.write(Path.of(instantanea), bytes);
+		assertNull(InstantaneaLibreria.leer(instantanea, categorias, this.libros));
+	}
+
+	@Test
+	void testInstantaneaVieja() throws Exception {
+		File archivo = new File(libros);
+		assertTrue(archivo.setLastModified(archivo.lastModified() - 10_000));
+		assertNull(InstantaneaLibreria.leer(instantanea, categorias, libros));
+
+		// Al cargar se vuelve a leer el CSV y se reemplaza la instantnea
+		verificarIgual(new Libreria(categorias, libros, instantanea));
+		assertNotNull(InstantaneaLibreria.leer(instantanea, categorias, libros));
+	}
+
+	@Test
+	void testPortadaNuevaEnCarpetaSinPortadas() throws Exception {
+		// Un libro cuya portada todava no existe, en una carpeta sin portadas
+		Path portadas = Files.createDirectory(carpeta.resolve("portadas"));
+		Path portada = portadas.resolve("nueva.png");
+		Files.copy(new File("./data/imagenes/missing.png").toPath(), carpeta.resolve("imagen.png"));
+		assertTrue(portadas.toFile().setLastModified(portadas.toFile().lastModified() - 10_000));
+		String ruta = Path.of("./data").toAbsolutePath().relativize(portada.toAbsolutePath()).toString();
+		Files.write(Path.of(libros), ("Portada nueva,Nadie,4.0,Categoria inventada," + ruta + ",10,10\n").getBytes(),
+				StandardOpenOption.APPEND);
+		assertFalse(ultimoLibro(new Libreria(categorias, libros, instantanea)).tienePortada());
+		assertNotNull(InstantaneaLibreria.leer(instantanea, categorias, libros));
+
+		// Cuando aparece la portada la instantnea deja de servir
+		Files.move(carpeta.resolve("imagen.png"), portada);
+		assertNull(InstantaneaLibreria.leer(instantanea, categorias, libros));
+		assertTrue(ultimoLibro(new Libreria(categorias, libros, instantanea)).tienePortada());
+	}
+
+	private static Libro ultimoLibro(Libreria libreria) {
+		return libreria.darLibros().get(libreria.darLibros().size() - 1);
+	}
+
+	private static void corregirCrc(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		ByteBuffer.wrap(bytes).putLong(bytes.length - 8, crc.getValue());
+	}
+
+	private void verificarIgual(Libreria cargada) {
+		assertEquals(original.darNuevasCategorias(), cargada.darNuevasCategorias());
+		assertEquals(original.darCategorias().length, cargada.darCategorias().length);
+		for (int i = 0; i < original.darCategorias().length; i++) {
+			assertEquals(original.darCategorias()[i].darNombre(), cargada.darCategorias()[i].darNombre());
+			assertEquals(original.darCategorias()[i].esFiccion(), cargada.darCategorias()[i].esFiccion());
+		}
+		assertEquals(original.darLibros().size(), cargada.darLibros().size());
+		for (int i = 0; i < original.darLibros().size(); i++) {
+			Libro esperado = original.darLibros().get(i);
+			Libro libro = cargada.darLibros().get(i);
+			assertEquals(esperado.darTitulo(), libro.darTitulo());
+			assertEquals(esperado.darAutor(), libro.darAutor());
+			assertEquals(esperado.darCalificacion(), libro.darCalificacion());
+			assertEquals(esperado.darCategoria().darNombre(), libro.darCategoria().darNombre());
+			assertEquals(esperado.tienePortada(), libro.tienePortada());
+			assertEquals(esperado.darPortada().darRutaArchivo(), libro.darPortada().darRutaArchivo());
+		}
+	}
+}
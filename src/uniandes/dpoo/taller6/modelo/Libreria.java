@@ -5,9 +5,23 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import uniandes.dpoo.taller6.modelo.CargadorCatalogo.RegistroLibro;
+import uniandes.dpoo.taller6.modelo.MetricasLibreria.Operacion;
 
 /**
  * Esta clase agrupa toda la informaci�n de una librer�a: las categor�as que se
@@ -15,6 +29,21 @@ import java.util.Set;
  * 
  * Adicionalmente esta clase es capaz de calcular y hacer b�squedas sobre las
  * categor�as y sobre el cat�logo de libros.
+ * 
+ * La duración de las fases de la carga y de cada consulta y modificación se
+ * registra en MetricasLibreria.
+ * 
+ * Los resultados de las búsquedas por autor se guardan en una caché de
+ * consultas, de la que se descartan cuando se borran libros de los que dependen.
+ * 
+ * Los índices de los libros se construyen en otro hilo después de cargar el
+ * catálogo, así que la librería se puede usar apenas termina la carga (ver
+ * darIndices). Las modificaciones esperan a que terminen.
+ * 
+ * Una librería se puede derivar de otra (ver derivar): la nueva versión
+ * comparte con la original el catálogo, los índices y las categorías, y antes
+ * de modificar una categoría compartida la reemplaza por una copia propia. Así
+ * modificar una versión no afecta a la otra y sólo se copia lo que cambia.
  */
 public class Libreria {
 	// ************************************************************************
@@ -27,14 +56,75 @@ public class Libreria {
 	private Categoria[] categorias;
 
 	/**
-	 * Una lista con los libros disponibles en la librer�a
+	 * Los libros disponibles en la librer�a, en el orden en el que se cargaron.
+	 * El catálogo no se modifica: al retirar libros se construye otro que
+	 * comparte con este lo que no cambió.
 	 */
-	private ArrayList<Libro> catalogo;
+	private CatalogoLibros catalogo;
 
-	private ArrayList<String> nuevascategorias = new ArrayList<String>();
+	/**
+	 * Las categorías de esta librería que comparte con otra versión (ver
+	 * derivar). Antes de modificar una de ellas se reemplaza por una copia.
+	 */
+	private final Set<Categoria> compartidas = Collections.newSetFromMap(new IdentityHashMap<Categoria, Boolean>());
+
+	/**
+	 * Índice que permite encontrar una categoría a partir de su nombre
+	 */
+	private HashMap<String, Categoria> indiceCategorias;
+
+	/**
+	 * Los índices de los libros del catálogo. Es null mientras se construyen en
+	 * otro hilo después de cargar el catálogo. Los índices no se modifican, así
+	 * que las versiones derivadas los comparten.
+	 */
+	private volatile IndicesLibreria indices;
+
+	/**
+	 * La construcción de los índices en otro hilo. Es null en las versiones
+	 * derivadas, que reciben los índices ya construidos.
+	 */
+	private FutureTask<IndicesLibreria> construccionIndices;
+
+	/**
+	 * Los libros con mejor calificación del catálogo y de cada categoría que ya se
+	 * han consultado
+	 */
+	private SelectorMejores selectorMejores = new SelectorMejores();
 
-	private ArrayList<String> nombresautores = new ArrayList<String>();
-	// esto es para la parte 1 y parte 3
+	/**
+	 * Los resultados de las búsquedas por autor más recientes. Las versiones
+	 * derivadas empiezan con los resultados que tenía la original.
+	 */
+	private CacheConsultas cacheConsultas = new CacheConsultas();
+
+	/**
+	 * Suma de las calificaciones de todos los libros del catálogo. Se actualiza
+	 * cada vez que se agrega o se retira un libro.
+	 */
+	private SumaCompensada sumaCalificaciones = new SumaCompensada();
+
+	/**
+	 * Cantidad de libros del catálogo que no tienen portada
+	 */
+	private int librosSinPortada;
+
+	/**
+	 * La categoría con más libros y la categoría con mejor calificación promedio.
+	 * Se calculan a partir de los contadores de cada categoría y sólo se vuelven a
+	 * calcular después de que el catálogo cambia.
+	 */
+	private Categoria categoriaMasLibros;
+
+	private Categoria categoriaMejoresLibros;
+
+	/**
+	 * Indica si categoriaMasLibros y categoriaMejoresLibros corresponden al estado
+	 * actual del catálogo
+	 */
+	private boolean ganadorasVigentes;
+
+	private ArrayList<String> nuevascategorias = new ArrayList<String>();
 
 	// ************************************************************************
 	// Constructores
@@ -52,8 +142,151 @@ public class Libreria {
 	 *                     archivo
 	 */
 	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros) throws IOException {
-		this.categorias = cargarCategorias(nombreArchivoCategorias);
-		this.catalogo = cargarCatalogo(nombreArchivoLibros);
+		cargarArchivos(nombreArchivoCategorias, nombreArchivoLibros, null, new IndicePortadas());
+		construirIndicesEnOtroHilo();
+	}
+
+	/**
+	 * Construye una nueva librería a partir de los archivos, informándole al
+	 * monitor el avance de la lectura del archivo de libros.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                información sobre las categorías de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                información sobre los libros
+	 * @param monitor                 El objeto que sigue el avance de la carga y
+	 *                                que puede cancelarla
+	 * @throws IOException           Lanza esta excepción si hay algún problema
+	 *                               leyendo un archivo
+	 * @throws CancellationException Lanza esta excepción si el monitor canceló la
+	 *                               carga
+	 */
+	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros, MonitorCarga monitor)
+			throws IOException {
+		cargarArchivos(nombreArchivoCategorias, nombreArchivoLibros, monitor, new IndicePortadas());
+		construirIndicesEnOtroHilo();
+	}
+
+	/**
+	 * Construye una nueva librería usando una instantánea binaria de los archivos
+	 * (ver InstantaneaLibreria).
+	 * 
+	 * Si la instantánea existe y corresponde a los archivos actuales, la librería
+	 * se construye a partir de ella. De lo contrario se cargan los archivos CSV y
+	 * se guarda una instantánea nueva para la próxima vez.
+	 * 
+	 * @param nombreArchivoCategorias  El nombre del archivo CSV que tiene la
+	 *                                 información sobre las categorías de libros
+	 * @param nombreArchivoLibros      El nombre del archivo CSV que tiene la
+	 *                                 información sobre los libros
+	 * @param nombreArchivoInstantanea El nombre del archivo donde se guarda la
+	 *                                 instantánea
+	 * @throws IOException Lanza esta excepción si hay algún problema leyendo los
+	 *                     archivos CSV
+	 */
+	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros, String nombreArchivoInstantanea)
+			throws IOException {
+		this(nombreArchivoCategorias, nombreArchivoLibros, nombreArchivoInstantanea, null);
+	}
+
+	/**
+	 * Construye una nueva librería usando una instantánea binaria de los archivos
+	 * (ver InstantaneaLibreria), informándole al monitor el avance de la carga.
+	 * 
+	 * @param nombreArchivoCategorias  El nombre del archivo CSV que tiene la
+	 *                                 información sobre las categorías de libros
+	 * @param nombreArchivoLibros      El nombre del archivo CSV que tiene la
+	 *                                 información sobre los libros
+	 * @param nombreArchivoInstantanea El nombre del archivo donde se guarda la
+	 *                                 instantánea (ver darArchivoInstantanea)
+	 * @param monitor                  El objeto que sigue el avance de la carga y
+	 *                                 que puede cancelarla. Puede ser null.
+	 * @throws IOException           Lanza esta excepción si hay algún problema
+	 *                               leyendo los archivos CSV
+	 * @throws CancellationException Lanza esta excepción si el monitor canceló la
+	 *                               carga
+	 */
+	public Libreria(String nombreArchivoCategorias, String nombreArchivoLibros, String nombreArchivoInstantanea,
+			MonitorCarga monitor) throws IOException {
+		InstantaneaLibreria instantanea = InstantaneaLibreria.leer(nombreArchivoInstantanea, nombreArchivoCategorias,
+				nombreArchivoLibros);
+		if (instantanea != null) {
+			cargarInstantanea(instantanea);
+			if (monitor != null) {
+				if (monitor.cancelado()) {
+					throw new CancellationException("Se canceló la carga de " + nombreArchivoLibros);
+				}
+				long tamanio = new File(nombreArchivoLibros).length();
+				monitor.avanzar(tamanio, tamanio);
+			}
+		} else {
+			IndicePortadas portadas = new IndicePortadas();
+			cargarArchivos(nombreArchivoCategorias, nombreArchivoLibros, monitor, portadas);
+			long inicio = MetricasLibreria.iniciar();
+			try {
+				InstantaneaLibreria.escribir(nombreArchivoInstantanea, nombreArchivoCategorias, nombreArchivoLibros,
+						categorias, nuevascategorias.size(), catalogo, portadas.darCarpetas());
+			} catch (IOException e) {
+				// La instantánea sólo acelera la próxima carga: si no se puede
+				// guardar, la librería igual queda cargada
+			} finally {
+				MetricasLibreria.registrar(Operacion.ESCRIBIR_INSTANTANEA, inicio);
+			}
+		}
+		construirIndicesEnOtroHilo();
+	}
+
+	/**
+	 * Construye una copia independiente de otra librería: las categorías y los
+	 * libros son objetos nuevos, así que modificar la copia no afecta a la
+	 * original. Las portadas y los índices se comparten porque no cambian. Si los
+	 * índices de la original todavía se están construyendo, se espera a que
+	 * terminen.
+	 * 
+	 * @param original La librería que se va a copiar
+	 */
+	Libreria(Libreria original) {
+		this(original, original.darIndices());
+		IdentityHashMap<Categoria, Categoria> copias = privatizar(Arrays.asList(categorias.clone()));
+		indices = indices.cambiar(Collections.<Libro>emptyList(), copias, catalogo, catalogo, categorias);
+		selectorMejores = selectorMejores.derivar(copias.keySet(), catalogo);
+	}
+
+	/**
+	 * Construye una versión derivada de otra librería (ver derivar)
+	 * 
+	 * @param original La librería original
+	 * @param indices  Los índices ya construidos de la original
+	 */
+	private Libreria(Libreria original, IndicesLibreria indices) {
+		this.categorias = original.categorias.clone();
+		this.compartidas.addAll(Arrays.asList(categorias));
+		this.indiceCategorias = new HashMap<String, Categoria>(original.indiceCategorias);
+		this.nuevascategorias.addAll(original.nuevascategorias);
+		this.catalogo = original.catalogo;
+		this.indices = indices;
+		this.selectorMejores = original.selectorMejores.derivar(Collections.<Categoria>emptySet(), catalogo);
+		this.cacheConsultas = original.cacheConsultas.copiar(libro -> libro, categoria -> categoria);
+		this.sumaCalificaciones = original.sumaCalificaciones.copiar();
+		this.librosSinPortada = original.librosSinPortada;
+		this.categoriaMasLibros = original.categoriaMasLibros;
+		this.categoriaMejoresLibros = original.categoriaMejoresLibros;
+		this.ganadorasVigentes = original.ganadorasVigentes;
+	}
+
+	/**
+	 * Construye una nueva versión de esta librería que se puede modificar sin
+	 * afectarla. La versión nueva comparte el catálogo, los índices y las
+	 * categorías con esta; cuando se modifica, copia sólo las categorías que
+	 * cambian y construye índices que comparten con los de esta todo lo demás.
+	 * Si los índices todavía se están construyendo, se espera a que terminen.
+	 * 
+	 * Esta librería no se debe modificar mientras se use la versión nueva.
+	 * 
+	 * @return La versión nueva
+	 */
+	Libreria derivar() {
+		return new Libreria(this, darIndices());
 	}
 
 	// ************************************************************************
@@ -72,9 +305,9 @@ public class Libreria {
 	/**
 	 * Retorna el cat�logo completo de libros de la librer�a
 	 * 
-	 * @return catalogo
+	 * @return Una lista que no se puede modificar con los libros del catálogo
 	 */
-	public ArrayList<Libro> darLibros() {
+	public List<Libro> darLibros() {
 		return catalogo;
 	}
 
@@ -82,10 +315,148 @@ public class Libreria {
 		return nuevascategorias;
 	}
 
+	/**
+	 * Retorna el archivo donde se guarda la instantánea de una librería cuando no
+	 * se necesita otro. Está en la carpeta temporal del sistema y es distinto para
+	 * cada par de archivos CSV.
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV de categorías
+	 * @param nombreArchivoLibros     El nombre del archivo CSV de libros
+	 * @return El nombre del archivo de la instantánea
+	 */
+	public static String darArchivoInstantanea(String nombreArchivoCategorias, String nombreArchivoLibros) {
+		return InstantaneaLibreria.darArchivoPredeterminado(nombreArchivoCategorias, nombreArchivoLibros);
+	}
+
 	// ************************************************************************
 	// Otros métodos
 	// ************************************************************************
 
+	/**
+	 * Carga las categorías y el catálogo a partir de los archivos CSV
+	 * 
+	 * @param nombreArchivoCategorias El nombre del archivo CSV con las categorías
+	 * @param nombreArchivoLibros     El nombre del archivo CSV con los libros
+	 * @param monitor                 El objeto que sigue el avance de la carga.
+	 *                                Puede ser null.
+	 * @param portadas                El índice con el que se revisa si existen
+	 *                                las portadas
+	 * @throws IOException Se lanza esta excepción si hay algún problema leyendo
+	 *                     alguno de los archivos
+	 */
+	private void cargarArchivos(String nombreArchivoCategorias, String nombreArchivoLibros, MonitorCarga monitor,
+			IndicePortadas portadas) throws IOException {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			this.categorias = cargarCategorias(nombreArchivoCategorias);
+			this.indiceCategorias = indexarCategorias(categorias);
+		} finally {
+			MetricasLibreria.registrar(Operacion.CARGAR_CATEGORIAS, inicio);
+		}
+
+		inicio = MetricasLibreria.iniciar();
+		try {
+			this.catalogo = new CatalogoLibros(cargarCatalogo(nombreArchivoLibros, monitor, portadas));
+		} finally {
+			MetricasLibreria.registrar(Operacion.CARGAR_CATALOGO, inicio);
+		}
+	}
+
+	/**
+	 * Construye las categorías y el catálogo a partir de una instantánea vigente.
+	 * Los libros conservan las portadas que se encontraron cuando se creó la
+	 * instantánea.
+	 * 
+	 * @param instantanea La instantánea que se va a cargar
+	 */
+	private void cargarInstantanea(InstantaneaLibreria instantanea) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			this.categorias = instantanea.darCategorias();
+			this.indiceCategorias = indexarCategorias(categorias);
+			this.nuevascategorias.addAll(instantanea.darNuevasCategorias());
+
+			int cantidad = instantanea.contarLibros();
+			ArrayList<Libro> libros = new ArrayList<Libro>(cantidad);
+			for (int i = 0; i < cantidad; i++) {
+				Libro nuevo = new Libro(instantanea.darTitulo(i), instantanea.darAutor(i),
+						instantanea.darCalificacion(i), instantanea.darCategoria(i));
+				Imagen portada = instantanea.darPortada(i);
+				if (portada != null) {
+					nuevo.cambiarPortada(portada);
+				}
+				nuevo.cambiarConsecutivo(i);
+				libros.add(nuevo);
+				contarLibro(nuevo);
+			}
+			this.catalogo = new CatalogoLibros(libros);
+		} finally {
+			MetricasLibreria.registrar(Operacion.CARGAR_INSTANTANEA, inicio);
+		}
+	}
+
+	/**
+	 * Empieza a construir los índices del catálogo recién cargado en otro hilo.
+	 * El catálogo no se modifica y las modificaciones de la librería esperan a
+	 * que los índices estén publicados, así que el hilo no necesita candados.
+	 */
+	private void construirIndicesEnOtroHilo() {
+		CatalogoLibros libros = catalogo;
+		Categoria[] lasCategorias = categorias;
+		construccionIndices = new FutureTask<IndicesLibreria>(() -> {
+			IndicesLibreria nuevos = IndicesLibreria.construir(libros, lasCategorias);
+			indices = nuevos;
+			return nuevos;
+		});
+		Thread hilo = new Thread(construccionIndices, "indices-libreria");
+		hilo.setDaemon(true);
+		hilo.start();
+	}
+
+	/**
+	 * Retorna los índices del catálogo. Si todavía se están construyendo, espera
+	 * a que terminen.
+	 * 
+	 * @return Los índices
+	 */
+	private IndicesLibreria darIndices() {
+		IndicesLibreria actuales = indices;
+		if (actuales != null) {
+			return actuales;
+		}
+		boolean interrumpido = false;
+		try {
+			while (true) {
+				try {
+					return construccionIndices.get();
+				} catch (InterruptedException e) {
+					// La espera no se puede abandonar sin dejar la consulta sin
+					// respuesta, así que se sigue esperando y el hilo se vuelve a
+					// marcar al final
+					interrumpido = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable causa = e.getCause();
+			if (causa instanceof Error) {
+				throw (Error) causa;
+			}
+			throw new IllegalStateException("No se pudieron construir los índices de la librería", causa);
+		} finally {
+			if (interrumpido) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Espera a que terminen de construirse los índices del catálogo. Sirve para
+	 * medir las consultas sin incluir la construcción.
+	 */
+	void esperarIndices() {
+		darIndices();
+	}
+
 	/**
 	 * Carga la informaci�n sobre las categor�as disponibles a partir de un archivo
 	 * 
@@ -95,7 +466,7 @@ public class Libreria {
 	 * @throws IOException Se lanza esta excepci�n si hay alg�n problema leyendo del
 	 *                     archivo
 	 */
-	private Categoria[] cargarCategorias(String nombreArchivoCategorias) throws IOException {
+	static Categoria[] cargarCategorias(String nombreArchivoCategorias) throws IOException {
 		ArrayList<Categoria> listaCategorias = new ArrayList<Categoria>();
 
 		BufferedReader br = new BufferedReader(new FileReader(nombreArchivoCategorias));
@@ -124,88 +495,173 @@ public class Libreria {
 		return arregloCategorias;
 	}
 
+	/**
+	 * Construye el índice de categorías por nombre. Si hay varias categorías con
+	 * el mismo nombre, el índice se queda con la primera.
+	 * 
+	 * @param lasCategorias Las categorías que se van a indexar
+	 * @return Un mapa donde las llaves son los nombres de las categorías
+	 */
+	private HashMap<String, Categoria> indexarCategorias(Categoria[] lasCategorias) {
+		HashMap<String, Categoria> indice = new HashMap<String, Categoria>(lasCategorias.length * 2);
+		for (Categoria categoria : lasCategorias) {
+			indice.putIfAbsent(categoria.darNombre(), categoria);
+		}
+		return indice;
+	}
+
 	/**
 	 * Carga la informaci�n sobre los libros disponibles en la librer�a.
 	 * 
 	 * Se deben haber cargado antes las categor�as e inicializado el atributo
 	 * 'categorias'.
 	 * 
+	 * El archivo se interpreta en paralelo por bloques (ver CargadorCatalogo),
+	 * pero los libros se crean en el mismo orden en el que aparecen en el archivo.
+	 * 
 	 * @param nombreArchivoLibros El nombre del archivo CSV que contiene la
 	 *                            informaci�n de los libros
+	 * @param monitor             El objeto que sigue el avance de la carga. Puede
+	 *                            ser null.
+	 * @param portadas            El índice con el que se revisa si existen las
+	 *                            portadas
 	 * @return Una lista con los libros que se cargaron a partir del archivo
 	 * @throws IOException Se lanza esta excepci�n si hay alg�n problema leyendo del
 	 *                     archivo
 	 */
-	private ArrayList<Libro> cargarCatalogo(String nombreArchivoLibros) throws IOException {
+	private ArrayList<Libro> cargarCatalogo(String nombreArchivoLibros, MonitorCarga monitor, IndicePortadas portadas)
+			throws IOException {
 		ArrayList<Libro> libros = new ArrayList<Libro>();
-
-		BufferedReader br = new BufferedReader(new FileReader(nombreArchivoLibros));
-		String linea = br.readLine(); // Ignorar la primera l�nea porque tiene los t�tulos:
-										// Titulo,Autor,Calificacion,Categoria,Portada,Ancho,Alto
-
-		linea = br.readLine();
-		while (linea != null) {
-			String[] partes = linea.trim().split(",");
-			String elTitulo = partes[0];
-			String elAutor = partes[1];
-			this.nombresautores.add(elAutor);
-			double laCalificacion = Double.parseDouble(partes[2]);
-			String nombreCategoria = partes[3];
-			Categoria laCategoria = buscarCategoria(nombreCategoria);
-			String archivoPortada = partes[4];
-			int ancho = Integer.parseInt(partes[5]);
-			int alto = Integer.parseInt(partes[6]);
-
-			// Crear un nuevo libro
-			Libro nuevo = new Libro(elTitulo, elAutor, laCalificacion, laCategoria);
-			libros.add(nuevo);
-
-			// Si existe el archivo de la portada, ponérselo al libro
-			if (existeArchivo(archivoPortada)) {
-				Imagen portada = new Imagen(archivoPortada, ancho, alto);
-				nuevo.cambiarPortada(portada);
+		ArrayList<Categoria> agregadas = new ArrayList<Categoria>();
+		HashMap<String, String> autores = new HashMap<String, String>();
+
+		CargadorCatalogo cargador = new CargadorCatalogo(nombreArchivoLibros, monitor, portadas);
+		cargador.procesar(registros -> {
+			libros.ensureCapacity(libros.size() + registros.size());
+			for (RegistroLibro registro : registros) {
+				Libro nuevo = crearLibro(registro, agregadas, autores);
+				nuevo.cambiarConsecutivo(libros.size());
+				libros.add(nuevo);
+				contarLibro(nuevo);
+			}
+		});
+
+		// Las categorías nuevas se agregan al arreglo una sola vez al final
+		if (!agregadas.isEmpty()) {
+			int tamanio = categorias.length;
+			categorias = Arrays.copyOf(categorias, tamanio + agregadas.size());
+			for (int i = 0; i < agregadas.size(); i++) {
+				categorias[tamanio + i] = agregadas.get(i);
 			}
-
-			linea = br.readLine();
 		}
 
-		br.close();
-
 		return libros;
 	}
 
 	/**
-	 * Busca una categor�a a partir de su nombre
+	 * Crea un libro a partir de un registro del archivo de libros y lo agrega a su
+	 * categoría
 	 * 
-	 * @param nombreCategoria El nombre de la categor�a buscada
-	 * @return La categor�a que tiene el nombre dado
+	 * @param registro  La información de una línea del archivo de libros
+	 * @param agregadas La lista donde se acumulan las categorías que no estaban en
+	 *                  el archivo de categorías
+	 * @param autores   Diccionario con los nombres de autores ya leídos, para que
+	 *                  todos los libros de un autor compartan la misma cadena
+	 * @return El nuevo libro
 	 */
-	private Categoria buscarCategoria(String nombreCategoria) {
-		int encontrado = 0;
-		Categoria laCategoria = null;
+	private Libro crearLibro(RegistroLibro registro, ArrayList<Categoria> agregadas, HashMap<String, String> autores) {
+		String elAutor = autores.computeIfAbsent(registro.darAutor(), autor -> autor);
+		Categoria laCategoria = buscarCategoria(registro.darNombreCategoria(), agregadas);
+		String archivoPortada = registro.darArchivoPortada();
+
+		// Crear un nuevo libro
+		Libro nuevo = new Libro(registro.darTitulo(), elAutor, registro.darCalificacion(), laCategoria);
+
+		// Si existe el archivo de la portada, ponérselo al libro
+		if (registro.existePortada()) {
+			Imagen portada = new Imagen(archivoPortada, registro.darAncho(), registro.darAlto());
+			nuevo.cambiarPortada(portada);
+		}
+
+		return nuevo;
+	}
 
-		for (int i = 0; i < categorias.length && laCategoria == null; i++) {
-			if (categorias[i].darNombre().equals(nombreCategoria)) {
-				laCategoria = categorias[i];
-				encontrado = 1;
+	/**
+	 * Agrega un libro recién cargado a los contadores de la librería. Los índices
+	 * se construyen después, con el catálogo completo.
+	 * 
+	 * @param libro El libro que se agregó al catálogo
+	 */
+	private void contarLibro(Libro libro) {
+		sumaCalificaciones.sumar(libro.darCalificacion());
+		if (!libro.tienePortada()) {
+			librosSinPortada++;
+		}
+	}
+
+	/**
+	 * Reemplaza las categorías indicadas que esta librería comparte con otra
+	 * versión por copias propias, con copias de sus libros. El catálogo, la
+	 * caché y las categorías ganadoras pasan a usar las copias. Los índices no
+	 * cambian porque traducen los libros por su consecutivo, pero se deben
+	 * derivar con las categorías retornadas.
+	 * 
+	 * @param afectadas Las categorías que se van a modificar. Las que no son
+	 *                  compartidas se ignoran.
+	 * @return La copia que corresponde a cada categoría reemplazada
+	 */
+	private IdentityHashMap<Categoria, Categoria> privatizar(Collection<Categoria> afectadas) {
+		IdentityHashMap<Categoria, Categoria> copias = new IdentityHashMap<Categoria, Categoria>();
+		ArrayList<Libro> reemplazos = new ArrayList<Libro>();
+		for (Categoria categoria : afectadas) {
+			if (!compartidas.remove(categoria)) {
+				continue;
 			}
-			// else {System.out.println(nombreCategoria + encontrado);}
+			Categoria copia = new Categoria(categoria.darNombre(), categoria.esFiccion());
+			for (Libro libro : categoria.darLibros()) {
+				Libro nuevo = new Libro(libro.darTitulo(), libro.darAutor(), libro.darCalificacion(), copia);
+				if (libro.tienePortada()) {
+					nuevo.cambiarPortada(libro.darPortada());
+				}
+				nuevo.cambiarConsecutivo(libro.darConsecutivo());
+				reemplazos.add(nuevo);
+			}
+			copias.put(categoria, copia);
+		}
+		if (copias.isEmpty()) {
+			return copias;
 		}
 
-		// volver a crear array de categorias y agregrale las categorias nuevas y
-		// dejarlo puesto en this
-		if (encontrado == 0) {
-			this.nuevascategorias.add(nombreCategoria);
-			int tamanio = this.categorias.length;
-			Categoria newCategorias[] = new Categoria[tamanio + 1];
+		for (int i = 0; i < categorias.length; i++) {
+			categorias[i] = copias.getOrDefault(categorias[i], categorias[i]);
+		}
+		indiceCategorias.replaceAll((nombre, categoria) -> copias.getOrDefault(categoria, categoria));
+		CatalogoLibros nuevo = catalogo.cambiar(Collections.<Libro>emptyList(), reemplazos);
+		catalogo = nuevo;
+		cacheConsultas = cacheConsultas.copiar(libro -> nuevo.buscar(libro.darConsecutivo()),
+				categoria -> copias.getOrDefault(categoria, categoria));
+		categoriaMasLibros = copias.getOrDefault(categoriaMasLibros, categoriaMasLibros);
+		categoriaMejoresLibros = copias.getOrDefault(categoriaMejoresLibros, categoriaMejoresLibros);
+		return copias;
+	}
 
-			for (int a = 0; a < tamanio; a++) {
-				newCategorias[a] = categorias[a];
-			}
+	/**
+	 * Busca una categoría a partir de su nombre. Si la categoría no existe, se crea
+	 * una nueva categoría (que no es de ficción), se registra en el índice y su
+	 * nombre se agrega a la lista de nuevas categorías.
+	 * 
+	 * @param nombreCategoria El nombre de la categor�a buscada
+	 * @param agregadas       La lista donde se acumulan las categorías creadas
+	 * @return La categor�a que tiene el nombre dado
+	 */
+	private Categoria buscarCategoria(String nombreCategoria, ArrayList<Categoria> agregadas) {
+		Categoria laCategoria = indiceCategorias.get(nombreCategoria);
 
-			newCategorias[tamanio] = new Categoria(nombreCategoria, false);
-			categorias = newCategorias;
-			laCategoria = categorias[tamanio];
+		if (laCategoria == null) {
+			this.nuevascategorias.add(nombreCategoria);
+			laCategoria = new Categoria(nombreCategoria, false);
+			indiceCategorias.put(nombreCategoria, laCategoria);
+			agregadas.add(laCategoria);
 		}
 		return laCategoria;
 	}
@@ -213,76 +669,165 @@ public class Libreria {
 	// parte 2
 
 	public Categoria buscarExistencia(String nombreCategoria) {
-		Categoria laCategoria = null;
-		for (int i = 0; i < categorias.length && laCategoria == null; i++) {
-			if (categorias[i].darNombre().equals(nombreCategoria))
-				laCategoria = categorias[i];
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return indiceCategorias.get(nombreCategoria);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_EXISTENCIA, inicio);
 		}
-		return laCategoria;
 	}
 
 	public boolean cambioNombre(Categoria categoria, String nombre) {
-		boolean ans = false;
-		int encontrado = 0;
-
-		for (int i = 0; i < categorias.length; i++) {
-
-			if (categorias[i].darNombre().equals(nombre)) {
-				encontrado = 1;
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			boolean ans = false;
+
+			if (!indiceCategorias.containsKey(nombre)) {
+				categoria = hacerPropia(categoria);
+				String nombreAnterior = categoria.darNombre();
+				categoria.cambiarnombre(nombre);
+				indiceCategorias.put(nombre, categoria);
+
+				// El nombre anterior queda libre, a menos que otra categoría lo tenga
+				if (indiceCategorias.get(nombreAnterior) == categoria) {
+					indiceCategorias.remove(nombreAnterior);
+					for (int i = 0; i < categorias.length; i++) {
+						if (categorias[i].darNombre().equals(nombreAnterior)) {
+							indiceCategorias.put(nombreAnterior, categorias[i]);
+							break;
+						}
+					}
+				}
+				ans = true;
 			}
-		}
 
-		if (encontrado == 0) {
-			categoria.cambiarnombre(nombre);
-			ans = true;
+			return ans;
+		} finally {
+			MetricasLibreria.registrar(Operacion.CAMBIO_NOMBRE, inicio);
 		}
+	}
 
-		return ans;
+	/**
+	 * Si la categoría se comparte con otra versión, la reemplaza por una copia
+	 * propia y deriva los índices y los mejores libros con la copia
+	 * 
+	 * @param categoria La categoría que se va a modificar
+	 * @return La categoría que se puede modificar
+	 */
+	private Categoria hacerPropia(Categoria categoria) {
+		if (!compartidas.contains(categoria)) {
+			return categoria;
+		}
+		IndicesLibreria actuales = darIndices();
+		IdentityHashMap<Categoria, Categoria> copias = privatizar(Collections.singleton(categoria));
+		indices = actuales.cambiar(Collections.<Libro>emptyList(), copias, catalogo, catalogo, categorias);
+		selectorMejores = selectorMejores.derivar(copias.keySet(), catalogo);
+		return copias.get(categoria);
 	}
 
 	// parte 3
 
+	/**
+	 * Borra del catálogo los libros de los autores indicados.
+	 * 
+	 * @param autores Los nombres (o partes de los nombres) de los autores,
+	 *                separados por comas
+	 * @return La cantidad de libros que se retiraron del catálogo
+	 * @throws Exception Se lanza esta excepción si alguno de los autores no tiene
+	 *                   libros. En ese caso no se borra ningún libro.
+	 */
 	public int borrarLibros(String autores) throws Exception {
 		int removidos = 0;
-		String[] partes = autores.trim().split(",");
-		HashMap<String, ArrayList<Libro>> librosPorAutores = new HashMap<>();
-		for (int i = 0; i < partes.length; i++) {
-			String autor = partes[i];
-			librosPorAutores.put(autor, buscarLibrosAutor(autor));
+		for (int cantidad : borrarLibrosPorAutor(autores).values()) {
+			removidos += cantidad;
 		}
+		return removidos;
+	}
+
+	/**
+	 * Borra del catálogo los libros de los autores indicados e informa cuántos
+	 * libros se retiraron por cada autor.
+	 * 
+	 * Como los libros se identifican por su título (ver Libro.equals), también se
+	 * retiran los libros que tienen el mismo título que un libro de los autores.
+	 * Primero se reúnen los títulos que se deben retirar y se buscan sus libros
+	 * en el índice de títulos; luego sólo se modifican las categorías de esos
+	 * libros, y el catálogo y los índices nuevos comparten con los anteriores
+	 * todo lo demás.
+	 * 
+	 * @param autores Los nombres (o partes de los nombres) de los autores,
+	 *                separados por comas
+	 * @return Un mapa con la cantidad de libros retirados por cada autor, en el
+	 *         orden en el que se indicaron los autores. Cada libro retirado se le
+	 *         cuenta al primer autor que lo incluyó.
+	 * @throws Exception Se lanza esta excepción si alguno de los autores no tiene
+	 *                   libros. En ese caso no se borra ningún libro.
+	 */
+	public LinkedHashMap<String, Integer> borrarLibrosPorAutor(String autores) throws Exception {
+		long inicio = MetricasLibreria.iniciar();
 		try {
+			String[] partes = autores.trim().split(",");
+			HashMap<String, List<Libro>> librosPorAutores = new HashMap<>();
+			for (int i = 0; i < partes.length; i++) {
+				String autor = partes[i];
+				librosPorAutores.put(autor, reunirLibrosAutor(autor));
+			}
 			autoresConLibro(librosPorAutores);
+
+			LinkedHashMap<String, Integer> reporte = new LinkedHashMap<String, Integer>();
+			HashMap<String, String> autorPorTitulo = new HashMap<String, String>();
 			for (int i = 0; i < partes.length; i++) {
 				String autor = partes[i];
+				reporte.putIfAbsent(autor, 0);
 				for (Libro libro : librosPorAutores.get(autor)) {
-					for (int f = 0; f < categorias.length; f++) {
-						ArrayList<Libro> librosCategoria = categorias[f].darLibros();
-						if (!librosCategoria.isEmpty()) {
-							for (int o = 0; o < librosCategoria.size(); o++) {
-								Libro unLibro = librosCategoria.get(o);
-								if (unLibro.equals(libro)) {
-									librosCategoria.remove(o);
-								}
-								;
-							}
-						}
-						for (int o = 0; o < catalogo.size(); o++) {
-							Libro unLibro = catalogo.get(o);
-							if (unLibro.equals(libro)) {
-								catalogo.remove(o);
-								removidos++;
-							}
-						}
-					}
+					autorPorTitulo.putIfAbsent(libro.darTitulo(), autor);
+				}
+			}
+
+			// Los libros se retiran en el orden del catálogo
+			IndicesLibreria actuales = darIndices();
+			ArrayList<Libro> retirados = new ArrayList<Libro>();
+			for (String titulo : autorPorTitulo.keySet()) {
+				retirados.addAll(actuales.darTitulos().buscar(titulo, catalogo));
+			}
+			retirados.sort(Comparator.comparingInt(Libro::darConsecutivo));
+
+			IdentityHashMap<Categoria, Categoria> cambiadas = new IdentityHashMap<Categoria, Categoria>();
+			for (Libro libro : retirados) {
+				cambiadas.put(libro.darCategoria(), libro.darCategoria());
+			}
+			cambiadas.putAll(privatizar(new ArrayList<Categoria>(cambiadas.keySet())));
+			for (Categoria categoria : cambiadas.values()) {
+				categoria.removerLibros(autorPorTitulo.keySet());
+			}
+
+			CatalogoLibros anterior = catalogo;
+			catalogo = catalogo.cambiar(retirados, Collections.<Libro>emptyList());
+			indices = actuales.cambiar(retirados, cambiadas, anterior, catalogo, categorias);
+			selectorMejores = selectorMejores.derivar(cambiadas.keySet(), catalogo);
+
+			HashSet<String> autoresRetirados = new HashSet<String>();
+			for (Libro libro : retirados) {
+				autoresRetirados.add(libro.darAutor());
+				reporte.merge(autorPorTitulo.get(libro.darTitulo()), 1, Integer::sum);
+				sumaCalificaciones.restar(libro.darCalificacion());
+				if (!libro.tienePortada()) {
+					librosSinPortada--;
 				}
+				ganadorasVigentes = false;
+			}
+			cacheConsultas.invalidarAutores(autoresRetirados);
+			if (catalogo.isEmpty()) {
+				sumaCalificaciones.reiniciar();
 			}
-		} catch (Exception e) {
-			throw e;
+
+			return reporte;
+		} finally {
+			MetricasLibreria.registrar(Operacion.BORRAR_LIBROS, inicio);
 		}
-		return removidos;
 	}
 
-	public void autoresConLibro(HashMap<String, ArrayList<Libro>> librosPorAutores) throws Exception {
+	public void autoresConLibro(HashMap<String, List<Libro>> librosPorAutores) throws Exception {
 		Set<String> autores = librosPorAutores.keySet();
 		boolean tienen = true;
 		String autoresSinLibros = "Autores sin libros: ";
@@ -303,18 +848,6 @@ public class Libreria {
 
 	}
 
-	/**
-	 * Verifica si existe el archivo con el nombre indicado dentro de la carpeta
-	 * "data".
-	 * 
-	 * @param nombreArchivo El nombre del archivo que se va a buscar.
-	 * @return
-	 */
-	private boolean existeArchivo(String nombreArchivo) {
-		File archivo = new File("./data/" + nombreArchivo);
-		return archivo.exists();
-	}
-
 	/**
 	 * Retorna una lista con los libros que pertenecen a la categor�a indicada en el
 	 * par�metro
@@ -323,37 +856,189 @@ public class Libreria {
 	 * @return Una lista donde todos los libros pertenecen a la categor�a indicada
 	 */
 	public ArrayList<Libro> darLibros(String nombreCategoria) {
-		boolean encontreCategoria = false;
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			ArrayList<Libro> seleccionados = new ArrayList<Libro>();
+
+			Categoria categoria = indiceCategorias.get(nombreCategoria);
+			if (categoria != null) {
+				seleccionados.addAll(categoria.darLibros());
+			}
 
-		ArrayList<Libro> seleccionados = new ArrayList<Libro>();
+			return seleccionados;
+		} finally {
+			MetricasLibreria.registrar(Operacion.DAR_LIBROS, inicio);
+		}
+	}
 
-		for (int i = 0; i < categorias.length && !encontreCategoria; i++) {
-			if (categorias[i].darNombre().equals(nombreCategoria)) {
-				encontreCategoria = true;
-				seleccionados.addAll(categorias[i].darLibros());
+	/**
+	 * Busca un libro a partir de su título
+	 * 
+	 * @param tituloLibro Título del libro buscado
+	 * @return Retorna un libro con el título indicado o null si no se encontró un
+	 *         libro con ese título. Si hay varios, retorna el primero del catálogo.
+	 */
+	public Libro buscarLibro(String tituloLibro) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			IndicesLibreria actuales = indices;
+			if (actuales == null) {
+				// Mientras se construyen los índices se recorre el catálogo
+				for (Libro libro : catalogo) {
+					if (libro.darTitulo().equals(tituloLibro)) {
+						return libro;
+					}
+				}
+				return null;
 			}
+			ArrayList<Libro> encontrados = actuales.darTitulos().buscar(tituloLibro, catalogo);
+			return encontrados.isEmpty() ? null : encontrados.get(0);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBRO, inicio);
 		}
+	}
 
-		return seleccionados;
+	/**
+	 * Busca todos los libros que tienen exactamente el título indicado
+	 * 
+	 * @param tituloLibro Título de los libros buscados
+	 * @return Una lista con los libros que tienen ese título, en el orden del
+	 *         catálogo. Si no hay ninguno, retorna una lista vacía.
+	 */
+	public ArrayList<Libro> buscarLibros(String tituloLibro) {
+		return buscarLibros(tituloLibro, false);
 	}
 
 	/**
-	 * Busca un libro a partir de su t�tulo
+	 * Busca todos los libros que tienen el título indicado
 	 * 
-	 * @param tituloLibro T�tulo del libro buscado
-	 * @return Retorna un libro con el t�tulo indicado o null si no se encontr� un
-	 *         libro con ese t�tulo
+	 * @param tituloLibro       Título de los libros buscados
+	 * @param ignorarMayusculas Indica si la búsqueda debe ignorar la diferencia
+	 *                          entre mayúsculas y minúsculas
+	 * @return Una lista con los libros que tienen ese título, en el orden del
+	 *         catálogo. Si no hay ninguno, retorna una lista vacía.
 	 */
-	public Libro buscarLibro(String tituloLibro) {
-		Libro libroBuscado = null;
+	public ArrayList<Libro> buscarLibros(String tituloLibro, boolean ignorarMayusculas) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			IndicesLibreria actuales = indices;
+			if (actuales == null) {
+				return buscarLibrosRecorriendo(tituloLibro, ignorarMayusculas);
+			}
+			if (ignorarMayusculas) {
+				return actuales.darTitulos().buscarSinMayusculas(tituloLibro, catalogo);
+			}
+			return actuales.darTitulos().buscar(tituloLibro, catalogo);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS, inicio);
+		}
+	}
 
-		for (int i = 0; i < catalogo.size() && libroBuscado == null; i++) {
-			Libro unLibro = catalogo.get(i);
-			if (unLibro.darTitulo().equals(tituloLibro))
-				libroBuscado = unLibro;
+	/**
+	 * Busca los libros cuyo título se parece al indicado, sin tener en cuenta
+	 * mayúsculas y minúsculas. Sirve para encontrar un libro aunque el título se
+	 * haya escrito con errores.
+	 * 
+	 * @param tituloLibro     El título buscado
+	 * @param distanciaMaxima La cantidad máxima de caracteres que se pueden
+	 *                        insertar, borrar o cambiar en el título buscado para
+	 *                        llegar al título de un libro
+	 * @param cantidad        La cantidad máxima de libros que se quieren
+	 * @return Una lista con los libros encontrados, empezando por los títulos más
+	 *         parecidos. Los libros con el mismo título están en el orden del
+	 *         catálogo.
+	 */
+	public ArrayList<Libro> buscarLibrosAproximados(String tituloLibro, int distanciaMaxima, int cantidad) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			IndicesLibreria actuales = indices;
+			if (actuales == null) {
+				return buscarLibrosAproximadosRecorriendo(tituloLibro, distanciaMaxima, cantidad);
+			}
+			ArrayList<Libro> encontrados = new ArrayList<Libro>();
+			for (String titulo : actuales.darTitulosAproximados().buscar(tituloLibro, distanciaMaxima, catalogo)) {
+				for (Libro libro : actuales.darTitulos().buscarSinMayusculas(titulo, catalogo)) {
+					if (encontrados.size() >= cantidad) {
+						return encontrados;
+					}
+					encontrados.add(libro);
+				}
+			}
+			return encontrados;
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS_APROXIMADOS, inicio);
 		}
+	}
 
-		return libroBuscado;
+	/**
+	 * Busca los libros con el título indicado recorriendo el catálogo. Se usa
+	 * mientras se construyen los índices y retorna lo mismo que buscarLibros.
+	 */
+	private ArrayList<Libro> buscarLibrosRecorriendo(String tituloLibro, boolean ignorarMayusculas) {
+		String buscado = ignorarMayusculas ? tituloLibro.toLowerCase() : tituloLibro;
+		ArrayList<Libro> encontrados = new ArrayList<Libro>();
+		for (Libro libro : catalogo) {
+			String titulo = ignorarMayusculas ? libro.darTitulo().toLowerCase() : libro.darTitulo();
+			if (titulo.equals(buscado)) {
+				encontrados.add(libro);
+			}
+		}
+		return encontrados;
+	}
+
+	/**
+	 * Busca los libros con títulos parecidos al indicado recorriendo el catálogo.
+	 * Se usa mientras se construyen los índices y retorna lo mismo que
+	 * buscarLibrosAproximados.
+	 */
+	private ArrayList<Libro> buscarLibrosAproximadosRecorriendo(String tituloLibro, int distanciaMaxima,
+			int cantidad) {
+		ArrayList<String> titulos = IndiceTitulosAproximados.buscarRecorriendo(tituloLibro, distanciaMaxima, catalogo);
+		LinkedHashMap<String, ArrayList<Libro>> porTitulo = new LinkedHashMap<String, ArrayList<Libro>>();
+		for (String titulo : titulos) {
+			porTitulo.put(titulo, new ArrayList<Libro>());
+		}
+		if (!porTitulo.isEmpty()) {
+			for (Libro libro : catalogo) {
+				ArrayList<Libro> grupo = porTitulo.get(libro.darTitulo().toLowerCase());
+				if (grupo != null) {
+					grupo.add(libro);
+				}
+			}
+		}
+		ArrayList<Libro> encontrados = new ArrayList<Libro>();
+		for (ArrayList<Libro> grupo : porTitulo.values()) {
+			for (Libro libro : grupo) {
+				if (encontrados.size() >= cantidad) {
+					return encontrados;
+				}
+				encontrados.add(libro);
+			}
+		}
+		return encontrados;
+	}
+
+	/**
+	 * Busca los libros cuyo título contiene las palabras indicadas, sin tener en
+	 * cuenta mayúsculas, minúsculas ni tildes. Los resultados se ordenan según su
+	 * relevancia: pesan más las palabras que aparecen en pocos títulos y los
+	 * títulos cortos.
+	 * 
+	 * @param consulta         Las palabras buscadas
+	 * @param todasLasPalabras Indica si los títulos deben tener todas las
+	 *                         palabras (true) o al menos una (false)
+	 * @param cantidad         La cantidad máxima de libros que se quieren
+	 * @return Una lista con los libros encontrados, del más relevante al menos
+	 *         relevante. Los libros igual de relevantes están en el orden del
+	 *         catálogo.
+	 */
+	public ArrayList<Libro> buscarLibrosTexto(String consulta, boolean todasLasPalabras, int cantidad) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return darIndices().darTexto().buscar(consulta, todasLasPalabras, cantidad, catalogo);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS_TEXTO, inicio);
+		}
 	}
 
 	/**
@@ -365,20 +1050,67 @@ public class Libreria {
 	 * 
 	 * @param cadenaAutor La cadena que se usar� para consultar el autor. No
 	 *                    necesariamente corresponde al nombre completo de un autor.
-	 * @return Una lista con todos los libros cuyo autor coincida con la cadena
-	 *         indicada
+	 * @return Una lista inmodificable con todos los libros cuyo autor coincida
+	 *         con la cadena indicada
 	 */
-	public ArrayList<Libro> buscarLibrosAutor(String cadenaAutor) {
+	public List<Libro> buscarLibrosAutor(String cadenaAutor) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return reunirLibrosAutor(cadenaAutor);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS_AUTOR, inicio);
+		}
+	}
+
+	/**
+	 * Busca los libros del autor indicado sin registrar la consulta en las
+	 * métricas. Lo usan los métodos que ya miden su propia duración.
+	 */
+	private List<Libro> reunirLibrosAutor(String cadenaAutor) {
+		// La búsqueda no tiene en cuenta mayúsculas y minúsculas, así que todas
+		// las variantes de la cadena comparten el resultado guardado
+		String llave = cadenaAutor.toLowerCase();
+		List<Libro> guardados = cacheConsultas.buscar(Operacion.BUSCAR_LIBROS_AUTOR, llave);
+		if (guardados != null) {
+			return guardados;
+		}
 		ArrayList<Libro> librosAutor = new ArrayList<Libro>();
 
-		for (int i = 0; i < categorias.length; i++) {
-			ArrayList<Libro> librosCategoria = categorias[i].buscarLibrosDeAutor(cadenaAutor);
-			if (!librosCategoria.isEmpty()) {
+		IndicesLibreria actuales = indices;
+		if (actuales == null) {
+			// Mientras se construyen los índices se recorren las categorías
+			for (Categoria categoria : categorias) {
+				librosAutor.addAll(categoria.buscarLibrosDeAutor(cadenaAutor));
+			}
+			return guardarLibrosAutor(llave, librosAutor);
+		}
+
+		// Los libros encontrados en el índice se agrupan por categoría para
+		// devolverlos en el mismo orden en el que se recorren las categorías
+		IdentityHashMap<Categoria, ArrayList<Libro>> porCategoria = new IdentityHashMap<>();
+		for (Libro libro : actuales.darAutores().buscar(cadenaAutor, catalogo)) {
+			porCategoria.computeIfAbsent(libro.darCategoria(), c -> new ArrayList<Libro>()).add(libro);
+		}
+
+		for (int i = 0; i < categorias.length && !porCategoria.isEmpty(); i++) {
+			ArrayList<Libro> librosCategoria = porCategoria.remove(categorias[i]);
+			if (librosCategoria != null) {
+				librosCategoria.sort(Comparator.comparingInt(Libro::darConsecutivo));
 				librosAutor.addAll(librosCategoria);
 			}
 		}
 
-		return librosAutor;
+		return guardarLibrosAutor(llave, librosAutor);
+	}
+
+	/**
+	 * Guarda en la caché los libros encontrados para una búsqueda por autor. La
+	 * caché guarda la misma lista inmodificable que se retorna.
+	 */
+	private List<Libro> guardarLibrosAutor(String llave, ArrayList<Libro> librosAutor) {
+		List<Libro> resultado = List.copyOf(librosAutor);
+		cacheConsultas.guardarLibros(Operacion.BUSCAR_LIBROS_AUTOR, llave, resultado);
+		return resultado;
 	}
 
 	/**
@@ -388,36 +1120,55 @@ public class Libreria {
 	 * indicado en el par�metro nombreAutor.
 	 * 
 	 * @param nombreAutor El nombre del autor
-	 * @return Una lista con las categor�as en las cuales hay al menos un libro del
-	 *         autor indicado. Si no hay un libro del autor en ninguna categor�a,
-	 *         retorna una lista vac�a.
+	 * @return Una lista inmodificable con las categor�as en las cuales hay al
+	 *         menos un libro del autor indicado. Si no hay un libro del autor en
+	 *         ninguna categor�a, retorna una lista vac�a.
 	 */
-	public ArrayList<Categoria> buscarCategoriasAutor(String nombreAutor) {
-		ArrayList<Categoria> resultado = new ArrayList<Categoria>();
-
-		for (int i = 0; i < categorias.length; i++) {
-			if (categorias[i].hayLibroDeAutor(nombreAutor)) {
-				resultado.add(categorias[i]);
+	public List<Categoria> buscarCategoriasAutor(String nombreAutor) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			List<Categoria> categoriasAutor = cacheConsultas.buscar(Operacion.BUSCAR_CATEGORIAS_AUTOR, nombreAutor);
+			if (categoriasAutor == null) {
+				IndicesLibreria actuales = indices;
+				if (actuales != null) {
+					categoriasAutor = List
+							.copyOf(actuales.darCategoriasAutores().buscar(nombreAutor, categorias, catalogo));
+				} else {
+					// Mientras se construyen los índices se recorren las categorías
+					ArrayList<Categoria> encontradas = new ArrayList<Categoria>();
+					for (Categoria categoria : categorias) {
+						if (categoria.hayLibroDeAutor(nombreAutor)) {
+							encontradas.add(categoria);
+						}
+					}
+					categoriasAutor = List.copyOf(encontradas);
+				}
+				// Si el autor no tiene libros el resultado ya no puede cambiar
+				cacheConsultas.guardar(Operacion.BUSCAR_CATEGORIAS_AUTOR, nombreAutor, categoriasAutor,
+						categoriasAutor.isEmpty() ? Collections.<String>emptySet() : Collections.singleton(nombreAutor));
 			}
+			return categoriasAutor;
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_CATEGORIAS_AUTOR, inicio);
 		}
-
-		return resultado;
 	}
 
 	/**
 	 * Calcula la calificaci�n promedio calculada entre todos los libros del
 	 * cat�logo
 	 * 
-	 * @return Calificaci�n promedio del cat�logo
+	 * @return Calificaci�n promedio del cat�logo, o NaN si no hay libros
 	 */
 	public double calificacionPromedio() {
-		double total = 0;
-
-		for (Libro libro : catalogo) {
-			total += libro.darCalificacion();
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			if (catalogo.isEmpty()) {
+				return Double.NaN;
+			}
+			return sumaCalificaciones.darValor() / catalogo.size();
+		} finally {
+			MetricasLibreria.registrar(Operacion.CALIFICACION_PROMEDIO, inicio);
 		}
-
-		return total / (double) catalogo.size();
 	}
 
 	/**
@@ -428,17 +1179,13 @@ public class Libreria {
 	 *         retorna null.
 	 */
 	public Categoria categoriaConMasLibros() {
-		int mayorCantidad = -1;
-		Categoria categoriaGanadora = null;
-
-		for (int i = 0; i < categorias.length; i++) {
-			Categoria cat = categorias[i];
-			if (cat.contarLibrosEnCategoria() > mayorCantidad) {
-				mayorCantidad = cat.contarLibrosEnCategoria();
-				categoriaGanadora = cat;
-			}
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			actualizarGanadoras();
+			return categoriaMasLibros;
+		} finally {
+			MetricasLibreria.registrar(Operacion.CATEGORIA_MAS_LIBROS, inicio);
 		}
-		return categoriaGanadora;
 	}
 
 	/**
@@ -448,18 +1195,188 @@ public class Libreria {
 	 * @return Categor�a con los mejores libros
 	 */
 	public Categoria categoriaConMejoresLibros() {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			actualizarGanadoras();
+			return categoriaMejoresLibros;
+		} finally {
+			MetricasLibreria.registrar(Operacion.CATEGORIA_MEJORES_LIBROS, inicio);
+		}
+	}
+
+	/**
+	 * Busca los libros con mejor calificación del catálogo. Si hay empates, los
+	 * libros se ordenan por título y luego por su posición en el catálogo.
+	 * 
+	 * @param cantidad La cantidad máxima de libros que se quieren
+	 * @return Una lista con los mejores libros, de mayor a menor calificación. Si
+	 *         el catálogo tiene menos libros, los incluye a todos. Si la cantidad
+	 *         no es positiva, retorna una lista vacía.
+	 */
+	public ArrayList<Libro> mejoresLibros(int cantidad) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			// Una cantidad que no es positiva no debe reemplazar la selección
+			// guardada
+			if (cantidad <= 0) {
+				return new ArrayList<Libro>();
+			}
+			return selectorMejores.mejores(catalogo, cantidad);
+		} finally {
+			MetricasLibreria.registrar(Operacion.MEJORES_LIBROS, inicio);
+		}
+	}
+
+	/**
+	 * Busca los libros con mejor calificación de una categoría. Si hay empates,
+	 * los libros se ordenan por título y luego por su posición en el catálogo.
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @param cantidad        La cantidad máxima de libros que se quieren
+	 * @return Una lista con los mejores libros de la categoría, de mayor a menor
+	 *         calificación. Si la categoría no existe o la cantidad no es
+	 *         positiva, retorna una lista vacía.
+	 */
+	public ArrayList<Libro> mejoresLibros(String nombreCategoria, int cantidad) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			Categoria categoria = indiceCategorias.get(nombreCategoria);
+			if (categoria == null || cantidad <= 0) {
+				return new ArrayList<Libro>();
+			}
+			return selectorMejores.mejores(categoria, cantidad);
+		} finally {
+			MetricasLibreria.registrar(Operacion.MEJORES_LIBROS_CATEGORIA, inicio);
+		}
+	}
+
+	/**
+	 * Busca los libros del catálogo cuya calificación está entre los valores
+	 * indicados, incluyéndolos
+	 * 
+	 * @param minima La calificación mínima
+	 * @param maxima La calificación máxima
+	 * @return Una lista que no se puede modificar con los libros encontrados, de
+	 *         menor a mayor calificación. Los libros con la misma calificación
+	 *         están en el orden del catálogo. La lista no cambia si después se
+	 *         borran libros de la librería.
+	 */
+	public List<Libro> buscarLibrosCalificacion(double minima, double maxima) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return darIndices().darCalificaciones().buscar(null, minima, maxima, catalogo);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS_CALIFICACION, inicio);
+		}
+	}
+
+	/**
+	 * Busca los libros de una categoría cuya calificación está entre los valores
+	 * indicados, incluyéndolos
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @param minima          La calificación mínima
+	 * @param maxima          La calificación máxima
+	 * @return Una lista que no se puede modificar con los libros encontrados, de
+	 *         menor a mayor calificación. Si la categoría no existe, la lista está
+	 *         vacía.
+	 */
+	public List<Libro> buscarLibrosCalificacion(String nombreCategoria, double minima, double maxima) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			Categoria categoria = indiceCategorias.get(nombreCategoria);
+			if (categoria == null) {
+				return Collections.emptyList();
+			}
+			return darIndices().darCalificaciones().buscar(categoria, minima, maxima, catalogo);
+		} finally {
+			MetricasLibreria.registrar(Operacion.BUSCAR_LIBROS_CALIFICACION, inicio);
+		}
+	}
+
+	/**
+	 * Cuenta los libros del catálogo cuya calificación está entre los valores
+	 * indicados, incluyéndolos
+	 * 
+	 * @param minima La calificación mínima
+	 * @param maxima La calificación máxima
+	 * @return La cantidad de libros
+	 */
+	public int contarLibrosCalificacion(double minima, double maxima) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return darIndices().darCalificaciones().contar(null, minima, maxima);
+		} finally {
+			MetricasLibreria.registrar(Operacion.CONTAR_LIBROS_CALIFICACION, inicio);
+		}
+	}
+
+	/**
+	 * Cuenta los libros de una categoría cuya calificación está entre los valores
+	 * indicados, incluyéndolos
+	 * 
+	 * @param nombreCategoria El nombre de la categoría de interés
+	 * @param minima          La calificación mínima
+	 * @param maxima          La calificación máxima
+	 * @return La cantidad de libros. Si la categoría no existe, retorna 0.
+	 */
+	public int contarLibrosCalificacion(String nombreCategoria, double minima, double maxima) {
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			Categoria categoria = indiceCategorias.get(nombreCategoria);
+			if (categoria == null) {
+				return 0;
+			}
+			return darIndices().darCalificaciones().contar(categoria, minima, maxima);
+		} finally {
+			MetricasLibreria.registrar(Operacion.CONTAR_LIBROS_CALIFICACION, inicio);
+		}
+	}
+
+	/**
+	 * Calcula de una vez las categorías ganadoras, que las consultas calculan la
+	 * primera vez que se necesitan. Después de llamar este método, las consultas
+	 * sólo guardan resultados en estructuras concurrentes, así que varios hilos
+	 * pueden hacerlas al mismo tiempo mientras nadie modifique la librería. Los
+	 * índices no se modifican después de construirse.
+	 */
+	void prepararLecturas() {
+		actualizarGanadoras();
+	}
+
+	/**
+	 * Vuelve a calcular la categoría con más libros y la categoría con mejores
+	 * libros si el catálogo cambió desde la última vez que se calcularon. Cada
+	 * categoría mantiene su cantidad de libros y la suma de sus calificaciones, así
+	 * que el cálculo sólo recorre las categorías y no los libros.
+	 */
+	private void actualizarGanadoras() {
+		if (ganadorasVigentes) {
+			return;
+		}
+
+		int mayorCantidad = -1;
+		Categoria masLibros = null;
 		double mejorPromedio = -1;
-		Categoria categoriaGanadora = null;
+		Categoria mejoresLibros = null;
 
 		for (int i = 0; i < categorias.length; i++) {
 			Categoria cat = categorias[i];
+			int cantidad = cat.contarLibrosEnCategoria();
+			if (cantidad > mayorCantidad) {
+				mayorCantidad = cantidad;
+				masLibros = cat;
+			}
 			double promedioCat = cat.calificacionPromedio();
 			if (promedioCat > mejorPromedio) {
 				mejorPromedio = promedioCat;
-				categoriaGanadora = cat;
+				mejoresLibros = cat;
 			}
 		}
-		return categoriaGanadora;
+
+		categoriaMasLibros = masLibros;
+		categoriaMejoresLibros = mejoresLibros;
+		ganadorasVigentes = true;
 	}
 
 	/**
@@ -468,13 +1385,12 @@ public class Libreria {
 	 * @return Cantidad de libros sin portada
 	 */
 	public int contarLibrosSinPortada() {
-		int cantidad = 0;
-		for (Libro libro : catalogo) {
-			if (!libro.tienePortada()) {
-				cantidad++;
-			}
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			return librosSinPortada;
+		} finally {
+			MetricasLibreria.registrar(Operacion.CONTAR_LIBROS_SIN_PORTADA, inicio);
 		}
-		return cantidad;
 	}
 
 	/**
@@ -484,29 +1400,24 @@ public class Libreria {
 	 *         categor�as diferentes. Retorna false en caso contrario.
 	 */
 	public boolean hayAutorEnVariasCategorias() {
-		boolean hayAutorEnVariasCategorias = false;
-
-		HashMap<String, HashSet<String>> categoriasAutores = new HashMap<>();
-
-		for (int i = 0; i < catalogo.size() && !hayAutorEnVariasCategorias; i++) {
-			Libro libro = catalogo.get(i);
-			String autor = libro.darAutor();
-			String nombreCategoria = libro.darCategoria().darNombre();
-
-			if (!categoriasAutores.containsKey(autor)) {
-				HashSet<String> categoriasAutor = new HashSet<String>();
-				categoriasAutor.add(nombreCategoria);
-				categoriasAutores.put(autor, categoriasAutor);
-			} else {
-				HashSet<String> categoriasAutor = categoriasAutores.get(autor);
-				if (!categoriasAutor.contains(nombreCategoria)) {
-					categoriasAutor.add(nombreCategoria);
-					hayAutorEnVariasCategorias = true;
+		long inicio = MetricasLibreria.iniciar();
+		try {
+			IndicesLibreria actuales = indices;
+			if (actuales != null) {
+				return actuales.darCategoriasAutores().hayAutorEnVariasCategorias();
+			}
+			// Mientras se construyen los índices se recorre el catálogo
+			HashMap<String, Categoria> primeraCategoria = new HashMap<String, Categoria>();
+			for (Libro libro : catalogo) {
+				Categoria anterior = primeraCategoria.putIfAbsent(libro.darAutor(), libro.darCategoria());
+				if (anterior != null && anterior != libro.darCategoria()) {
+					return true;
 				}
 			}
+			return false;
+		} finally {
+			MetricasLibreria.registrar(Operacion.HAY_AUTOR_EN_VARIAS_CATEGORIAS, inicio);
 		}
-
-		return hayAutorEnVariasCategorias;
 	}
 
 }
@@ -0,0 +1,400 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Esta clase permite compartir una librera entre varios hilos.
+ *
+ * Las consultas trabajan sobre una versin de la librera cuyos libros y
+ * categoras nunca se modifican, as que no esperan a las modificaciones. Las
+ * modificaciones (borrar libros y cambiar el nombre de una categora) se hacen
+ * sobre una versin derivada de la actual (ver Libreria.derivar), y cuando
+ * terminan la versin nueva se publica en una sola operacin atmica. Las
+ * modificaciones se hacen de a una a la vez.
+ *
+ * Una versin derivada comparte con la actual el catlogo, los ndices y las
+ * categoras, y slo copia las categoras que modifica y las partes de los
+ * ndices que dependen de ellas. As una modificacin no tiene que copiar ni
+ * volver a indexar todo el catlogo.
+ *
+ * Las consultas no usan candados. Lo nico que cambia en una versin publicada
+ * es lo que las consultas guardan para las siguientes (los resultados de la
+ * cach y los mejores libros), y eso se guarda en estructuras concurrentes.
+ *
+ * Los objetos Categoria y Libro que retornan las consultas pertenecen a una
+ * versin publicada y no se deben modificar.
+ */
+public class LibreriaConcurrente
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La versin de la librera que ven las consultas
+	 */
+	private final AtomicReference<Libreria> version;
+
+	/**
+	 * Candado que comparten los hilos que modifican la librera
+	 */
+	private final Object candadoEscritura = new Object();
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye una librera concurrente a partir de los archivos, o de su
+	 * instantnea si los archivos no han cambiado desde que se guard. La versin
+	 * inicial se publica apenas se carga el catlogo; sus ndices se construyen
+	 * en otro hilo y mientras tanto las bsquedas por ttulo y por autor
+	 * recorren el catlogo, y las dems consultas esperan a los ndices.
+	 *
+	 * @param nombreArchivoCategorias El nombre del archivo CSV que tiene la
+	 *                                informacin sobre las categoras de libros
+	 * @param nombreArchivoLibros     El nombre del archivo CSV que tiene la
+	 *                                informacin sobre los libros
+	 * @throws IOException Lanza esta excepcin si hay algn problema leyendo un
+	 *                     archivo
+	 */
+	public LibreriaConcurrente(String nombreArchivoCategorias, String nombreArchivoLibros) throws IOException
+	{
+		Libreria inicial = new Libreria(nombreArchivoCategorias, nombreArchivoLibros,
+				Libreria.darArchivoInstantanea(nombreArchivoCategorias, nombreArchivoLibros));
+		inicial.prepararLecturas();
+		version = new AtomicReference<Libreria>(inicial);
+	}
+
+	/**
+	 * Construye una librera concurrente a partir de una copia independiente de
+	 * la librera indicada. Los cambios posteriores sobre la librera original no
+	 * se ven en la librera concurrente.
+	 *
+	 * @param libreria La librera que se va a copiar
+	 */
+	public LibreriaConcurrente(Libreria libreria)
+	{
+		Libreria inicial = new Libreria(libreria);
+		inicial.prepararLecturas();
+		version = new AtomicReference<Libreria>(inicial);
+	}
+
+	// ************************************************************************
+	// Consultas
+	// ************************************************************************
+
+	/**
+	 * Retorna la versin actual de la librera. Sirve para hacer varias consultas
+	 * sobre la misma versin aunque mientras tanto se publique otra.
+	 *
+	 * La versin retornada no se debe modificar.
+	 *
+	 * @return La versin publicada de la librera
+	 */
+	public Libreria darVersion()
+	{
+		return version.get();
+	}
+
+	/**
+	 * Retorna las categoras de la versin actual
+	 *
+	 * @return Un arreglo nuevo con las categoras
+	 */
+	public Categoria[] darCategorias()
+	{
+		return version.get().darCategorias().clone();
+	}
+
+	/**
+	 * Retorna el catlogo completo de la versin actual
+	 *
+	 * @return Una lista que no se puede modificar con los libros del catlogo
+	 */
+	public List<Libro> darLibros()
+	{
+		return version.get().darLibros();
+	}
+
+	/**
+	 * Retorna los nombres de las categoras que no estaban en el archivo de
+	 * categoras
+	 *
+	 * @return Una lista que no se puede modificar con los nombres
+	 */
+	public List<String> darNuevasCategorias()
+	{
+		return Collections.unmodifiableList(version.get().darNuevasCategorias());
+	}
+
+	/**
+	 * Ver Libreria.darLibros(String)
+	 */
+	public ArrayList<Libro> darLibros(String nombreCategoria)
+	{
+		return version.get().darLibros(nombreCategoria);
+	}
+
+	/**
+	 * Retorna los libros de una categora de la versin actual sin copiarlos. Las
+	 * categoras de una versin publicada no cambian, as que la lista tampoco.
+	 *
+	 * @param nombreCategoria El nombre de la categora
+	 * @return Una lista que no se puede modificar con los libros de la categora,
+	 *         en el orden del catlogo. Si la categora no existe, est vaca.
+	 */
+	public List<Libro> darVistaLibros(String nombreCategoria)
+	{
+		Categoria categoria = version.get().buscarExistencia(nombreCategoria);
+		return categoria == null ? Collections.<Libro>emptyList() : Collections.unmodifiableList(categoria.darLibros());
+	}
+
+	/**
+	 * Ver Libreria.buscarExistencia(String)
+	 */
+	public Categoria buscarExistencia(String nombreCategoria)
+	{
+		return version.get().buscarExistencia(nombreCategoria);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibro(String)
+	 */
+	public Libro buscarLibro(String tituloLibro)
+	{
+		return version.get().buscarLibro(tituloLibro);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibros(String, boolean)
+	 */
+	public ArrayList<Libro> buscarLibros(String tituloLibro, boolean ignorarMayusculas)
+	{
+		return version.get().buscarLibros(tituloLibro, ignorarMayusculas);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibrosAproximados(String, int, int)
+	 */
+	public ArrayList<Libro> buscarLibrosAproximados(String tituloLibro, int distanciaMaxima, int cantidad)
+	{
+		return version.get().buscarLibrosAproximados(tituloLibro, distanciaMaxima, cantidad);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibrosTexto(String, boolean, int)
+	 */
+	public ArrayList<Libro> buscarLibrosTexto(String consulta, boolean todasLasPalabras, int cantidad)
+	{
+		return version.get().buscarLibrosTexto(consulta, todasLasPalabras, cantidad);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibrosAutor(String)
+	 */
+	public List<Libro> buscarLibrosAutor(String cadenaAutor)
+	{
+		return version.get().buscarLibrosAutor(cadenaAutor);
+	}
+
+	/**
+	 * Ver Libreria.buscarCategoriasAutor(String)
+	 */
+	public List<Categoria> buscarCategoriasAutor(String nombreAutor)
+	{
+		return version.get().buscarCategoriasAutor(nombreAutor);
+	}
+
+	/**
+	 * Ver Libreria.calificacionPromedio()
+	 */
+	public double calificacionPromedio()
+	{
+		return version.get().calificacionPromedio();
+	}
+
+	/**
+	 * Ver Libreria.categoriaConMasLibros()
+	 */
+	public Categoria categoriaConMasLibros()
+	{
+		return version.get().categoriaConMasLibros();
+	}
+
+	/**
+	 * Ver Libreria.categoriaConMejoresLibros()
+	 */
+	public Categoria categoriaConMejoresLibros()
+	{
+		return version.get().categoriaConMejoresLibros();
+	}
+
+	/**
+	 * Ver Libreria.contarLibrosSinPortada()
+	 */
+	public int contarLibrosSinPortada()
+	{
+		return version.get().contarLibrosSinPortada();
+	}
+
+	/**
+	 * Ver Libreria.hayAutorEnVariasCategorias()
+	 */
+	public boolean hayAutorEnVariasCategorias()
+	{
+		return version.get().hayAutorEnVariasCategorias();
+	}
+
+	/**
+	 * Ver Libreria.mejoresLibros(int)
+	 */
+	public ArrayList<Libro> mejoresLibros(int cantidad)
+	{
+		return version.get().mejoresLibros(cantidad);
+	}
+
+	/**
+	 * Ver Libreria.mejoresLibros(String, int)
+	 */
+	public ArrayList<Libro> mejoresLibros(String nombreCategoria, int cantidad)
+	{
+		return version.get().mejoresLibros(nombreCategoria, cantidad);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibrosCalificacion(double, double)
+	 */
+	public List<Libro> buscarLibrosCalificacion(double minima, double maxima)
+	{
+		return version.get().buscarLibrosCalificacion(minima, maxima);
+	}
+
+	/**
+	 * Ver Libreria.buscarLibrosCalificacion(String, double, double)
+	 */
+	public List<Libro> buscarLibrosCalificacion(String nombreCategoria, double minima, double maxima)
+	{
+		return version.get().buscarLibrosCalificacion(nombreCategoria, minima, maxima);
+	}
+
+	/**
+	 * Ver Libreria.contarLibrosCalificacion(double, double)
+	 */
+	public int contarLibrosCalificacion(double minima, double maxima)
+	{
+		return version.get().contarLibrosCalificacion(minima, maxima);
+	}
+
+	/**
+	 * Ver Libreria.contarLibrosCalificacion(String, double, double)
+	 */
+	public int contarLibrosCalificacion(String nombreCategoria, double minima, double maxima)
+	{
+		return version.get().contarLibrosCalificacion(nombreCategoria, minima, maxima);
+	}
+
+	// ************************************************************************
+	// Modificaciones
+	// ************************************************************************
+
+	/**
+	 * Borra los libros de los autores indicados y publica la nueva versin. Ver
+	 * Libreria.borrarLibros(String).
+	 *
+	 * @param autores Los nombres (o partes de los nombres) de los autores,
+	 *                separados por comas
+	 * @return La cantidad de libros que se retiraron del catlogo
+	 * @throws Exception Se lanza esta excepcin si alguno de los autores no tiene
+	 *                   libros. En ese caso no se publica una nueva versin.
+	 */
+	public int borrarLibros(String autores) throws Exception
+	{
+		int removidos = 0;
+		for (int cantidad : borrarLibrosPorAutor(autores).values())
+		{
+			removidos += cantidad;
+		}
+		return removidos;
+	}
+
+	/**
+	 * Borra los libros de los autores indicados y publica la nueva versin. Ver
+	 * Libreria.borrarLibrosPorAutor(String).
+	 *
+	 * @param autores Los nombres (o partes de los nombres) de los autores,
+	 *                separados por comas
+	 * @return Un mapa con la cantidad de libros retirados por cada autor
+	 * @throws Exception Se lanza esta excepcin si alguno de los autores no tiene
+	 *                   libros. En ese caso no se publica una nueva versin.
+	 */
+	public LinkedHashMap<String, Integer> borrarLibrosPorAutor(String autores) throws Exception
+	{
+		synchronized (candadoEscritura)
+		{
+			Libreria copia = version.get().derivar();
+			LinkedHashMap<String, Integer> reporte = copia.borrarLibrosPorAutor(autores);
+			publicar(copia);
+			return reporte;
+		}
+	}
+
+	/**
+	 * Le cambia el nombre a una categora y publica la nueva versin. Ver
+	 * Libreria.cambioNombre(Categoria, String).
+	 *
+	 * @param categoria La categora que se va a renombrar. Puede ser de una
+	 *                  versin anterior: en ese caso se busca por su nombre.
+	 * @param nombre    El nuevo nombre de la categora
+	 * @return true si se cambi el nombre; false si el nombre ya exista o si la
+	 *         categora ya no existe
+	 */
+	public boolean cambioNombre(Categoria categoria, String nombre)
+	{
+		synchronized (candadoEscritura)
+		{
+			Libreria actual = version.get();
+			Libreria copia = actual.derivar();
+			Categoria equivalente = buscarEquivalente(categoria, actual, copia);
+			if (equivalente == null || !copia.cambioNombre(equivalente, nombre))
+			{
+				return false;
+			}
+			publicar(copia);
+			return true;
+		}
+	}
+
+	/**
+	 * Busca en la copia la categora que corresponde a una categora de la
+	 * versin actual o, si no es de la versin actual, la categora con su mismo
+	 * nombre
+	 */
+	private Categoria buscarEquivalente(Categoria categoria, Libreria actual, Libreria copia)
+	{
+		Categoria[] originales = actual.darCategorias();
+		for (int i = 0; i < originales.length; i++)
+		{
+			if (originales[i] == categoria)
+			{
+				return copia.darCategorias()[i];
+			}
+		}
+		return copia.buscarExistencia(categoria.darNombre());
+	}
+
+	/**
+	 * Prepara una versin modificada para las consultas y la publica. Se debe
+	 * invocar con el candado de escritura.
+	 */
+	private void publicar(Libreria nueva)
+	{
+		nueva.prepararLecturas();
+		version.set(nueva);
+	}
+}
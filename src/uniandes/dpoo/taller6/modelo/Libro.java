@@ -35,6 +35,13 @@ public class Libro
 	 */
 	private Imagen portada;
 
+	/**
+	 * Posicin que ocupaba el libro en el catlogo cuando se carg la librera. Se
+	 * usa para devolver en el orden del catlogo los libros que se encuentran con
+	 * los ndices de la librera.
+	 */
+	private int consecutivo;
+
 	// ************************************************************************
 	// Constructores
 	// ************************************************************************
@@ -126,9 +133,30 @@ public class Libro
 		return laPortada;
 	}
 
+	/**
+	 * Consulta la posicin que ocupaba el libro en el catlogo cuando se carg la
+	 * librera
+	 * 
+	 * @return consecutivo
+	 */
+	int darConsecutivo()
+	{
+		return consecutivo;
+	}
+
 	// ************************************************************************
 	// ************************************************************************
 
+	/**
+	 * Modifica la posicin del libro en el catlogo
+	 * 
+	 * @param elConsecutivo La posicin del libro en el catlogo
+	 */
+	void cambiarConsecutivo(int elConsecutivo)
+	{
+		this.consecutivo = elConsecutivo;
+	}
+
 	/**
 	 * Modifica la portada del libro
 	 * 
@@ -0,0 +1,237 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Esta clase lleva las mtricas de latencia de las operaciones de todas las
+ * libreras y el uso de sus cachs de consultas, y las publica por JMX.
+ *
+ * Las mtricas estn activas a menos que se inicie la mquina virtual con
+ * -Dtaller6.metricas=false. Como esa decisin queda en una constante, cuando
+ * estn apagadas el compilador elimina por completo el cdigo de medicin.
+ */
+public class MetricasLibreria implements MetricasLibreriaMXBean
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Indica si se estn midiendo las operaciones
+	 */
+	public static final boolean ACTIVAS = !"false".equalsIgnoreCase(System.getProperty("taller6.metricas"));
+
+	/**
+	 * El nombre con el que se publican las mtricas por JMX
+	 */
+	public static final String NOMBRE_JMX = "uniandes.dpoo.taller6:type=MetricasLibreria";
+
+	/**
+	 * La nica instancia de la clase
+	 */
+	private static final MetricasLibreria INSTANCIA = new MetricasLibreria();
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Un histograma por cada operacin, en el orden de la enumeracin
+	 */
+	private final HistogramaLatencia[] histogramas;
+
+	/**
+	 * Los contadores de uso de las cachs de consultas
+	 */
+	private final LongAdder aciertosCache = new LongAdder();
+
+	private final LongAdder fallosCache = new LongAdder();
+
+	private final LongAdder invalidacionesCache = new LongAdder();
+
+	private final LongAdder expulsionesCache = new LongAdder();
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	static
+	{
+		if (ACTIVAS)
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCIA, new ObjectName(NOMBRE_JMX));
+			}
+			catch (JMException e)
+			{
+				// Sin JMX las mtricas se siguen pudiendo consultar con darInstancia
+			}
+		}
+	}
+
+	private MetricasLibreria()
+	{
+		histogramas = new HistogramaLatencia[Operacion.values().length];
+		for (int i = 0; i < histogramas.length; i++)
+		{
+			histogramas[i] = new HistogramaLatencia();
+		}
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Retorna la instancia donde se acumulan las mtricas
+	 *
+	 * @return La instancia
+	 */
+	public static MetricasLibreria darInstancia()
+	{
+		return INSTANCIA;
+	}
+
+	/**
+	 * Marca el inicio de una operacin
+	 *
+	 * @return El instante de inicio, que se le debe pasar a registrar
+	 */
+	static long iniciar()
+	{
+		return ACTIVAS ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Registra la latencia de una operacin que empez en el instante indicado
+	 *
+	 * @param operacion La operacin
+	 * @param inicio    El instante que retorn iniciar
+	 */
+	static void registrar(Operacion operacion, long inicio)
+	{
+		if (ACTIVAS)
+		{
+			INSTANCIA.histogramas[operacion.ordinal()].registrar(System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Registra una consulta a una cach de consultas
+	 *
+	 * @param acierto Indica si la consulta se respondi con un resultado guardado
+	 */
+	static void registrarConsultaCache(boolean acierto)
+	{
+		if (ACTIVAS)
+		{
+			(acierto ? INSTANCIA.aciertosCache : INSTANCIA.fallosCache).increment();
+		}
+	}
+
+	/**
+	 * Registra los resultados que se descartaron de una cach de consultas porque
+	 * se retiraron libros
+	 *
+	 * @param cantidad La cantidad de resultados descartados
+	 */
+	static void registrarInvalidacionesCache(int cantidad)
+	{
+		if (ACTIVAS)
+		{
+			INSTANCIA.invalidacionesCache.add(cantidad);
+		}
+	}
+
+	/**
+	 * Registra un resultado que se descart de una cach de consultas porque
+	 * estaba llena
+	 */
+	static void registrarExpulsionCache()
+	{
+		if (ACTIVAS)
+		{
+			INSTANCIA.expulsionesCache.increment();
+		}
+	}
+
+	/**
+	 * Retorna el resumen de latencias de una operacin
+	 *
+	 * @param operacion La operacin
+	 * @return El resumen
+	 */
+	public ResumenLatencia darResumen(Operacion operacion)
+	{
+		return histogramas[operacion.ordinal()].resumir();
+	}
+
+	/**
+	 * Retorna el resumen del uso de las cachs de consultas
+	 *
+	 * @return El resumen
+	 */
+	public ResumenCache darResumenCache()
+	{
+		return new ResumenCache(aciertosCache.sum(), fallosCache.sum(), invalidacionesCache.sum(),
+				expulsionesCache.sum());
+	}
+
+	@Override
+	public ResumenCache getCache()
+	{
+		return darResumenCache();
+	}
+
+	@Override
+	public Map<String, ResumenLatencia> getOperaciones()
+	{
+		TreeMap<String, ResumenLatencia> resumenes = new TreeMap<String, ResumenLatencia>();
+		for (Operacion operacion : Operacion.values())
+		{
+			ResumenLatencia resumen = darResumen(operacion);
+			if (resumen.getCantidad() > 0)
+			{
+				resumenes.put(operacion.name(), resumen);
+			}
+		}
+		return resumenes;
+	}
+
+	@Override
+	public void reiniciar()
+	{
+		for (HistogramaLatencia histograma : histogramas)
+		{
+			histograma.reiniciar();
+		}
+		aciertosCache.reset();
+		fallosCache.reset();
+		invalidacionesCache.reset();
+		expulsionesCache.reset();
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Las operaciones que se miden
+	 */
+	public enum Operacion
+	{
+		CARGAR_CATEGORIAS, CARGAR_CATALOGO, CARGAR_INSTANTANEA, ESCRIBIR_INSTANTANEA, CONSTRUIR_INDICES,
+		CONSTRUIR_INDICE_TEXTO, CONSTRUIR_INDICE_APROXIMADO, BUSCAR_EXISTENCIA, CAMBIO_NOMBRE, BORRAR_LIBROS,
+		DAR_LIBROS, BUSCAR_LIBRO, BUSCAR_LIBROS, BUSCAR_LIBROS_AUTOR, BUSCAR_CATEGORIAS_AUTOR, CALIFICACION_PROMEDIO,
+		CATEGORIA_MAS_LIBROS, CATEGORIA_MEJORES_LIBROS, CONTAR_LIBROS_SIN_PORTADA, HAY_AUTOR_EN_VARIAS_CATEGORIAS,
+		MEJORES_LIBROS, MEJORES_LIBROS_CATEGORIA, BUSCAR_LIBROS_CALIFICACION, CONTAR_LIBROS_CALIFICACION,
+		BUSCAR_LIBROS_APROXIMADOS, BUSCAR_LIBROS_TEXTO
+	}
+}
@@ -0,0 +1,31 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.Map;
+
+/**
+ * Interfaz con la que se publican por JMX las mtricas de las operaciones y de
+ * las cachs de consultas de las libreras, con el nombre
+ * uniandes.dpoo.taller6:type=MetricasLibreria
+ */
+public interface MetricasLibreriaMXBean
+{
+	/**
+	 * Retorna el resumen de latencias de cada operacin que se ha ejecutado al
+	 * menos una vez
+	 *
+	 * @return Un mapa con el resumen de cada operacin segn su nombre
+	 */
+	Map<String, ResumenLatencia> getOperaciones();
+
+	/**
+	 * Retorna el resumen del uso de las cachs de consultas
+	 *
+	 * @return El resumen
+	 */
+	ResumenCache getCache();
+
+	/**
+	 * Borra todas las latencias y los contadores de las cachs
+	 */
+	void reiniciar();
+}
@@ -0,0 +1,25 @@
+package uniandes.dpoo.taller6.modelo;
+
+/**
+ * Esta interfaz la implementan los objetos que quieren seguir el avance de la
+ * carga de una librera y, si es necesario, cancelarla.
+ *
+ * Los mtodos se invocan desde el hilo que est cargando la librera.
+ */
+public interface MonitorCarga
+{
+	/**
+	 * Informa cuntos bytes del archivo de libros se han procesado
+	 *
+	 * @param bytesProcesados Cantidad de bytes procesados hasta el momento
+	 * @param bytesTotales    Tamao total del archivo de libros
+	 */
+	void avanzar(long bytesProcesados, long bytesTotales);
+
+	/**
+	 * Consulta si se debe cancelar la carga
+	 *
+	 * @return true si la carga se debe detener lo antes posible
+	 */
+	boolean cancelado();
+}
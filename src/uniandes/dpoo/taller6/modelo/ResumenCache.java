@@ -0,0 +1,90 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Resumen del uso de las cachs de consultas de las libreras
+ */
+public class ResumenCache
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final long aciertos;
+
+	private final long fallos;
+
+	private final long invalidaciones;
+
+	private final long expulsiones;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	@ConstructorProperties({ "aciertos", "fallos", "invalidaciones", "expulsiones" })
+	public ResumenCache(long aciertos, long fallos, long invalidaciones, long expulsiones)
+	{
+		this.aciertos = aciertos;
+		this.fallos = fallos;
+		this.invalidaciones = invalidaciones;
+		this.expulsiones = expulsiones;
+	}
+
+	// ************************************************************************
+	// Mtodos para consultar los atributos
+	// ************************************************************************
+
+	// Los nombres siguen la convencin de JavaBeans para que JMX los publique
+
+	/**
+	 * Las consultas que se respondieron con un resultado guardado
+	 */
+	public long getAciertos()
+	{
+		return aciertos;
+	}
+
+	/**
+	 * Las consultas que se tuvieron que calcular
+	 */
+	public long getFallos()
+	{
+		return fallos;
+	}
+
+	/**
+	 * Los resultados que se descartaron porque se retiraron libros de los que
+	 * dependan
+	 */
+	public long getInvalidaciones()
+	{
+		return invalidaciones;
+	}
+
+	/**
+	 * Los resultados que se descartaron porque la cach estaba llena
+	 */
+	public long getExpulsiones()
+	{
+		return expulsiones;
+	}
+
+	/**
+	 * La fraccin de las consultas que se respondieron con un resultado guardado,
+	 * o 0 si no se ha hecho ninguna
+	 */
+	public double getTasaAciertos()
+	{
+		long consultas = aciertos + fallos;
+		return consultas == 0 ? 0 : aciertos / (double) consultas;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "aciertos=" + aciertos + " fallos=" + fallos + " tasa=" + getTasaAciertos() + " invalidaciones="
+				+ invalidaciones + " expulsiones=" + expulsiones;
+	}
+}
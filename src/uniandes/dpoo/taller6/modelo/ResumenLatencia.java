@@ -0,0 +1,85 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Resumen de las latencias registradas para una operacin. Todos los tiempos
+ * estn en nanosegundos.
+ */
+public class ResumenLatencia
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private final long cantidad;
+
+	private final long promedioNanos;
+
+	private final long p50Nanos;
+
+	private final long p99Nanos;
+
+	private final long p999Nanos;
+
+	private final long maximoNanos;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	@ConstructorProperties({ "cantidad", "promedioNanos", "p50Nanos", "p99Nanos", "p999Nanos", "maximoNanos" })
+	public ResumenLatencia(long cantidad, long promedioNanos, long p50Nanos, long p99Nanos, long p999Nanos,
+			long maximoNanos)
+	{
+		this.cantidad = cantidad;
+		this.promedioNanos = promedioNanos;
+		this.p50Nanos = p50Nanos;
+		this.p99Nanos = p99Nanos;
+		this.p999Nanos = p999Nanos;
+		this.maximoNanos = maximoNanos;
+	}
+
+	// ************************************************************************
+	// Mtodos para consultar los atributos
+	// ************************************************************************
+
+	// Los nombres siguen la convencin de JavaBeans para que JMX los publique
+
+	public long getCantidad()
+	{
+		return cantidad;
+	}
+
+	public long getPromedioNanos()
+	{
+		return promedioNanos;
+	}
+
+	public long getP50Nanos()
+	{
+		return p50Nanos;
+	}
+
+	public long getP99Nanos()
+	{
+		return p99Nanos;
+	}
+
+	public long getP999Nanos()
+	{
+		return p999Nanos;
+	}
+
+	public long getMaximoNanos()
+	{
+		return maximoNanos;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "n=" + cantidad + " p50=" + p50Nanos + "ns p99=" + p99Nanos + "ns p999=" + p999Nanos + "ns max="
+				+ maximoNanos + "ns";
+	}
+}
@@ -0,0 +1,291 @@
+package uniandes.dpoo.taller6.modelo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Esta clase encuentra los libros con mejor calificacin del catlogo completo
+ * o de una categora, sin ordenar todos los libros.
+ *
+ * Para encontrar los k mejores se recorre la lista una vez manteniendo un
+ * montculo con los k mejores vistos hasta el momento. Las listas grandes se
+ * dividen en partes que se recorren en paralelo y cuyos resultados se mezclan.
+ *
+ * Cada versin de la librera tiene su selector. Los resultados se guardan
+ * mientras no cambien los libros de la categora correspondiente (o del
+ * catlogo, para el resultado global), y el selector de una versin nueva
+ * empieza con los resultados que siguen vigentes (ver derivar). Slo se guardan
+ * los CANTIDAD_GUARDADA mejores, que sirven para cualquier consulta de esa
+ * cantidad o menos; las consultas de ms libros se calculan cada vez, para que
+ * una consulta grande no deje guardada una lista del tamao del catlogo.
+ */
+class SelectorMejores
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * El orden de los resultados: primero la mayor calificacin y, en caso de
+	 * empate, el ttulo y luego la posicin en el catlogo
+	 */
+	static final Comparator<Libro> ORDEN = Comparator.comparingDouble(Libro::darCalificacion).reversed()
+			.thenComparing(Libro::darTitulo).thenComparingInt(Libro::darConsecutivo);
+
+	/**
+	 * Cantidad de libros a partir de la cual una lista se divide para recorrerse
+	 * en paralelo
+	 */
+	private static final int UMBRAL_PARALELO = 1 << 15;
+
+	/**
+	 * La cantidad de libros de los resultados que se guardan
+	 */
+	static final int CANTIDAD_GUARDADA = 50;
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * Los resultados vigentes de cada categora. Las llaves se comparan por
+	 * identidad porque Categoria no redefine equals.
+	 */
+	private final ConcurrentHashMap<Categoria, Seleccion> porCategoria = new ConcurrentHashMap<Categoria, Seleccion>();
+
+	/**
+	 * El resultado vigente para el catlogo completo. Es null si no hay ninguno.
+	 */
+	private volatile Seleccion catalogo;
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Retorna los mejores libros del catlogo
+	 *
+	 * @param libros   Todos los libros del catlogo
+	 * @param cantidad La cantidad mxima de libros que se quieren
+	 * @return Una lista nueva con los mejores libros, en orden
+	 */
+	ArrayList<Libro> mejores(List<Libro> libros, int cantidad)
+	{
+		Seleccion actual = catalogo;
+		if (actual == null || !actual.sirvePara(cantidad))
+		{
+			if (cantidad > CANTIDAD_GUARDADA)
+			{
+				return seleccionar(libros, cantidad);
+			}
+			actual = new Seleccion(seleccionar(libros, CANTIDAD_GUARDADA), CANTIDAD_GUARDADA);
+			catalogo = actual;
+		}
+		return actual.primeros(cantidad);
+	}
+
+	/**
+	 * Retorna los mejores libros de una categora
+	 *
+	 * @param categoria La categora
+	 * @param cantidad  La cantidad mxima de libros que se quieren
+	 * @return Una lista nueva con los mejores libros de la categora, en orden
+	 */
+	ArrayList<Libro> mejores(Categoria categoria, int cantidad)
+	{
+		Seleccion actual = porCategoria.get(categoria);
+		if (actual == null || !actual.sirvePara(cantidad))
+		{
+			if (cantidad > CANTIDAD_GUARDADA)
+			{
+				return seleccionar(categoria.darLibros(), cantidad);
+			}
+			actual = new Seleccion(seleccionar(categoria.darLibros(), CANTIDAD_GUARDADA), CANTIDAD_GUARDADA);
+			porCategoria.put(categoria, actual);
+		}
+		return actual.primeros(cantidad);
+	}
+
+	/**
+	 * Construye el selector de una versin nueva de la librera con los
+	 * resultados de este selector que siguen vigentes: los de las categoras que
+	 * no cambiaron y el del catlogo, si ninguno de sus libros se retir. Este
+	 * selector no cambia.
+	 *
+	 * @param cambiadas Las categoras de esta versin cuyos libros cambiaron o
+	 *                  que se reemplazaron en la versin nueva
+	 * @param libros    El catlogo de la versin nueva
+	 * @return El selector de la versin nueva
+	 */
+	SelectorMejores derivar(Set<Categoria> cambiadas, CatalogoLibros libros)
+	{
+		SelectorMejores nuevo = new SelectorMejores();
+		for (Map.Entry<Categoria, Seleccion> entrada : porCategoria.entrySet())
+		{
+			if (!cambiadas.contains(entrada.getKey()))
+			{
+				nuevo.porCategoria.put(entrada.getKey(), entrada.getValue());
+			}
+		}
+
+		// Si no se retir ninguno de los mejores, siguen siendo los mejores
+		Seleccion actual = catalogo;
+		if (actual != null)
+		{
+			ArrayList<Libro> vigentes = libros.vigentes(actual.libros);
+			if (vigentes.size() == actual.libros.size())
+			{
+				nuevo.catalogo = new Seleccion(vigentes, actual.cantidad);
+			}
+		}
+		return nuevo;
+	}
+
+	/**
+	 * Encuentra los mejores libros de una lista
+	 *
+	 * @param libros   Los libros
+	 * @param cantidad La cantidad mxima de libros que se quieren
+	 * @return Los mejores libros, en orden
+	 */
+	static ArrayList<Libro> seleccionar(List<Libro> libros, int cantidad)
+	{
+		if (cantidad <= 0 || libros.isEmpty())
+		{
+			return new ArrayList<Libro>();
+		}
+		if (libros.size() < 2 * UMBRAL_PARALELO)
+		{
+			return seleccionarEnSecuencia(libros, cantidad);
+		}
+		return new TareaSeleccion(libros, cantidad).invoke();
+	}
+
+	/**
+	 * Recorre la lista una vez con un montculo acotado. La cima del montculo es
+	 * el peor de los libros seleccionados, que es el que sale cuando llega uno
+	 * mejor.
+	 */
+	private static ArrayList<Libro> seleccionarEnSecuencia(List<Libro> libros, int cantidad)
+	{
+		int limite = Math.min(cantidad, libros.size());
+		PriorityQueue<Libro> monticulo = new PriorityQueue<Libro>(limite + 1, ORDEN.reversed());
+		for (Libro libro : libros)
+		{
+			if (monticulo.size() < limite)
+			{
+				monticulo.add(libro);
+			}
+			else if (ORDEN.compare(libro, monticulo.peek()) < 0)
+			{
+				monticulo.poll();
+				monticulo.add(libro);
+			}
+		}
+
+		Libro[] ordenados = new Libro[monticulo.size()];
+		for (int i = ordenados.length - 1; i >= 0; i--)
+		{
+			ordenados[i] = monticulo.poll();
+		}
+		ArrayList<Libro> resultado = new ArrayList<Libro>(ordenados.length);
+		for (Libro libro : ordenados)
+		{
+			resultado.add(libro);
+		}
+		return resultado;
+	}
+
+	/**
+	 * Mezcla dos listas ordenadas y conserva slo los primeros libros
+	 */
+	private static ArrayList<Libro> mezclar(ArrayList<Libro> a, ArrayList<Libro> b, int cantidad)
+	{
+		ArrayList<Libro> mezcla = new ArrayList<Libro>(Math.min(cantidad, a.size() + b.size()));
+		int i = 0;
+		int j = 0;
+		while (mezcla.size() < cantidad && (i < a.size() || j < b.size()))
+		{
+			if (j >= b.size() || (i < a.size() && ORDEN.compare(a.get(i), b.get(j)) <= 0))
+				mezcla.add(a.get(i++));
+			else
+				mezcla.add(b.get(j++));
+		}
+		return mezcla;
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Un resultado guardado: los mejores libros para la cantidad con la que se
+	 * calcul
+	 */
+	private static final class Seleccion
+	{
+		private final ArrayList<Libro> libros;
+
+		private final int cantidad;
+
+		Seleccion(ArrayList<Libro> libros, int cantidad)
+		{
+			this.libros = libros;
+			this.cantidad = cantidad;
+		}
+
+		/**
+		 * Indica si el resultado sirve para una consulta: si se calcul para ms
+		 * libros o si ya incluye todos los libros de la lista
+		 */
+		boolean sirvePara(int otraCantidad)
+		{
+			return otraCantidad <= cantidad || libros.size() < cantidad;
+		}
+
+		ArrayList<Libro> primeros(int otraCantidad)
+		{
+			return new ArrayList<Libro>(libros.subList(0, Math.min(otraCantidad, libros.size())));
+		}
+	}
+
+	/**
+	 * Divide una lista grande en mitades, selecciona los mejores de cada mitad en
+	 * paralelo y mezcla los resultados
+	 */
+	private static final class TareaSeleccion extends RecursiveTask<ArrayList<Libro>>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<Libro> libros;
+
+		private final int cantidad;
+
+		TareaSeleccion(List<Libro> libros, int cantidad)
+		{
+			this.libros = libros;
+			this.cantidad = cantidad;
+		}
+
+		@Override
+		protected ArrayList<Libro> compute()
+		{
+			if (libros.size() <= UMBRAL_PARALELO)
+			{
+				return seleccionarEnSecuencia(libros, cantidad);
+			}
+			int mitad = libros.size() / 2;
+			TareaSeleccion izquierda = new TareaSeleccion(libros.subList(0, mitad), cantidad);
+			TareaSeleccion derecha = new TareaSeleccion(libros.subList(mitad, libros.size()), cantidad);
+			izquierda.fork();
+			ArrayList<Libro> mejoresDerecha = derecha.compute();
+			return mezclar(izquierda.join(), mejoresDerecha, cantidad);
+		}
+	}
+}
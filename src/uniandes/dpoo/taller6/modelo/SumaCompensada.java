@@ -0,0 +1,88 @@
+package uniandes.dpoo.taller6.modelo;
+
+/**
+ * Esta clase es una suma de valores a la que tambin se le pueden restar
+ * valores sin que los errores de redondeo se acumulen.
+ *
+ * Usa la suma compensada de Kahan (en la variante de Neumaier): junto con la
+ * suma se guarda la parte de cada operacin que se perdi por redondeo, y esa
+ * parte se agrega al consultar el valor.
+ */
+class SumaCompensada
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	private double suma;
+
+	/**
+	 * Lo que se ha perdido por redondeo en las operaciones sobre la suma
+	 */
+	private double compensacion;
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Agrega un valor a la suma
+	 *
+	 * @param valor El valor
+	 */
+	void sumar(double valor)
+	{
+		double total = suma + valor;
+		if (Math.abs(suma) >= Math.abs(valor))
+		{
+			compensacion += (suma - total) + valor;
+		}
+		else
+		{
+			compensacion += (valor - total) + suma;
+		}
+		suma = total;
+	}
+
+	/**
+	 * Resta de la suma un valor que se haba agregado
+	 *
+	 * @param valor El valor
+	 */
+	void restar(double valor)
+	{
+		sumar(-valor);
+	}
+
+	/**
+	 * Vuelve a dejar la suma en 0
+	 */
+	void reiniciar()
+	{
+		suma = 0;
+		compensacion = 0;
+	}
+
+	/**
+	 * Construye una suma nueva con el mismo valor, que cambia por separado
+	 *
+	 * @return La copia
+	 */
+	SumaCompensada copiar()
+	{
+		SumaCompensada copia = new SumaCompensada();
+		copia.suma = suma;
+		copia.compensacion = compensacion;
+		return copia;
+	}
+
+	/**
+	 * Retorna el valor de la suma
+	 *
+	 * @return La suma
+	 */
+	double darValor()
+	{
+		return suma + compensacion;
+	}
+}
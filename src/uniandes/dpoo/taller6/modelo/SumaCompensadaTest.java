@@ -0,0 +1,54 @@
+package uniandes.dpoo.taller6.modelo;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Verifica que las sumas de calificaciones no se desven despus de muchas
+ * restas
+ */
+class SumaCompensadaTest {
+
+	@Test
+	void testRestarNoAcumulaErrores() {
+		Random aleatorio = new Random(3);
+		SumaCompensada suma = new SumaCompensada();
+		ArrayList<Double> valores = new ArrayList<Double>();
+		for (int i = 0; i < 100000; i++) {
+			double valor = aleatorio.nextInt(50) / 10.0 + aleatorio.nextDouble() / 7;
+			valores.add(valor);
+			suma.sumar(valor);
+		}
+		Collections.shuffle(valores, aleatorio);
+		while (valores.size() > 10) {
+			suma.restar(valores.remove(valores.size() - 1));
+		}
+
+		BigDecimal exacta = BigDecimal.ZERO;
+		for (double valor : valores) {
+			exacta = exacta.add(new BigDecimal(valor));
+		}
+		assertEquals(exacta.doubleValue(), suma.darValor(), 1e-12);
+	}
+
+	@Test
+	void testCategoriaVaciaNoTienePromedio() {
+		Categoria categoria = new Categoria("Novela", true);
+		HashSet<String> titulos = new HashSet<String>();
+		for (int i = 0; i < 20; i++) {
+			new Libro("Libro " + i, "Autor", i / 7.0, categoria);
+			titulos.add("Libro " + i);
+		}
+		categoria.removerLibros(Collections.singleton("Libro 3"));
+		assertEquals(19, categoria.contarLibrosEnCategoria());
+		categoria.removerLibros(titulos);
+		assertTrue(Double.isNaN(categoria.calificacionPromedio()));
+	}
+}
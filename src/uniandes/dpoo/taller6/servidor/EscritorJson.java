@@ -0,0 +1,172 @@
+package uniandes.dpoo.taller6.servidor;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import uniandes.dpoo.taller6.modelo.Categoria;
+import uniandes.dpoo.taller6.modelo.Imagen;
+import uniandes.dpoo.taller6.modelo.Libro;
+
+/**
+ * Esta clase escribe en formato JSON la informacin de los libros y las
+ * categoras directamente sobre un Writer, sin construir el documento completo
+ * en memoria.
+ */
+class EscritorJson
+{
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * El destino del texto
+	 */
+	private Writer salida;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye un escritor sobre el destino indicado
+	 *
+	 * @param laSalida El destino del texto
+	 */
+	EscritorJson(Writer laSalida)
+	{
+		salida = laSalida;
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Escribe texto sin modificarlo
+	 */
+	EscritorJson escribir(String texto) throws IOException
+	{
+		salida.write(texto);
+		return this;
+	}
+
+	/**
+	 * Escribe el nombre de un campo seguido de dos puntos
+	 */
+	EscritorJson campo(String nombre) throws IOException
+	{
+		cadena(nombre);
+		salida.write(':');
+		return this;
+	}
+
+	/**
+	 * Escribe una cadena entre comillas, escapando los caracteres especiales. Si
+	 * la cadena es null, escribe null.
+	 */
+	EscritorJson cadena(String texto) throws IOException
+	{
+		if (texto == null)
+		{
+			salida.write("null");
+			return this;
+		}
+		salida.write('"');
+		for (int i = 0; i < texto.length(); i++)
+		{
+			char c = texto.charAt(i);
+			switch (c)
+			{
+				case '"':
+					salida.write("\\\"");
+					break;
+				case '\\':
+					salida.write("\\\\");
+					break;
+				case '\n':
+					salida.write("\\n");
+					break;
+				case '\r':
+					salida.write("\\r");
+					break;
+				case '\t':
+					salida.write("\\t");
+					break;
+				default:
+					if (c < 0x20)
+					{
+						salida.write(String.format("\\u%04x", (int) c));
+					}
+					else
+					{
+						salida.write(c);
+					}
+			}
+		}
+		salida.write('"');
+		return this;
+	}
+
+	/**
+	 * Escribe un nmero. Los valores que no son finitos se escriben como null.
+	 */
+	EscritorJson numero(double valor) throws IOException
+	{
+		salida.write(Double.isFinite(valor) ? Double.toString(valor) : "null");
+		return this;
+	}
+
+	/**
+	 * Escribe un nmero entero
+	 */
+	EscritorJson numero(long valor) throws IOException
+	{
+		salida.write(Long.toString(valor));
+		return this;
+	}
+
+	/**
+	 * Escribe un valor booleano
+	 */
+	EscritorJson booleano(boolean valor) throws IOException
+	{
+		salida.write(valor ? "true" : "false");
+		return this;
+	}
+
+	/**
+	 * Escribe el nombre de una categora, o null si la categora es null
+	 */
+	EscritorJson categoria(Categoria categoria) throws IOException
+	{
+		return cadena(categoria == null ? null : categoria.darNombre());
+	}
+
+	/**
+	 * Escribe un objeto con la informacin de un libro
+	 */
+	EscritorJson libro(Libro libro) throws IOException
+	{
+		salida.write('{');
+		campo("titulo").cadena(libro.darTitulo()).escribir(",");
+		campo("autor").cadena(libro.darAutor()).escribir(",");
+		campo("calificacion").numero(libro.darCalificacion()).escribir(",");
+		campo("categoria").categoria(libro.darCategoria()).escribir(",");
+		campo("portada");
+		if (!libro.tienePortada())
+		{
+			salida.write("null");
+		}
+		else
+		{
+			Imagen portada = libro.darPortada();
+			salida.write('{');
+			campo("ruta").cadena(portada.darRutaArchivo()).escribir(",");
+			campo("ancho").numero(portada.darAncho()).escribir(",");
+			campo("alto").numero(portada.darAlto());
+			salida.write('}');
+		}
+		salida.write('}');
+		return this;
+	}
+}
@@ -0,0 +1,470 @@
+package uniandes.dpoo.taller6.servidor;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import uniandes.dpoo.taller6.modelo.Categoria;
+import uniandes.dpoo.taller6.modelo.Libreria;
+import uniandes.dpoo.taller6.modelo.LibreriaConcurrente;
+import uniandes.dpoo.taller6.modelo.Libro;
+
+/**
+ * Esta clase es un servidor HTTP que responde consultas sobre una librera en
+ * formato JSON, sin usar la interfaz grfica.
+ *
+ * Las consultas disponibles son (todas con el mtodo GET):
+ * <ul>
+ * <li>/libros/titulo?titulo=... : el primer libro con el ttulo indicado.</li>
+ * <li>/libros/autor?autor=...&desde=0&limite=100 : los libros cuyo autor
+ * contiene la cadena indicada.</li>
+ * <li>/libros/categoria?categoria=...&desde=0&limite=100 : los libros de una
+ * categora.</li>
+ * <li>/categorias/autor?autor=... : las categoras con libros del autor.</li>
+ * <li>/estadisticas : la informacin agregada del catlogo.</li>
+ * </ul>
+ *
+ * Las listas de libros se paginan con los parmetros 'desde' y 'limite', y se
+ * escriben a medida que se recorren. Cada solicitud se atiende en su propio
+ * hilo virtual cuando la mquina virtual los soporta; si no, se usa un grupo
+ * fijo de hilos.
+ */
+public class ServidorLibreria
+{
+	// ************************************************************************
+	// Constantes
+	// ************************************************************************
+
+	/**
+	 * Puerto en el que escucha el servidor si no se indica otro
+	 */
+	public static final int PUERTO_POR_DEFECTO = 8080;
+
+	/**
+	 * Cantidad de libros por pgina si no se indica el parmetro 'limite'
+	 */
+	public static final int LIMITE_POR_DEFECTO = 100;
+
+	/**
+	 * Cantidad mxima de libros por pgina
+	 */
+	public static final int LIMITE_MAXIMO = 10000;
+
+	/**
+	 * Cantidad mxima de conexiones que pueden esperar a ser aceptadas
+	 */
+	private static final int CONEXIONES_EN_ESPERA = 1024;
+
+	private static final String TIPO_JSON = "application/json; charset=utf-8";
+
+	// ************************************************************************
+	// Atributos
+	// ************************************************************************
+
+	/**
+	 * La librera sobre la que se hacen las consultas
+	 */
+	private LibreriaConcurrente libreria;
+
+	/**
+	 * El servidor HTTP del JDK
+	 */
+	private HttpServer servidor;
+
+	/**
+	 * Los hilos que atienden las solicitudes
+	 */
+	private ExecutorService ejecutor;
+
+	// ************************************************************************
+	// Constructores
+	// ************************************************************************
+
+	/**
+	 * Construye el servidor y lo asocia al puerto indicado, pero no lo inicia
+	 *
+	 * @param laLibreria La librera sobre la que se hacen las consultas
+	 * @param puerto     El puerto en el que escucha el servidor. Si es 0, se usa
+	 *                   cualquier puerto libre.
+	 * @throws IOException Se lanza esta excepcin si no se puede usar el puerto
+	 */
+	public ServidorLibreria(LibreriaConcurrente laLibreria, int puerto) throws IOException
+	{
+		libreria = laLibreria;
+		servidor = HttpServer.create(new InetSocketAddress(puerto), CONEXIONES_EN_ESPERA);
+		ejecutor = crearEjecutor();
+		servidor.setExecutor(ejecutor);
+
+		servidor.createContext("/libros/titulo", manejar(this::buscarLibro));
+		servidor.createContext("/libros/autor", manejar(this::buscarLibrosAutor));
+		servidor.createContext("/libros/categoria", manejar(this::darLibros));
+		servidor.createContext("/categorias/autor", manejar(this::buscarCategoriasAutor));
+		servidor.createContext("/estadisticas", manejar(this::darEstadisticas));
+	}
+
+	// ************************************************************************
+	// Mtodos
+	// ************************************************************************
+
+	/**
+	 * Empieza a atender solicitudes
+	 */
+	public void iniciar()
+	{
+		servidor.start();
+	}
+
+	/**
+	 * Deja de atender solicitudes
+	 *
+	 * @param segundosEspera Cantidad mxima de segundos que se espera a que
+	 *                       terminen las solicitudes en curso
+	 */
+	public void detener(int segundosEspera)
+	{
+		servidor.stop(segundosEspera);
+		ejecutor.shutdown();
+		try
+		{
+			ejecutor.awaitTermination(segundosEspera, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Retorna el puerto en el que escucha el servidor
+	 *
+	 * @return El puerto
+	 */
+	public int darPuerto()
+	{
+		return servidor.getAddress().getPort();
+	}
+
+	/**
+	 * Crea el ejecutor que atiende las solicitudes: un hilo virtual por solicitud
+	 * si la mquina virtual tiene hilos virtuales, o un grupo fijo de hilos en
+	 * caso contrario. El mtodo se busca por reflexin porque el proyecto compila
+	 * para una versin de Java que todava no los tiene.
+	 */
+	private static ExecutorService crearEjecutor()
+	{
+		try
+		{
+			Method metodo = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) metodo.invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			int hilos = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+			return Executors.newFixedThreadPool(hilos, tarea -> {
+				Thread hilo = new Thread(tarea, "servidor-libreria");
+				hilo.setDaemon(true);
+				return hilo;
+			});
+		}
+	}
+
+	// ************************************************************************
+	// Consultas
+	// ************************************************************************
+
+	/**
+	 * Responde con el primer libro que tiene el ttulo indicado, o con un error
+	 * 404 si no hay ninguno
+	 */
+	private void buscarLibro(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException
+	{
+		Libro libro = libreria.buscarLibro(requerir(parametros, "titulo"));
+		if (libro == null)
+		{
+			responderError(intercambio, 404, "No se encontr un libro con ese ttulo");
+			return;
+		}
+		StringWriter texto = new StringWriter();
+		new EscritorJson(texto).libro(libro);
+		responder(intercambio, 200, texto.toString());
+	}
+
+	/**
+	 * Responde con una pgina de los libros cuyo autor contiene la cadena
+	 * indicada
+	 */
+	private void buscarLibrosAutor(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException
+	{
+		String autor = requerir(parametros, "autor");
+		responderLibros(intercambio, parametros, libreria.buscarLibrosAutor(autor));
+	}
+
+	/**
+	 * Responde con una pgina de los libros de la categora indicada
+	 */
+	private void darLibros(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException
+	{
+		String categoria = requerir(parametros, "categoria");
+		responderLibros(intercambio, parametros, libreria.darVistaLibros(categoria));
+	}
+
+	/**
+	 * Responde con los nombres de las categoras que tienen libros del autor
+	 */
+	private void buscarCategoriasAutor(HttpExchange intercambio, HashMap<String, String> parametros)
+			throws IOException
+	{
+		List<Categoria> categorias = libreria.buscarCategoriasAutor(requerir(parametros, "autor"));
+		StringWriter texto = new StringWriter();
+		EscritorJson json = new EscritorJson(texto);
+		json.escribir("{").campo("categorias").escribir("[");
+		for (int i = 0; i < categorias.size(); i++)
+		{
+			if (i > 0)
+				json.escribir(",");
+			json.categoria(categorias.get(i));
+		}
+		json.escribir("]}");
+		responder(intercambio, 200, texto.toString());
+	}
+
+	/**
+	 * Responde con la informacin agregada del catlogo
+	 */
+	private void darEstadisticas(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException
+	{
+		// Todos los campos se calculan sobre la misma versin, para que no mezclen
+		// datos de antes y de despus de una modificacin
+		Libreria version = libreria.darVersion();
+		StringWriter texto = new StringWriter();
+		EscritorJson json = new EscritorJson(texto);
+		json.escribir("{");
+		json.campo("cantidadLibros").numero(version.darLibros().size()).escribir(",");
+		json.campo("calificacionPromedio").numero(version.calificacionPromedio()).escribir(",");
+		json.campo("categoriaConMasLibros").categoria(version.categoriaConMasLibros()).escribir(",");
+		json.campo("categoriaConMejoresLibros").categoria(version.categoriaConMejoresLibros()).escribir(",");
+		json.campo("librosSinPortada").numero(version.contarLibrosSinPortada()).escribir(",");
+		json.campo("hayAutorEnVariasCategorias").booleano(version.hayAutorEnVariasCategorias());
+		json.escribir("}");
+		responder(intercambio, 200, texto.toString());
+	}
+
+	// ************************************************************************
+	// Mtodos de apoyo
+	// ************************************************************************
+
+	/**
+	 * Escribe una pgina de una lista de libros. La lista debe ser de una versin
+	 * publicada, que no cambia: slo se recorre la pgina pedida, sin copiar la
+	 * lista. La respuesta se enva por partes a medida que se escriben los
+	 * libros, sin construir el documento completo en memoria.
+	 */
+	private void responderLibros(HttpExchange intercambio, HashMap<String, String> parametros, List<Libro> libros)
+			throws IOException
+	{
+		int desde = leerEntero(parametros, "desde", 0, 0, Integer.MAX_VALUE);
+		int limite = leerEntero(parametros, "limite", LIMITE_POR_DEFECTO, 0, LIMITE_MAXIMO);
+		int inicio = Math.min(desde, libros.size());
+		int fin = (int) Math.min((long) inicio + limite, libros.size());
+		List<Libro> pagina = libros.subList(inicio, fin);
+
+		intercambio.getResponseHeaders().set("Content-Type", TIPO_JSON);
+		intercambio.sendResponseHeaders(200, 0);
+		Writer salida = new BufferedWriter(new OutputStreamWriter(intercambio.getResponseBody(), StandardCharsets.UTF_8),
+				16 * 1024);
+		EscritorJson json = new EscritorJson(salida);
+		json.escribir("{");
+		json.campo("total").numero(libros.size()).escribir(",");
+		json.campo("desde").numero(inicio).escribir(",");
+		json.campo("limite").numero(limite).escribir(",");
+		json.campo("libros").escribir("[");
+		boolean primero = true;
+		for (Libro libro : pagina)
+		{
+			if (!primero)
+				json.escribir(",");
+			json.libro(libro);
+			primero = false;
+		}
+		json.escribir("]}");
+		salida.flush();
+	}
+
+	/**
+	 * Enva una respuesta completa con el texto indicado
+	 */
+	private static void responder(HttpExchange intercambio, int codigo, String texto) throws IOException
+	{
+		byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+		intercambio.getResponseHeaders().set("Content-Type", TIPO_JSON);
+		intercambio.sendResponseHeaders(codigo, bytes.length);
+		OutputStream cuerpo = intercambio.getResponseBody();
+		cuerpo.write(bytes);
+		cuerpo.flush();
+	}
+
+	/**
+	 * Enva una respuesta de error con un mensaje
+	 */
+	private static void responderError(HttpExchange intercambio, int codigo, String mensaje) throws IOException
+	{
+		StringWriter texto = new StringWriter();
+		new EscritorJson(texto).escribir("{").campo("error").cadena(mensaje).escribir("}");
+		responder(intercambio, codigo, texto.toString());
+	}
+
+	/**
+	 * Convierte una consulta en un HttpHandler que valida el mtodo, interpreta
+	 * los parmetros y siempre cierra el intercambio
+	 */
+	private static HttpHandler manejar(Consulta consulta)
+	{
+		return intercambio -> {
+			try
+			{
+				if (!"GET".equals(intercambio.getRequestMethod()))
+				{
+					intercambio.getResponseHeaders().set("Allow", "GET");
+					responderError(intercambio, 405, "Slo se acepta el mtodo GET");
+					return;
+				}
+				consulta.responder(intercambio, leerParametros(intercambio.getRequestURI().getRawQuery()));
+			}
+			catch (IllegalArgumentException e)
+			{
+				responderError(intercambio, 400, e.getMessage());
+			}
+			catch (RuntimeException e)
+			{
+				// Si ya se enviaron los encabezados, la respuesta slo se puede cortar
+				if (intercambio.getResponseCode() == -1)
+				{
+					responderError(intercambio, 500, "Error interno del servidor");
+				}
+			}
+			finally
+			{
+				intercambio.close();
+			}
+		};
+	}
+
+	/**
+	 * Interpreta los parmetros de la parte de consulta de una URL
+	 */
+	private static HashMap<String, String> leerParametros(String consulta)
+	{
+		HashMap<String, String> parametros = new HashMap<String, String>();
+		if (consulta == null || consulta.isEmpty())
+		{
+			return parametros;
+		}
+		for (String par : consulta.split("&"))
+		{
+			int igual = par.indexOf('=');
+			String nombre = igual < 0 ? par : par.substring(0, igual);
+			String valor = igual < 0 ? "" : par.substring(igual + 1);
+			parametros.putIfAbsent(URLDecoder.decode(nombre, StandardCharsets.UTF_8),
+					URLDecoder.decode(valor, StandardCharsets.UTF_8));
+		}
+		return parametros;
+	}
+
+	/**
+	 * Retorna el valor de un parmetro obligatorio
+	 *
+	 * @throws IllegalArgumentException Si el parmetro no est
+	 */
+	private static String requerir(HashMap<String, String> parametros, String nombre)
+	{
+		String valor = parametros.get(nombre);
+		if (valor == null)
+		{
+			throw new IllegalArgumentException("Falta el parmetro '" + nombre + "'");
+		}
+		return valor;
+	}
+
+	/**
+	 * Retorna el valor de un parmetro entero opcional
+	 *
+	 * @throws IllegalArgumentException Si el valor no es un entero entre el mnimo
+	 *                                  y el mximo
+	 */
+	private static int leerEntero(HashMap<String, String> parametros, String nombre, int porDefecto, int minimo,
+			int maximo)
+	{
+		String valor = parametros.get(nombre);
+		if (valor == null)
+		{
+			return porDefecto;
+		}
+		try
+		{
+			int numero = Integer.parseInt(valor);
+			if (numero >= minimo && numero <= maximo)
+			{
+				return numero;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			// Se informa abajo
+		}
+		throw new IllegalArgumentException(
+				"El parmetro '" + nombre + "' debe ser un entero entre " + minimo + " y " + maximo);
+	}
+
+	// ************************************************************************
+	// Clases anidadas
+	// ************************************************************************
+
+	/**
+	 * Una consulta que responde a una solicitud a partir de sus parmetros
+	 */
+	private interface Consulta
+	{
+		void responder(HttpExchange intercambio, HashMap<String, String> parametros) throws IOException;
+	}
+
+	// ************************************************************************
+	// Main
+	// ************************************************************************
+
+	/**
+	 * Inicia el servidor
+	 *
+	 * @param args El archivo de categoras, el archivo de libros y el puerto. Si
+	 *             no se indican, se usan los archivos de la carpeta "data" y el
+	 *             puerto 8080.
+	 * @throws IOException Si hay un problema leyendo los archivos o usando el
+	 *                     puerto
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		String archivoCategorias = args.length > 0 ? args[0] : "./data/categorias.csv";
+		String archivoLibros = args.length > 1 ? args[1] : "./data/libreria.csv";
+		int puerto = args.length > 2 ? Integer.parseInt(args[2]) : PUERTO_POR_DEFECTO;
+
+		LibreriaConcurrente libreria = new LibreriaConcurrente(archivoCategorias, archivoLibros);
+		ServidorLibreria servidor = new ServidorLibreria(libreria, puerto);
+		servidor.iniciar();
+		System.out.println("Servidor de la librera escuchando en el puerto " + servidor.darPuerto());
+	}
+}